@@ -0,0 +1,53 @@
+package com.receiptprocessor.challenge.benchmark;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.rules.RuleProgram;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Scoring cost per receipt for receipts of different sizes: the hard-coded rules against the default rule set compiled by PointsEngine.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointsCalculatorBenchmark {
+
+    @Param({"simple-receipt", "morning-receipt", "items-5", "items-50", "items-500"})
+    public String shape;
+
+    private Receipt receipt;
+
+    private RuleProgram defaultRules;
+
+    @Setup
+    public void setUp() throws IOException {
+        receipt = ReceiptShapes.receipt(shape);
+        defaultRules = PointsEngine.withDefaultRules().current();
+    }
+
+    @Benchmark
+    public int calculatePoints() {
+        return PointsCalculator.calculatePoints(receipt);
+    }
+
+    @Benchmark
+    public int evaluateRules() {
+        return defaultRules.evaluate(receipt, null);
+    }
+}
@@ -0,0 +1,115 @@
+package com.receiptprocessor.challenge.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptJsonParser;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.ReceiptValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Request-side cost before scoring: binding the body with Jackson or ReceiptJsonParser, and checking the Receipt constraints
+// with @Valid Bean Validation or ReceiptValidator. The request* benchmarks bind, validate and score, in receipts per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptBindingBenchmark {
+
+    @Param({"simple-receipt", "morning-receipt", "items-5", "items-50"})
+    public String shape;
+
+    private byte[] json;
+
+    private final StringDictionary dictionary = new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES);
+
+    private Receipt receipt;
+
+    private ObjectReader receiptReader;
+
+    private Validator validator;
+
+    private PointsEngine pointsEngine;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = ReceiptShapes.json(shape);
+        receiptReader = ReceiptShapes.OBJECT_MAPPER.readerFor(Receipt.class);
+        receipt = receiptReader.readValue(json);
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        pointsEngine = PointsEngine.withDefaultRules();
+    }
+
+    @Benchmark
+    public Receipt deserialize() throws IOException {
+        return receiptReader.readValue(json);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Receipt>> validate() {
+        return validator.validate(receipt);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Receipt>> deserializeAndValidate() throws IOException {
+        return validator.validate(receiptReader.<Receipt>readValue(json));
+    }
+
+    @Benchmark
+    public String validateFast() {
+        return ReceiptValidator.firstViolation(receipt);
+    }
+
+    @Benchmark
+    public String deserializeAndValidateFast() throws IOException {
+        return ReceiptValidator.firstViolation(receiptReader.<Receipt>readValue(json));
+    }
+
+    @Benchmark
+    public Receipt parse() {
+        return ReceiptJsonParser.parse(json, dictionary);
+    }
+
+    @Benchmark
+    public String parseAndValidateFast() {
+        return ReceiptValidator.firstViolation(ReceiptJsonParser.parse(json, dictionary));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int requestJackson() throws IOException {
+        return score(receiptReader.readValue(json));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int requestParser() {
+        return score(ReceiptJsonParser.parse(json, dictionary));
+    }
+
+    // What /receipts/process does with a bound receipt before storing it: validation, then the rule set in use
+    private int score(Receipt receipt) {
+        return ReceiptValidator.firstViolation(receipt) == null ? pointsEngine.score(receipt, null) : -1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.receiptprocessor.challenge.benchmark;
+
+import com.receiptprocessor.challenge.model.ReceiptId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Id generation, formatting and parsing, against the UUID.randomUUID().toString() ids they replace. Runs 4 threads, as generation is shared by all requests.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ReceiptIdBenchmark {
+
+    private final String formatted = ReceiptId.generate().toString();
+
+    @Benchmark
+    public String randomUuidString() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public ReceiptId generate() {
+        return ReceiptId.generate();
+    }
+
+    @Benchmark
+    public String generateAndFormat() {
+        return ReceiptId.generate().toString();
+    }
+
+    @Benchmark
+    public ReceiptId parse() {
+        return ReceiptId.parse(formatted);
+    }
+}
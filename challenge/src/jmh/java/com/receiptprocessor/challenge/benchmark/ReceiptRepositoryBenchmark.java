@@ -0,0 +1,124 @@
+package com.receiptprocessor.challenge.benchmark;
+
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.repository.OffHeapReceiptRepository;
+import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.repository.WalReceiptRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Points store throughput under contention: all threads share one repository.
+ * saveAndFind runs 4 threads (change with -t); the "mixed" group runs 3 readers against 1 writer.
+ * The wal type logs to a temporary directory with fsync=group, so save measures group commit on the local disk.
+ * The bounded type is the memory store with a time-to-live and a maximum of preloaded entries, so every save past
+ * the preload evicts one receipt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptRepositoryBenchmark {
+
+    @Param({"100000"})
+    public int preloaded;
+
+    @Param({"memory", "bounded", "offheap", "wal"})
+    public String type;
+
+    private ReceiptRepository receiptRepository;
+
+    private ReceiptId[] receiptIds;
+
+    private Path walDirectory;
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("wal".equals(type)) {
+            walDirectory = Files.createTempDirectory("receipt-wal");
+            WalReceiptRepository wal = new WalReceiptRepository(walDirectory.toString(), 64 << 20, "group", 50, 1024, 0,
+                    new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+            wal.open();
+            receiptRepository = wal;
+        } else if ("bounded".equals(type)) {
+            ReceiptRepositoryImpl bounded = new ReceiptRepositoryImpl(preloaded, Duration.ofDays(3), System::currentTimeMillis);
+            bounded.start();
+            receiptRepository = bounded;
+        } else {
+            receiptRepository = "offheap".equals(type) ? new OffHeapReceiptRepository(64 << 20, "") : new ReceiptRepositoryImpl();
+        }
+        receiptIds = new ReceiptId[preloaded];
+        for (int i = 0; i < preloaded; i++) {
+            receiptIds[i] = ReceiptId.generate();
+            receiptRepository.savePoints(receiptIds[i], i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (receiptRepository instanceof ReceiptRepositoryImpl) {
+            ((ReceiptRepositoryImpl) receiptRepository).close();
+        }
+        if (receiptRepository instanceof OffHeapReceiptRepository) {
+            ((OffHeapReceiptRepository) receiptRepository).close();
+        }
+        if (receiptRepository instanceof WalReceiptRepository) {
+            ((WalReceiptRepository) receiptRepository).close();
+            try (Stream<Path> files = Files.walk(walDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void save() {
+        receiptRepository.savePoints(ReceiptId.generate(), 31);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OptionalInt find() {
+        return receiptRepository.findPointsById(receiptIds[ThreadLocalRandom.current().nextInt(receiptIds.length)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public OptionalInt mixedFind() {
+        return find();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedSave() {
+        save();
+    }
+}
@@ -0,0 +1,56 @@
+package com.receiptprocessor.challenge.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.Receipt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Receipt shapes shared by the benchmarks. A shape is either the name of a file in examples/
+ * (e.g. "simple-receipt") or "items-N" for a generated receipt with N items.
+ */
+final class ReceiptShapes {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String[] DESCRIPTIONS = {
+            "Mountain Dew 12PK", "Emils Cheese Pizza", "Knorr Creamy Chicken", "Doritos Nacho Cheese",
+            "   Klarbrunn 12-PK 12 FL OZ  ", "Gatorade", "Pepsi - 12-oz", "Dasani"
+    };
+
+    private ReceiptShapes() {
+    }
+
+    static byte[] json(String shape) throws IOException {
+        if (shape.startsWith("items-")) {
+            return generate(Integer.parseInt(shape.substring("items-".length()))).getBytes(StandardCharsets.UTF_8);
+        }
+        // Benchmarks run from the project directory (exec:exec), so examples/ resolves relative to it
+        return Files.readAllBytes(Paths.get("examples", shape + ".json"));
+    }
+
+    static Receipt receipt(String shape) throws IOException {
+        return OBJECT_MAPPER.readValue(json(shape), Receipt.class);
+    }
+
+    private static String generate(int itemCount) {
+        StringBuilder json = new StringBuilder(64 + itemCount * 64);
+        long totalCents = 0;
+        json.append("{\"retailer\":\"M&M Corner Market\",\"purchaseDate\":\"2022-03-21\",\"purchaseTime\":\"14:33\",\"items\":[");
+        for (int i = 0; i < itemCount; i++) {
+            long priceCents = 100 + (i * 137L) % 2_000;
+            totalCents += priceCents;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"shortDescription\":\"").append(DESCRIPTIONS[i % DESCRIPTIONS.length])
+                    .append("\",\"price\":\"").append(priceCents / 100).append('.')
+                    .append(String.format("%02d", priceCents % 100)).append("\"}");
+        }
+        json.append("],\"total\":\"").append(totalCents / 100).append('.').append(String.format("%02d", totalCents % 100)).append("\"}");
+        return json.toString();
+    }
+}
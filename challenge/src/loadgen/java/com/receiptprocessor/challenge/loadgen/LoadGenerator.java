@@ -0,0 +1,377 @@
+package com.receiptprocessor.challenge.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for /receipts/process and /receipts/{id}/points, to measure what one node sustains.
+ *
+ * Requests are sent at a fixed rate whatever the server does, as clients arriving independently would, and each one is
+ * timed from when it was due rather than from when it went out, so queueing in front of a saturated node shows up in the
+ * percentiles instead of quietly lowering the rate. At most --concurrency requests are in flight; a request due while
+ * all slots are taken waits for one, and the wait counts in its latency. Writes post receipts from ReceiptGenerator,
+ * reads ask for the points of a receipt written earlier in the run. Heap and GC figures come from the target's
+ * /actuator/metrics, read before and after the measured period and sampled every second in between.
+ *
+ * Run against an app already started, or let the generator start one from a jar:
+ *   mvn -Ploadgen -DskipTests package exec:exec -Dloadgen.args="--jar=target/challenge-0.0.1-SNAPSHOT.jar --rate=2000"
+ * Options, as --name=value:
+ *   target       base URL of the app (http://localhost:8080)
+ *   jar          start the app from this jar on the target's port, and stop it afterwards
+ *   jvm-args     JVM options for the started app, space separated
+ *   rate         requests per second, reads and writes together (1000)
+ *   read-ratio   share of requests that are reads, 0 to 1 (0.8)
+ *   concurrency  requests in flight at most (256)
+ *   warmup       time at the full rate before measuring, e.g. 10s or 1m (10s)
+ *   duration     measured time (30s)
+ *   preload      receipts written before the run, so the first reads have receipts to read (1000)
+ *   receipts     distinct receipts to vary; every body sent is still unique (10000)
+ *   seed         for the receipts and the read/write draw (42)
+ *   timeout      per request (10s)
+ *   out          also write the report to this file as JSON
+ */
+public final class LoadGenerator {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // Ids of receipts written, as a ring; reads pick one of the most recent
+    private static final int REMEMBERED_IDS = 65_536;
+
+    private final Map<String, String> options;
+
+    private final URI target;
+
+    private final HttpClient client;
+
+    private final Duration timeout;
+
+    private final AtomicReferenceArray<String> ids = new AtomicReferenceArray<>(REMEMBERED_IDS);
+
+    private final AtomicLong idCount = new AtomicLong();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.target = URI.create(option("target", defaultOf("target")).replaceAll("/+$", ""));
+        this.timeout = duration(option("timeout", "10s"));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        Process app = options.containsKey("jar") ? startApp(option("jar", null)) : null;
+        try {
+            waitUntilHealthy(app == null ? Duration.ofSeconds(5) : Duration.ofMinutes(2));
+            LoadReport report = new LoadReport();
+            for (String name : List.of("target", "rate", "read-ratio", "concurrency", "warmup", "duration", "preload", "receipts", "seed")) {
+                report.settings.put(name, option(name, defaultOf(name)));
+            }
+            // Every write is a receipt the server has not seen, so none is answered by its deduplication
+            report.settings.put("bodies", "unique");
+            drive(report);
+            System.out.print(report.format());
+            if (options.containsKey("out")) {
+                OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(new File(option("out", null)), report.toMap());
+                System.out.println("Report written to " + option("out", null));
+            }
+        } finally {
+            if (app != null) {
+                app.destroy();
+                if (!app.waitFor(30, TimeUnit.SECONDS)) {
+                    app.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private void drive(LoadReport report) throws Exception {
+        double rate = Double.parseDouble(option("rate", defaultOf("rate")));
+        double readRatio = Double.parseDouble(option("read-ratio", defaultOf("read-ratio")));
+        int concurrency = Integer.parseInt(option("concurrency", defaultOf("concurrency")));
+        long warmupNanos = duration(option("warmup", defaultOf("warmup"))).toNanos();
+        long durationNanos = duration(option("duration", defaultOf("duration"))).toNanos();
+        long seed = Long.parseLong(option("seed", defaultOf("seed")));
+        ReceiptGenerator.Bodies bodies = new ReceiptGenerator(seed).generate(Integer.parseInt(option("receipts", defaultOf("receipts"))));
+        int preload = Integer.parseInt(option("preload", defaultOf("preload")));
+        preload(bodies, preload);
+
+        long intervalNanos = (long) (1e9 / rate);
+        long measured = durationNanos / intervalNanos + 1;
+        report.process.reserve((int) measured);
+        report.points.reserve((int) measured);
+        report.offeredRate = rate;
+        report.measuredSeconds = durationNanos / 1e9;
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        SplittableRandom random = new SplittableRandom(seed);
+        URI processUri = target.resolve("/receipts/process");
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        Map<String, Double> before = new HashMap<>();
+        double[] peakHeap = {0};
+        sampler.schedule(() -> before.putAll(targetMetrics()), measureStart - System.nanoTime(), TimeUnit.NANOSECONDS);
+        sampler.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            if (now >= measureStart && now < end) {
+                peakHeap[0] = Math.max(peakHeap[0], metric("jvm.memory.used", "area:heap", "VALUE"));
+            }
+        }, measureStart - System.nanoTime(), TimeUnit.SECONDS.toNanos(1), TimeUnit.NANOSECONDS);
+
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!inFlight.tryAcquire()) {
+                if (due >= measureStart) {
+                    report.delayed.incrementAndGet();
+                }
+                inFlight.acquire();
+            }
+            boolean measuredRequest = due >= measureStart;
+            long written = idCount.get();
+            // A slot whose id is still being stored reads as null; that request writes instead
+            String id = written > 0 && random.nextDouble() < readRatio
+                    ? ids.get((int) ((written - 1 - random.nextLong(Math.min(written, REMEMBERED_IDS))) % REMEMBERED_IDS))
+                    : null;
+            if (id != null) {
+                HttpRequest request = HttpRequest.newBuilder(target.resolve("/receipts/" + id + "/points"))
+                        .timeout(timeout).GET().build();
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                    if (measuredRequest) {
+                        report.points.record(System.nanoTime() - due, error == null && response.statusCode() == 200);
+                    }
+                    inFlight.release();
+                });
+            } else {
+                client.sendAsync(post(processUri, bodies.get(preload + i)), HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, error) -> {
+                            boolean ok = error == null && response.statusCode() == 200;
+                            if (measuredRequest) {
+                                report.process.record(System.nanoTime() - due, ok);
+                            }
+                            if (ok) {
+                                remember(response.body());
+                            }
+                            inFlight.release();
+                        });
+            }
+        }
+        if (!inFlight.tryAcquire(concurrency, timeout.toMillis() + 5_000, TimeUnit.MILLISECONDS)) {
+            System.out.println("Requests still in flight after the timeout; they are not counted");
+        }
+        sampler.shutdownNow();
+        sampler.awaitTermination(5, TimeUnit.SECONDS);
+        Map<String, Double> after = targetMetrics();
+        summarizeTarget(report, before, after, peakHeap[0]);
+    }
+
+    // Writes receipts one after another so reads have receipts to read from the start.
+    private void preload(ReceiptGenerator.Bodies bodies, int count) throws Exception {
+        URI processUri = target.resolve("/receipts/process");
+        for (int i = 0; i < count; i++) {
+            HttpResponse<String> response = client.send(post(processUri, bodies.get(i)), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Preloading got " + response.statusCode() + ": " + response.body());
+            }
+            remember(response.body());
+        }
+    }
+
+    private HttpRequest post(URI uri, byte[] body) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    // Keeps the id of a {"id":"..."} answer for later reads.
+    private void remember(String body) {
+        int start = body.indexOf("\"id\":\"");
+        if (start < 0) {
+            return;
+        }
+        start += "\"id\":\"".length();
+        int end = body.indexOf('"', start);
+        ids.set((int) (idCount.getAndIncrement() % REMEMBERED_IDS), body.substring(start, end));
+    }
+
+    // The target JVM figures the report compares before and after the measured period
+    private Map<String, Double> targetMetrics() {
+        Map<String, Double> metrics = new HashMap<>();
+        metrics.put("gcPauses", metric("jvm.gc.pause", null, "COUNT"));
+        metrics.put("gcPauseSeconds", metric("jvm.gc.pause", null, "TOTAL_TIME"));
+        metrics.put("gcPauseMaxSeconds", metric("jvm.gc.pause", null, "MAX"));
+        metrics.put("allocatedBytes", metric("jvm.gc.memory.allocated", null, "COUNT"));
+        metrics.put("heapUsedBytes", metric("jvm.memory.used", "area:heap", "VALUE"));
+        metrics.put("heapCommittedBytes", metric("jvm.memory.committed", "area:heap", "VALUE"));
+        return metrics;
+    }
+
+    private void summarizeTarget(LoadReport report, Map<String, Double> before, Map<String, Double> after, double peakHeap) {
+        long requests = report.process.requests() + report.points.requests();
+        double allocated = after.get("allocatedBytes") - before.getOrDefault("allocatedBytes", Double.NaN);
+        report.target.put("heapUsedMB", megabytes(after.get("heapUsedBytes")));
+        report.target.put("heapPeakMB", megabytes(Math.max(peakHeap, after.get("heapUsedBytes"))));
+        report.target.put("heapCommittedMB", megabytes(after.get("heapCommittedBytes")));
+        report.target.put("gcPauses", Math.round(after.get("gcPauses") - before.getOrDefault("gcPauses", Double.NaN)));
+        report.target.put("gcPauseTotalMs",
+                Math.round((after.get("gcPauseSeconds") - before.getOrDefault("gcPauseSeconds", Double.NaN)) * 1000));
+        report.target.put("gcPauseMaxMs", Math.round(after.get("gcPauseMaxSeconds") * 1000));
+        report.target.put("allocatedMB", megabytes(allocated));
+        report.target.put("allocatedKBPerRequest", requests == 0 ? 0 : Math.round(allocated / requests / 1024 * 10) / 10.0);
+    }
+
+    /**
+     * Reads one statistic of an actuator metric from the target.
+     * @param name e.g. jvm.memory.used
+     * @param tag e.g. area:heap, or null for all
+     * @param statistic e.g. VALUE, COUNT or TOTAL_TIME
+     * @return the value, NaN if the target does not report it
+     */
+    private double metric(String name, String tag, String statistic) {
+        try {
+            URI uri = target.resolve("/actuator/metrics/" + name + (tag == null ? "" : "?tag=" + tag));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).timeout(timeout).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            for (JsonNode measurement : OBJECT_MAPPER.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+        } catch (IOException e) {
+            return Double.NaN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Double.NaN;
+    }
+
+    private Process startApp(String jar) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        String jvmArgs = option("jvm-args", "");
+        if (!jvmArgs.isBlank()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.add("-jar");
+        command.add(jar);
+        command.add("--server.port=" + (target.getPort() < 0 ? 80 : target.getPort()));
+        File log = Paths.get("target", "loadgen-app.log").toFile();
+        Files.createDirectories(log.toPath().getParent());
+        System.out.println("Starting " + String.join(" ", command) + ", logging to " + log);
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    private void waitUntilHealthy(Duration limit) throws InterruptedException {
+        long deadline = System.nanoTime() + limit.toNanos();
+        HttpRequest health = HttpRequest.newBuilder(target.resolve("/actuator/health")).timeout(Duration.ofSeconds(2)).GET().build();
+        while (true) {
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(target + " is not healthy after " + limit.toSeconds() + " s");
+            }
+            Thread.sleep(250);
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return value;
+    }
+
+    private static String defaultOf(String name) {
+        switch (name) {
+            case "target":
+                return "http://localhost:8080";
+            case "rate":
+                return "1000";
+            case "read-ratio":
+                return "0.8";
+            case "concurrency":
+                return "256";
+            case "warmup":
+                return "10s";
+            case "duration":
+                return "30s";
+            case "preload":
+                return "1000";
+            case "receipts":
+                return "10000";
+            case "seed":
+                return "42";
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    // 500ms, 30s, 2m, or a plain number of seconds
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+    }
+
+    private static double megabytes(double bytes) {
+        return Math.round(bytes / (1024 * 1024) * 10) / 10.0;
+    }
+}
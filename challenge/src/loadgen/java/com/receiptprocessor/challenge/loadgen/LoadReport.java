@@ -0,0 +1,148 @@
+package com.receiptprocessor.challenge.loadgen;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What a load run measured: per endpoint, the latency of every request from the time it was due to be sent (so a slow
+ * server is charged for the requests it delayed, not only for the ones it answered), plus the heap and GC figures of the
+ * target JVM read from its actuator metrics. Printed as a table, and as JSON to compare releases.
+ */
+final class LoadReport {
+
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99_9"};
+
+    final Endpoint process = new Endpoint("POST /receipts/process");
+
+    final Endpoint points = new Endpoint("GET /receipts/{id}/points");
+
+    // Settings of the run, in report order
+    final Map<String, Object> settings = new LinkedHashMap<>();
+
+    // Target JVM figures over the measured period, in report order
+    final Map<String, Object> target = new LinkedHashMap<>();
+
+    // Requests that waited for an in-flight slot before they could be sent
+    final AtomicInteger delayed = new AtomicInteger();
+
+    double offeredRate;
+
+    double measuredSeconds;
+
+    // Latencies and errors of one endpoint. Each request writes its own slot, so completions never contend.
+    static final class Endpoint {
+
+        final String name;
+
+        private long[] latencies = new long[0];
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final AtomicInteger errors = new AtomicInteger();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        // Room for this many measured requests, as many as the run schedules.
+        void reserve(int capacity) {
+            latencies = new long[capacity];
+        }
+
+        void record(long latencyNanos, boolean ok) {
+            if (!ok) {
+                errors.incrementAndGet();
+                return;
+            }
+            int slot = count.getAndIncrement();
+            if (slot < latencies.length) {
+                latencies[slot] = latencyNanos;
+            }
+        }
+
+        int requests() {
+            return count.get() + errors.get();
+        }
+
+        int errors() {
+            return errors.get();
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(count.get(), latencies.length));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    // The report as a table.
+    String format() {
+        StringBuilder out = new StringBuilder();
+        out.append("Load run: ").append(settings).append('\n');
+        out.append(String.format("offered %.0f req/s for %.1f s; %d requests waited for a free in-flight slot%n%n",
+                offeredRate, measuredSeconds, delayed.get()));
+        out.append(String.format("%-27s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        long[] all = merge(process.sorted(), points.sorted());
+        row(out, process.name, process.requests(), process.errors(), process.sorted());
+        row(out, points.name, points.requests(), points.errors(), points.sorted());
+        row(out, "all", process.requests() + points.requests(), process.errors() + points.errors(), all);
+        out.append('\n').append("Target JVM: ").append(target).append('\n');
+        return out.toString();
+    }
+
+    // The report as a map, for JSON.
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("settings", settings);
+        map.put("offeredRate", Math.round(offeredRate));
+        map.put("measuredSeconds", measuredSeconds);
+        map.put("delayedRequests", delayed.get());
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Endpoint endpoint : List.of(process, points)) {
+            long[] sorted = endpoint.sorted();
+            Map<String, Object> figures = new LinkedHashMap<>();
+            figures.put("requests", endpoint.requests());
+            figures.put("errors", endpoint.errors());
+            figures.put("throughput", Math.round(endpoint.requests() / measuredSeconds));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                figures.put(PERCENTILE_NAMES[i] + "Millis", millis(percentile(sorted, PERCENTILES[i])));
+            }
+            figures.put("maxMillis", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+            endpoints.put(endpoint.name, figures);
+        }
+        map.put("endpoints", endpoints);
+        map.put("target", target);
+        return map;
+    }
+
+    private void row(StringBuilder out, String name, int requests, int errors, long[] sorted) {
+        out.append(String.format("%-27s %9d %7d %10.0f", name, requests, errors, requests / measuredSeconds));
+        for (double percentile : PERCENTILES) {
+            out.append(String.format(" %9.2f", millis(percentile(sorted, percentile))));
+        }
+        out.append(String.format(" %9.2f%n", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1])));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static long[] merge(long[] first, long[] second) {
+        long[] merged = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+}
@@ -0,0 +1,171 @@
+package com.receiptprocessor.challenge.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Synthetic receipts shaped like the ones in examples/: a few dozen retailers and a few hundred item descriptions that
+ * repeat across receipts, mostly small baskets with the occasional large one, prices from cents to tens of dollars, and
+ * purchase times clustered in opening hours. Every receipt is valid against api.yml, and the same seed gives the same receipts.
+ * A run sends each body once (see Bodies), as clients do, so the server's deduplication never answers for it.
+ */
+final class ReceiptGenerator {
+
+    private static final String[] RETAILERS = {
+            "Target", "Walgreens", "M&M Corner Market", "Costco", "Walmart", "CVS Pharmacy", "Kroger", "Safeway",
+            "Trader Joes", "Whole Foods Market", "Aldi", "Publix", "H-E-B", "Wegmans", "Meijer", "Dollar General",
+            "7-Eleven", "Circle K", "Rite Aid", "Best Buy", "Home Depot", "Lowes", "Staples", "Petco",
+            "Barnes & Noble", "Sprouts Farmers Market", "Food Lion", "Giant Eagle", "Hy-Vee", "Stop & Shop"
+    };
+
+    // The descriptions of examples/, padding included, and the words to make more from
+    private static final String[] DESCRIPTIONS = {
+            "Mountain Dew 12PK", "Emils Cheese Pizza", "Knorr Creamy Chicken", "Doritos Nacho Cheese",
+            "   Klarbrunn 12-PK 12 FL OZ  ", "Pepsi - 12-oz", "Dasani", "Gatorade"
+    };
+    private static final String[] BRANDS = {
+            "Kelloggs", "Tide", "Colgate", "Heinz", "Barilla", "Tropicana", "Oreo", "Lays", "Chobani", "Starbucks",
+            "Clorox", "Bounty", "Dove", "Quaker", "Nature Valley", "Ben & Jerrys"
+    };
+    private static final String[] PRODUCTS = {
+            "Cereal", "Detergent 64oz", "Toothpaste", "Ketchup", "Spaghetti", "Orange Juice", "Cookies", "Chips",
+            "Greek Yogurt", "Cold Brew", "Wipes", "Paper Towels 6-Roll", "Body Wash", "Oats", "Granola Bars", "Ice Cream"
+    };
+
+    private final Random random;
+
+    private final String[] descriptions;
+
+    /**
+     * @param seed
+     */
+    ReceiptGenerator(long seed) {
+        this.random = new Random(seed);
+        this.descriptions = new String[DESCRIPTIONS.length + BRANDS.length * PRODUCTS.length];
+        System.arraycopy(DESCRIPTIONS, 0, descriptions, 0, DESCRIPTIONS.length);
+        int next = DESCRIPTIONS.length;
+        for (String brand : BRANDS) {
+            for (String product : PRODUCTS) {
+                // Brands are not joined with the ampersand, which descriptions may not contain
+                descriptions[next++] = brand.replace(" & ", " and ") + " " + product;
+            }
+        }
+    }
+
+    /**
+     * Generates the receipts up front, so sending one during the run only copies its bytes around a new total.
+     * @param count distinct receipts to vary
+     * @return bodies to send, one per sequence number
+     */
+    Bodies generate(int count) {
+        byte[][] heads = new byte[count][];
+        long[] totalCents = new long[count];
+        byte[][] tails = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            String[] parts = next();
+            heads[i] = parts[0].getBytes(StandardCharsets.UTF_8);
+            totalCents[i] = Long.parseLong(parts[1]);
+            tails[i] = parts[2].getBytes(StandardCharsets.UTF_8);
+        }
+        return new Bodies(heads, totalCents, tails);
+    }
+
+    // One receipt laid out as the files in examples/: the JSON up to the total, the total in cents, and the JSON after it.
+    private String[] next() {
+        int itemCount = itemCount();
+        StringBuilder items = new StringBuilder(itemCount * 64);
+        long totalCents = 0;
+        for (int i = 0; i < itemCount; i++) {
+            long priceCents = priceCents();
+            totalCents += priceCents;
+            items.append(i == 0 ? "\n" : ",\n")
+                    .append("        {\"shortDescription\": \"").append(pick(descriptions))
+                    .append("\", \"price\": \"").append(amount(priceCents)).append("\"}");
+        }
+        String head = "{\n"
+                + "    \"retailer\": \"" + pick(RETAILERS) + "\",\n"
+                + "    \"purchaseDate\": \"" + purchaseDate() + "\",\n"
+                + "    \"purchaseTime\": \"" + purchaseTime() + "\",\n"
+                + "    \"total\": \"";
+        String tail = "\",\n"
+                + "    \"items\": [" + items + "\n    ]\n"
+                + "}";
+        return new String[] {head, Long.toString(totalCents), tail};
+    }
+
+    // 1 to 6 items mostly, and one basket in twenty of up to 40
+    private int itemCount() {
+        if (random.nextInt(20) == 0) {
+            return 7 + random.nextInt(34);
+        }
+        return 1 + Math.min(random.nextInt(6), random.nextInt(6));
+    }
+
+    // Log-uniform between $0.25 and $40, with one price in five a round dollar or quarter amount
+    private long priceCents() {
+        long cents = Math.round(25 * Math.pow(160, random.nextDouble()));
+        if (random.nextInt(5) == 0) {
+            cents = Math.max(25, cents / 25 * 25);
+        }
+        return cents;
+    }
+
+    private String purchaseDate() {
+        return LocalDate.of(2022, 1, 1).plusDays(random.nextInt(3 * 365)).toString();
+    }
+
+    // Opening hours mostly, peaking at lunch and after work, and one purchase in fifty at night
+    private String purchaseTime() {
+        int hour;
+        if (random.nextInt(50) == 0) {
+            hour = random.nextInt(24);
+        } else {
+            hour = 7 + (int) Math.min(15, Math.abs(random.nextGaussian() * 3 + (random.nextBoolean() ? 5 : 10)));
+        }
+        return String.format("%02d:%02d", hour, random.nextInt(60));
+    }
+
+    private String pick(String[] values) {
+        // Squared, so the first names are the popular ones
+        double skew = random.nextDouble();
+        return values[(int) (skew * skew * values.length)];
+    }
+
+    private static String amount(long cents) {
+        return cents / 100 + "." + (cents % 100 < 10 ? "0" : "") + cents % 100;
+    }
+
+    /**
+     * The generated receipts, handed out by sequence number so no two requests of a run send the same body: the server
+     * would answer a repeat from its deduplication index without scoring or storing anything. Body n is receipt
+     * n % count with its total raised by n / count whole dollars, which leaves the cents, and so the points, as they were.
+     */
+    static final class Bodies {
+
+        private final byte[][] heads;
+
+        private final long[] totalCents;
+
+        private final byte[][] tails;
+
+        private Bodies(byte[][] heads, long[] totalCents, byte[][] tails) {
+            this.heads = heads;
+            this.totalCents = totalCents;
+            this.tails = tails;
+        }
+
+        // UTF-8 JSON of body n
+        byte[] get(long n) {
+            int receipt = (int) (n % heads.length);
+            byte[] total = amount(totalCents[receipt] + n / heads.length * 100).getBytes(StandardCharsets.US_ASCII);
+            byte[] head = heads[receipt];
+            byte[] tail = tails[receipt];
+            byte[] body = new byte[head.length + total.length + tail.length];
+            System.arraycopy(head, 0, body, 0, head.length);
+            System.arraycopy(total, 0, body, head.length, total.length);
+            System.arraycopy(tail, 0, body, head.length + total.length, tail.length);
+            return body;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.receiptprocessor.challenge.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how soon a new node is useful, for each build of the app: the time from launching the process until
+ * /actuator/health/readiness reports UP, and then the receipts per second it serves in each second after that, under
+ * closed-loop load, until it reaches its steady throughput. Builds are the plain jar, the Spring AOT jar started with its
+ * class data sharing archive (mvn -Paot package) and the GraalVM native image (mvn -Pnative native:compile); builds
+ * not found in target/ are skipped. Run it with the loadgen profile and -Dloadgen.main, as in README.md.
+ *
+ * Options, as --name=value:
+ *   variants     builds to compare, of jar, aot-cds and native (jar,aot-cds)
+ *   runs         launches per build; startup times are averaged, throughput is from the last run (3)
+ *   seconds      of load after readiness in each run (20)
+ *   concurrency  clients posting receipts back to back (16)
+ *   port         the app listens on (8099)
+ *   jvm-args     JVM options for the jar builds, space separated
+ */
+public final class StartupBenchmark {
+
+    private static final String JAR = "target/challenge-0.0.1-SNAPSHOT.jar";
+    private static final String CDS_JAR = "target/cds/challenge-0.0.1-SNAPSHOT.jar";
+    private static final String CDS_ARCHIVE = "target/cds/application.jsa";
+    private static final String NATIVE = "target/challenge";
+
+    // Share of the steady throughput a node must reach to count as warmed up
+    private static final double PEAK_SHARE = 0.9;
+
+    private final Map<String, String> options;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final URI base;
+
+    private final ReceiptGenerator.Bodies bodies = new ReceiptGenerator(42).generate(1000);
+
+    private StartupBenchmark(Map<String, String> options) {
+        this.options = options;
+        this.base = URI.create("http://localhost:" + options.getOrDefault("port", "8099"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new StartupBenchmark(options).run();
+    }
+
+    private void run() throws Exception {
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-8s %12s %14s %14s %14s %14s %10s", "build", "ready ms", "first s req/s",
+                "steady req/s", "to 90% peak s", "rss MB", "runs"));
+        for (String variant : options.getOrDefault("variants", "jar,aot-cds").split(",")) {
+            List<String> command = command(variant.trim());
+            if (command == null) {
+                lines.add(String.format("%-8s not built, skipped", variant));
+                continue;
+            }
+            long readyTotal = 0;
+            Result last = null;
+            for (int run = 0; run < runs; run++) {
+                last = measure(command);
+                readyTotal += last.readyMillis;
+            }
+            lines.add(String.format("%-8s %12d %14d %14d %14.1f %14.1f %10d", variant, readyTotal / runs,
+                    last.perSecond[0], last.steady, last.toPeakSeconds, last.rssMegabytes, runs));
+            System.out.println(variant + " requests per second after ready: " + Arrays.toString(last.perSecond));
+        }
+        System.out.println();
+        lines.forEach(System.out::println);
+    }
+
+    private List<String> command(String variant) {
+        List<String> command = new ArrayList<>();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String jvmArgs = options.getOrDefault("jvm-args", "");
+        switch (variant) {
+            case "jar":
+                if (!new File(JAR).exists()) {
+                    return null;
+                }
+                command.add(java);
+                addJvmArgs(command, jvmArgs);
+                command.add("-jar");
+                command.add(JAR);
+                break;
+            case "aot-cds":
+                if (!new File(CDS_ARCHIVE).exists()) {
+                    return null;
+                }
+                command.add(java);
+                command.add("-XX:SharedArchiveFile=" + CDS_ARCHIVE);
+                command.add("-Dspring.aot.enabled=true");
+                addJvmArgs(command, jvmArgs);
+                command.add("-jar");
+                command.add(CDS_JAR);
+                break;
+            case "native":
+                if (!new File(NATIVE).canExecute()) {
+                    return null;
+                }
+                command.add(NATIVE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown build " + variant + "; use jar, aot-cds or native");
+        }
+        command.add("--server.port=" + base.getPort());
+        return command;
+    }
+
+    private static void addJvmArgs(List<String> command, String jvmArgs) {
+        if (!jvmArgs.isBlank()) {
+            command.addAll(List.of(jvmArgs.trim().split("\\s+")));
+        }
+    }
+
+    // One launch: time to ready, then throughput second by second
+    private Result measure(List<String> command) throws Exception {
+        Path log = Paths.get("target", "startup-benchmark-app.log");
+        Files.createDirectories(log.getParent());
+        long launched = System.nanoTime();
+        Process app = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            Result result = new Result();
+            result.readyMillis = waitUntilReady(app, launched);
+            result.perSecond = load(Integer.parseInt(options.getOrDefault("seconds", "20")),
+                    Integer.parseInt(options.getOrDefault("concurrency", "16")));
+            result.rssMegabytes = rssMegabytes(app.pid());
+            // Steady throughput: the mean of the last third of the run
+            int from = result.perSecond.length * 2 / 3;
+            long sum = 0;
+            for (int i = from; i < result.perSecond.length; i++) {
+                sum += result.perSecond[i];
+            }
+            result.steady = sum / Math.max(1, result.perSecond.length - from);
+            result.toPeakSeconds = Double.NaN;
+            for (int i = 0; i < result.perSecond.length; i++) {
+                if (result.perSecond[i] >= PEAK_SHARE * result.steady) {
+                    result.toPeakSeconds = result.readyMillis / 1000.0 + i + 1;
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            app.destroy();
+            if (!app.waitFor(30, TimeUnit.SECONDS)) {
+                app.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private long waitUntilReady(Process app, long launched) throws InterruptedException {
+        HttpRequest readiness = HttpRequest.newBuilder(base.resolve("/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(1)).GET().build();
+        long deadline = launched + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("The app exited with " + app.exitValue() + "; see target/startup-benchmark-app.log");
+            }
+            try {
+                if (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return (System.nanoTime() - launched) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("The app is not ready after 2 minutes");
+    }
+
+    // Clients post receipts back to back; returns the requests completed in each second.
+    private long[] load(int seconds, int concurrency) throws Exception {
+        AtomicLongArray completed = new AtomicLongArray(seconds);
+        URI processUri = base.resolve("/receipts/process");
+        long start = System.nanoTime();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            int offset = c;
+            futures.add(clients.submit(() -> {
+                for (int i = offset; ; i += concurrency) {
+                    HttpRequest request = HttpRequest.newBuilder(processUri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(bodies.get(i)))
+                            .build();
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    int second = (int) ((System.nanoTime() - start) / 1_000_000_000L);
+                    if (second >= seconds) {
+                        return null;
+                    }
+                    if (status == 200) {
+                        completed.incrementAndGet(second);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+        long[] perSecond = new long[seconds];
+        for (int i = 0; i < seconds; i++) {
+            perSecond[i] = completed.get(i);
+        }
+        return perSecond;
+    }
+
+    // Resident memory of the app at the end of the run, from /proc on Linux; NaN elsewhere
+    private static double rssMegabytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return Double.NaN;
+        }
+        return Double.NaN;
+    }
+
+    private static final class Result {
+        long readyMillis;
+        long[] perSecond;
+        long steady;
+        double toPeakSeconds;
+        double rssMegabytes;
+    }
+}
@@ -0,0 +1,264 @@
+package com.receiptprocessor.challenge.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads receipts over the nodes listed in receipt.cluster.nodes. Every receipt id names one of ReceiptId.SHARDS shards,
+ * and each shard belongs to one node by consistent hashing: each node is placed at receipt.cluster.virtual-nodes points
+ * on a 64-bit ring, and a shard belongs to the first node point at or after the shard's hash. Adding or removing a node
+ * only moves the shards next to its points, about 1/n of them.
+ *
+ * A node stores what it ingests, under ids generated on one of its own shards, so any node can tell the owner of an id
+ * from the id alone and forward a read there. Every node must list the same nodes; with none listed the service runs
+ * alone and owns every shard.
+ *
+ * Receipts are not moved when the node list changes, so a shard that moved still has its older receipts on the node
+ * that owned it before. A node answers from its own store first, whoever owns the id, and when the owner answers 404
+ * the read goes on to the owner under receipt.cluster.previous-nodes, the node list before the change, if one is set.
+ * Keep previous-nodes until the receipts stored before the change have expired or are no longer read.
+ */
+@Component
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    // Set on forwarded reads, so the owner answers from its own store even if its node list differs
+    public static final String FORWARDED_HEADER = "X-Receipt-Forwarded";
+
+    private final List<String> nodes;
+
+    // Index in nodes of the owner of each shard
+    private final int[] owners;
+
+    // Nodes and owners before the last change of the node list; empty and null if none is configured
+    private final List<String> previousNodes;
+
+    private final int[] previousOwners;
+
+    // Shards this node owns, to generate ids on
+    private final int[] localShards;
+
+    private final int self;
+
+    private final Duration timeout;
+
+    private final ObjectMapper objectMapper;
+
+    private final HttpClient httpClient;
+
+    /**
+     * @param nodes base URLs of every node, comma separated, e.g. http://localhost:8080,http://localhost:8081; empty to run alone
+     * @param self base URL of this node, as listed in nodes
+     * @param previousNodes base URLs of every node before the node list last changed, comma separated; empty if it never did
+     * @param virtualNodes ring points per node; more spread shards more evenly
+     * @param timeout to connect to and hear back from the owner of a forwarded read
+     * @param objectMapper
+     */
+    @Autowired
+    public ShardRouter(@Value("${receipt.cluster.nodes:}") String nodes,
+                       @Value("${receipt.cluster.self:}") String self,
+                       @Value("${receipt.cluster.previous-nodes:}") String previousNodes,
+                       @Value("${receipt.cluster.virtual-nodes:128}") int virtualNodes,
+                       @Value("${receipt.cluster.timeout:2s}") Duration timeout,
+                       ObjectMapper objectMapper) {
+        this(parseNodes(nodes), self, parseNodes(previousNodes), virtualNodes, timeout, objectMapper);
+    }
+
+    public ShardRouter(List<String> nodes, String self, int virtualNodes, Duration timeout, ObjectMapper objectMapper) {
+        this(nodes, self, List.of(), virtualNodes, timeout, objectMapper);
+    }
+
+    public ShardRouter(List<String> nodes, String self, List<String> previousNodes, int virtualNodes, Duration timeout,
+                       ObjectMapper objectMapper) {
+        if (nodes.isEmpty()) {
+            nodes = List.of(self);
+        }
+        this.nodes = List.copyOf(nodes);
+        this.self = this.nodes.indexOf(self);
+        if (this.self < 0) {
+            throw new IllegalStateException("receipt.cluster.self " + self + " is not one of receipt.cluster.nodes " + nodes);
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("receipt.cluster.virtual-nodes must be positive");
+        }
+        this.owners = assignShards(this.nodes, virtualNodes);
+        this.previousNodes = List.copyOf(previousNodes);
+        this.previousOwners = previousNodes.isEmpty() ? null : assignShards(this.previousNodes, virtualNodes);
+        this.localShards = shardsOf(owners, this.self);
+        if (localShards.length == 0) {
+            throw new IllegalStateException("Node " + self + " owns no shards; use more receipt.cluster.virtual-nodes");
+        }
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.httpClient = this.nodes.size() == 1 && this.previousNodes.size() <= 1 ? null
+                : HttpClient.newBuilder().connectTimeout(timeout).build();
+        if (this.nodes.size() > 1) {
+            log.info("Node {} of {} owns {} of {} shards", self, this.nodes, localShards.length, ReceiptId.SHARDS);
+        }
+    }
+
+    // A router for a service running alone, owning every shard.
+    public static ShardRouter singleNode() {
+        return new ShardRouter(List.of(), "local", 1, Duration.ZERO, null);
+    }
+
+    // A new receipt id on one of this node's shards, chosen at random so receipts spread over them.
+    public ReceiptId generateId() {
+        return ReceiptId.generate(localShards[ThreadLocalRandom.current().nextInt(localShards.length)]);
+    }
+
+    // Whether this node stores the receipt with this id.
+    public boolean isLocal(ReceiptId receiptId) {
+        return owners[receiptId.getShard()] == self;
+    }
+
+    // Base URL of the node that stores the receipt with this id.
+    public String ownerOf(ReceiptId receiptId) {
+        return nodes.get(owners[receiptId.getShard()]);
+    }
+
+    // Base URL of the node that stored the receipt with this id before the node list changed, or null if that is the
+    // current owner, this node, or no previous node list is configured.
+    public String previousOwnerOf(ReceiptId receiptId) {
+        if (previousOwners == null) {
+            return null;
+        }
+        String previous = previousNodes.get(previousOwners[receiptId.getShard()]);
+        return previous.equals(ownerOf(receiptId)) || previous.equals(nodes.get(self)) ? null : previous;
+    }
+
+    // Base URLs of every node, in configured order.
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    // Whether another node may store the receipt with this id: its owner, or its owner before the node list changed.
+    public boolean mayBeOnOtherNode(ReceiptId receiptId) {
+        return !isLocal(receiptId) || previousOwnerOf(receiptId) != null;
+    }
+
+    /**
+     * Asks the other nodes that may store a receipt for its points, without blocking the caller: its owner, unless that
+     * is this node, then its previous owner if the owner does not have it. The caller has looked in its own store.
+     * @param receiptId id for which mayBeOnOtherNode is true
+     * @return the points, empty if none has such a receipt; fails if one cannot be reached or answers anything else
+     */
+    public CompletableFuture<OptionalInt> fetchPoints(ReceiptId receiptId) {
+        CompletableFuture<OptionalInt> points = isLocal(receiptId) ? CompletableFuture.completedFuture(OptionalInt.empty())
+                : fetchPoints(ownerOf(receiptId), receiptId);
+        String previous = previousOwnerOf(receiptId);
+        if (previous == null) {
+            return points;
+        }
+        return points.thenCompose(found -> found.isPresent() ? CompletableFuture.completedFuture(found)
+                : fetchPoints(previous, receiptId));
+    }
+
+    private CompletableFuture<OptionalInt> fetchPoints(String owner, ReceiptId receiptId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(owner + "/receipts/" + receiptId + "/points"))
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, "true")
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(response -> {
+                    if (response.statusCode() == 404) {
+                        return OptionalInt.empty();
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(new IOException(owner + " answered " + response.statusCode()));
+                    }
+                    try {
+                        JsonNode points = objectMapper.readTree(response.body()).get("points");
+                        if (points == null || !points.canConvertToInt()) {
+                            throw new IOException(owner + " answered without points");
+                        }
+                        return OptionalInt.of(points.intValue());
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    private static List<String> parseNodes(String nodes) {
+        List<String> parsed = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            if (!node.isBlank()) {
+                parsed.add(node.strip());
+            }
+        }
+        return parsed;
+    }
+
+    // Owner of each shard: the node of the first ring point at or after the shard's hash, wrapping around.
+    private static int[] assignShards(List<String> nodes, int virtualNodes) {
+        int pointCount = nodes.size() * virtualNodes;
+        long[] points = new long[pointCount];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                // Low bits carry the node, so the points sort by hash and then by node, the same on every node
+                long hash = hash(nodes.get(node) + "#" + v);
+                points[node * virtualNodes + v] = (hash & ~0xFFFFL) | node;
+            }
+        }
+        Arrays.sort(points);
+        int[] owners = new int[ReceiptId.SHARDS];
+        for (int shard = 0; shard < owners.length; shard++) {
+            long shardHash = ReceiptId.mix(shard, 0x5EEDL);
+            int index = Arrays.binarySearch(points, shardHash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            owners[shard] = (int) (points[index == pointCount ? 0 : index] & 0xFFFFL);
+        }
+        return owners;
+    }
+
+    private static int[] shardsOf(int[] owners, int node) {
+        int count = 0;
+        for (int owner : owners) {
+            if (owner == node) {
+                count++;
+            }
+        }
+        int[] shards = new int[count];
+        for (int shard = 0, i = 0; shard < owners.length; shard++) {
+            if (owners[shard] == node) {
+                shards[i++] = shard;
+            }
+        }
+        return shards;
+    }
+
+    // 64-bit FNV-1a of the UTF-8 bytes, finished like ReceiptId.mix; the same in every JVM
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return ReceiptId.mix(hash, 0);
+    }
+}
@@ -0,0 +1,34 @@
+package com.receiptprocessor.challenge.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Guards the /admin endpoints, on the servlet and the reactive build alike: a request must carry the header
+// "Authorization: Bearer <receipt.admin.token>". Without a token configured the admin endpoints are disabled, so a node
+// never starts with them open.
+@Component
+public class AdminAccess {
+
+    @Value("${receipt.admin.token:}")
+    private String token = "";
+
+    /**
+     * Throws FORBIDDEN if no admin token is configured, and UNAUTHORIZED unless authorization carries it.
+     * @param authorization Authorization header of the request, or null
+     */
+    public void check(String authorization) {
+        if (token.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "The admin endpoints are disabled. Set receipt.admin.token to enable them.");
+        }
+        // Compared in constant time, so the answer time does not tell how much of a guess was right
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        if (authorization == null || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "The admin token is missing or wrong.");
+        }
+    }
+}
@@ -1,31 +1,109 @@
 package com.receiptprocessor.challenge.controller;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.BatchResult;
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
 import com.receiptprocessor.challenge.service.ReceiptService;
+import com.receiptprocessor.challenge.service.ReceiptValidator;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.Validator;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletionException;
 
+// Servlet (Tomcat) endpoints. The reactive Maven profile serves the same contract from ReceiptHandler instead.
 @RestController
 @RequestMapping("/receipts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ReceiptController {
 
     private final ReceiptService receiptService;
 
-    public ReceiptController(ReceiptService receiptService) {
+    private final ObjectReader receiptReader;
+
+    private final ObjectWriter resultWriter;
+
+    private final ReceiptMetrics metrics;
+
+    private final ShardRouter shardRouter;
+
+    // ReceiptValidator.INSTANCE, recording validation time
+    private final Validator fastValidator;
+
+    // Receipts read from a stream are processed and answered in chunks of this size, which bounds memory per upload.
+    @Value("${receipt.stream.chunk-size:500}")
+    private int streamChunkSize;
+
+    // Check @Valid receipts with ReceiptValidator instead of Bean Validation. Both accept the same receipts.
+    @Value("${receipt.validation.fast:true}")
+    private boolean fastValidation;
+
+    public ReceiptController(ReceiptService receiptService, ObjectMapper objectMapper, ReceiptMetrics metrics,
+                             ShardRouter shardRouter) {
         this.receiptService = receiptService;
+        this.receiptReader = objectMapper.readerFor(Receipt.class);
+        this.resultWriter = objectMapper.writerFor(BatchResult.class).withRootValueSeparator("\n");
+        this.metrics = metrics;
+        this.fastValidator = metrics.timed(ReceiptValidator.INSTANCE);
+        this.shardRouter = shardRouter;
+    }
+
+    // Validates @Valid receipts with ReceiptValidator when fast validation is on, and times either validator.
+    @InitBinder
+    void initBinder(WebDataBinder binder) {
+        if (!(binder.getTarget() instanceof Receipt)) {
+            return;
+        }
+        if (fastValidation) {
+            binder.replaceValidators(fastValidator);
+            return;
+        }
+        List<Validator> validators = binder.getValidators();
+        Validator[] timed = new Validator[validators.size()];
+        for (int i = 0; i < timed.length; i++) {
+            timed[i] = metrics.timed(validators.get(i));
+        }
+        binder.replaceValidators(timed);
     }
 
-    // Endpoint to process receipts
+    // Endpoint to process receipts. A retry with the same Idempotency-Key (or the same receipt) gets the id of the first submission.
     @PostMapping("/process")
-    public ResponseEntity<Map<String, String>> processReceipt(@RequestBody @Valid Receipt receipt) {
+    public ResponseEntity<Map<String, String>> processReceipt(@RequestBody @Valid Receipt receipt,
+                                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try{
-            String receiptId = receiptService.processReceipt(receipt);
-            return ResponseEntity.ok(Map.of("id", receiptId));
+            ReceiptId receiptId = receiptService.processReceipt(receipt, idempotencyKey);
+            return ResponseEntity.ok(Map.of("id", receiptId.toString()));
+        } catch (ResponseStatusException e) {
+            // Invalid receipt, or an Idempotency-Key reused for a different receipt
+            return ResponseEntity.status(e.getStatusCode()).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             // Handle invalid input
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
@@ -33,16 +111,115 @@ public class ReceiptController {
 
     }
 
-    // Endpoint to get points for a receipt
+    // Endpoint to process a batch of receipts sent as a JSON array. Returns one result per receipt, in order.
+    @PostMapping(value = "/process:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchResult>> processReceipts(@RequestBody List<Receipt> receipts) {
+        return ResponseEntity.ok(receiptService.processReceipts(receipts));
+    }
+
+    // Endpoint to process a batch of receipts sent as NDJSON, one receipt per line.
+    // A line that is not valid JSON is reported as an invalid receipt instead of failing the batch.
+    @PostMapping(value = "/process:batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchResult>> processReceiptsNdjson(InputStream body) throws IOException {
+        List<Receipt> receipts = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                long start = metrics.start();
+                receipts.add(receiptReader.readValue(line));
+                metrics.deserialized(start);
+            } catch (JsonProcessingException e) {
+                receipts.add(null);
+            }
+        }
+        return ResponseEntity.ok(receiptService.processReceipts(receipts));
+    }
+
+    // Endpoint to stream receipts as NDJSON of any size. Receipts are read one at a time with the Jackson streaming parser
+    // and {id, points} (or {error}) lines are written back after each chunk, so memory stays constant however big the upload is.
+    // A receipt that is valid JSON but cannot be bound (a value of the wrong type, say) is skipped and answered as invalid,
+    // and the stream goes on. Input that is not valid JSON ends it with an error line, since the parser cannot resynchronise after it.
+    @PostMapping(value = "/process:stream", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void processReceiptStream(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        int chunkSize = Math.max(1, streamChunkSize);
+        List<Receipt> chunk = new ArrayList<>(chunkSize);
+
+        try (JsonParser parser = receiptReader.createParser(body);
+             SequenceWriter writer = resultWriter.writeValues(out)) {
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (token == JsonToken.START_OBJECT) {
+                        long start = metrics.start();
+                        try {
+                            chunk.add(receiptReader.readValue(parser));
+                            metrics.deserialized(start);
+                        } catch (DatabindException e) {
+                            skipToRoot(parser);
+                            chunk.add(null);
+                        }
+                    } else {
+                        // Anything but an object (null, a number, an array) is an invalid receipt
+                        parser.skipChildren();
+                        chunk.add(null);
+                    }
+                    if (chunk.size() == chunkSize) {
+                        writeResults(writer, out, chunk);
+                    }
+                }
+                writeResults(writer, out, chunk);
+            } catch (JsonProcessingException e) {
+                writeResults(writer, out, chunk);
+                writer.write(BatchResult.error("The receipt is invalid. Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+    }
+
+    // Endpoint to get points for a receipt. The id is parsed here once; anything that is not an id is not found.
+    // A receipt not stored here is read from the other nodes that may store it, unless the read was forwarded by one;
+    // SERVICE_UNAVAILABLE if one cannot be reached.
     @GetMapping("/{id}/points")
-    public ResponseEntity<Map<String, Integer>> getPoints(@PathVariable String id) {
-        try {
-            int points = receiptService.getPoints(id);
-            return ResponseEntity.ok(Map.of("points", points));
-        } catch (ResponseStatusException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("points", -1)); // Use -1 to indicate an error
+    public ResponseEntity<Map<String, Integer>> getPoints(@PathVariable String id,
+                                                          @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwarded) {
+        ReceiptId receiptId = ReceiptId.parse(id);
+        if (receiptId == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("points", -1));
+        }
+        OptionalInt points = receiptService.findPoints(receiptId);
+        if (points.isEmpty() && forwarded == null && shardRouter.mayBeOnOtherNode(receiptId)) {
+            try {
+                points = shardRouter.fetchPoints(receiptId).join();
+            } catch (CompletionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("points", -1));
+            }
         }
+        return points.isPresent() ? ResponseEntity.ok(Map.of("points", points.getAsInt()))
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("points", -1)); // Use -1 to indicate an error
     }
 
-}
+    // Moves the parser past the end of the receipt it failed to bind, wherever within it binding stopped.
+    private static void skipToRoot(JsonParser parser) throws IOException {
+        while (!parser.getParsingContext().inRoot() && parser.nextToken() != null) {
+            // Skip the rest of the receipt
+        }
+    }
 
+    // Processes a chunk of streamed receipts, writes one result line per receipt and clears the chunk.
+    private void writeResults(SequenceWriter writer, OutputStream out, List<Receipt> chunk) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (BatchResult result : receiptService.processReceipts(chunk)) {
+            writer.write(result);
+        }
+        writer.flush();
+        out.flush();
+        chunk.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package com.receiptprocessor.challenge.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptJsonParser;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads @RequestBody Receipt with ReceiptJsonParser, straight from the body bytes, and with Jackson when the parser
+ * does not take the body or receipt.json.fast is off. Spring Boot puts converter beans ahead of its Jackson converter,
+ * so only the Receipt body goes through here; batches and everything written still use Jackson. canWrite is false, so
+ * Spring never writes with this converter; writeInternal writes with Jackson all the same.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ReceiptMessageConverter extends AbstractHttpMessageConverter<Receipt> {
+
+    private final ObjectReader receiptReader;
+
+    private final ObjectWriter receiptWriter;
+
+    private final StringDictionary dictionary;
+
+    // Read single receipts with ReceiptJsonParser before falling back to Jackson. Both bind the same receipts.
+    @Value("${receipt.json.fast:true}")
+    private boolean fastJson;
+
+    public ReceiptMessageConverter(ObjectMapper objectMapper, StringDictionary dictionary) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.receiptReader = objectMapper.readerFor(Receipt.class);
+        this.receiptWriter = objectMapper.writerFor(Receipt.class);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Receipt.class;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Receipt readInternal(Class<? extends Receipt> clazz, HttpInputMessage inputMessage) throws IOException {
+        MediaType contentType = inputMessage.getHeaders().getContentType();
+        Charset charset = contentType == null ? null : contentType.getCharset();
+        try {
+            if (charset != null && !StandardCharsets.UTF_8.equals(charset)) {
+                return receiptReader.readValue(new InputStreamReader(inputMessage.getBody(), charset));
+            }
+            byte[] body = inputMessage.getBody().readAllBytes();
+            Receipt receipt = fastJson ? ReceiptJsonParser.parse(body, dictionary) : null;
+            return receipt != null ? receipt : receiptReader.readValue(body);
+        } catch (JsonProcessingException e) {
+            // As the Jackson converter reports it, so the response is the same 400
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Receipt receipt, HttpOutputMessage outputMessage) throws IOException {
+        receiptWriter.writeValue(outputMessage.getBody(), receipt);
+    }
+}
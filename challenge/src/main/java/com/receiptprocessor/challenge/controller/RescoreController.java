@@ -0,0 +1,39 @@
+package com.receiptprocessor.challenge.controller;
+
+import com.receiptprocessor.challenge.model.RescoreProgress;
+import com.receiptprocessor.challenge.service.RescoreService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+// Admin endpoints to recompute the points of every stored receipt after the rules changed. Each request needs the admin token
+// (see AdminAccess).
+@RestController
+@RequestMapping("/admin/rescore")
+public class RescoreController {
+
+    private final RescoreService rescoreService;
+
+    private final AdminAccess adminAccess;
+
+    public RescoreController(RescoreService rescoreService, AdminAccess adminAccess) {
+        this.rescoreService = rescoreService;
+        this.adminAccess = adminAccess;
+    }
+
+    // Endpoint to start a rescoring job in the background. Returns CONFLICT while another job runs.
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public RescoreProgress startRescoring(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        adminAccess.check(authorization);
+        return rescoreService.start();
+    }
+
+    // Endpoint to follow the running job, or read how the last one ended
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public RescoreProgress getProgress(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        adminAccess.check(authorization);
+        return rescoreService.progress();
+    }
+}
@@ -0,0 +1,63 @@
+package com.receiptprocessor.challenge.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.rules.RuleSet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+// Admin endpoints to read and replace the points rules while the service runs. Receipts already being scored finish with the previous rules.
+// Each request needs the admin token (see AdminAccess).
+@RestController
+@RequestMapping("/admin/rules")
+public class RulesController {
+
+    private final PointsEngine pointsEngine;
+
+    private final AdminAccess adminAccess;
+
+    public RulesController(PointsEngine pointsEngine, AdminAccess adminAccess) {
+        this.pointsEngine = pointsEngine;
+        this.adminAccess = adminAccess;
+    }
+
+    // Endpoint to read the rule set receipts are scored with
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public RuleSet getRules(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        adminAccess.check(authorization);
+        return pointsEngine.current().getRuleSet();
+    }
+
+    // Endpoint to replace the rule set. The rule set is compiled first; an invalid one is rejected with BAD_REQUEST and changes nothing.
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public RuleSet replaceRules(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                @RequestBody byte[] json) throws IOException {
+        adminAccess.check(authorization);
+        try {
+            return pointsEngine.swap(pointsEngine.read(new ByteArrayInputStream(json))).getRuleSet();
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The rule set is invalid. " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The rule set is invalid. " + e.getMessage());
+        }
+    }
+
+    // Endpoint to read receipt.points.rules again, after editing the file it points to
+    @PostMapping(path = "/reload", produces = MediaType.APPLICATION_JSON_VALUE)
+    public RuleSet reloadRules(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) throws IOException {
+        adminAccess.check(authorization);
+        try {
+            return pointsEngine.reload().getRuleSet();
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The rule set is invalid. " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The rule set is invalid. " + e.getMessage());
+        }
+    }
+}
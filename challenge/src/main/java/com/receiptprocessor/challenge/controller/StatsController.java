@@ -0,0 +1,80 @@
+package com.receiptprocessor.challenge.controller;
+
+import com.receiptprocessor.challenge.model.ReceiptTotals;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Endpoints for the totals of the processed receipts. Every read is served from the counters ReceiptStats keeps on ingest.
+@RestController
+@RequestMapping(value = "/receipts/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+public class StatsController {
+
+    private final ReceiptStats stats;
+
+    public StatsController(ReceiptStats stats) {
+        this.stats = stats;
+    }
+
+    // Endpoint to get the totals of every receipt
+    @GetMapping
+    public ReceiptTotals getOverall() {
+        return stats.overall();
+    }
+
+    // Endpoint to get the totals of one retailer. Returns NOT_FOUND if it has no receipts.
+    @GetMapping("/retailers/{retailer}")
+    public ReceiptTotals getRetailer(@PathVariable String retailer) {
+        ReceiptTotals totals = stats.retailer(retailer);
+        if (totals == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No receipts found for that retailer.");
+        }
+        return totals;
+    }
+
+    // Endpoint to get the retailers with the most points, or with the most receipts when by=receipts
+    @GetMapping("/top-retailers")
+    public List<ReceiptTotals> getTopRetailers(@RequestParam(defaultValue = "10") int limit,
+                                               @RequestParam(defaultValue = "points") String by) {
+        if (limit < 1 || limit > ReceiptStats.MAX_TOP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The limit must be 1 to " + ReceiptStats.MAX_TOP + ".");
+        }
+        if (!by.equals("points") && !by.equals("receipts")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Retailers can only be ranked by points or receipts.");
+        }
+        return stats.topRetailers(limit, by.equals("receipts"));
+    }
+
+    // Endpoint to get the totals of one purchase date. Returns NOT_FOUND if it has no receipts.
+    @GetMapping("/days/{date}")
+    public ReceiptTotals getDay(@PathVariable String date) {
+        ReceiptTotals totals = stats.day(checkDate(date));
+        if (totals == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No receipts found for that date.");
+        }
+        return totals;
+    }
+
+    // Endpoint to get the totals of each purchase date between from and to, both included and both optional
+    @GetMapping("/days")
+    public List<ReceiptTotals> getDays(@RequestParam(required = false) String from,
+                                       @RequestParam(required = false) String to) {
+        return stats.days(from == null ? null : checkDate(from), to == null ? null : checkDate(to));
+    }
+
+    // Dates are keys as receipts send them, so only yyyy-MM-dd finds anything. Returns BAD_REQUEST for anything else.
+    private static String checkDate(String date) {
+        try {
+            LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Dates must be given as yyyy-MM-dd.");
+        }
+        return date;
+    }
+}
@@ -0,0 +1,32 @@
+package com.receiptprocessor.challenge.metrics;
+
+import com.receiptprocessor.challenge.model.StringDictionary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+// Gauges for how full the StringDictionary is and a counter of the names it turned away, read on each scrape.
+@Component
+public class DictionaryMetrics implements MeterBinder {
+
+    private final StringDictionary dictionary;
+
+    public DictionaryMetrics(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("receipts.dictionary.size", dictionary, StringDictionary::size)
+                .description("Retailer names and item descriptions shared between receipts")
+                .register(registry);
+        Gauge.builder("receipts.dictionary.max", dictionary, StringDictionary::getMaxEntries)
+                .description("Names the dictionary shares at most")
+                .register(registry);
+        FunctionCounter.builder("receipts.dictionary.rejected", dictionary, StringDictionary::rejectedCount)
+                .description("Names of valid receipts not shared, as the dictionary was full or the name too long")
+                .register(registry);
+    }
+}
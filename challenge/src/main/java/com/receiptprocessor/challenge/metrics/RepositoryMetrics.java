@@ -0,0 +1,38 @@
+package com.receiptprocessor.challenge.metrics;
+
+import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+// Gauges for the size and memory of the configured ReceiptRepository and counters of the receipts it dropped, read on each scrape.
+@Component
+public class RepositoryMetrics implements MeterBinder {
+
+    private final ReceiptRepository receiptRepository;
+
+    public RepositoryMetrics(ReceiptRepository receiptRepository) {
+        this.receiptRepository = receiptRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("receipts.repository.size", receiptRepository, ReceiptRepository::size)
+                .description("Receipts with points in the repository")
+                .register(registry);
+        Gauge.builder("receipts.repository.memory", receiptRepository, ReceiptRepository::estimatedMemoryBytes)
+                .description("Estimated memory held by the repository, on and off the heap")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("receipts.repository.evictions", receiptRepository, ReceiptRepository::expiredCount)
+                .description("Receipts dropped by the repository")
+                .tag("cause", "expired")
+                .register(registry);
+        FunctionCounter.builder("receipts.repository.evictions", receiptRepository, ReceiptRepository::evictedCount)
+                .description("Receipts dropped by the repository")
+                .tag("cause", "size")
+                .register(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.receiptprocessor.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Outcome of one receipt in a batch: the new receipt id and its points, or the reason the receipt was rejected.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private final String id;
+
+    private final Integer points;
+
+    private final String error;
+
+    private BatchResult(String id, Integer points, String error) {
+        this.id = id;
+        this.points = points;
+        this.error = error;
+    }
+
+    public static BatchResult id(String id, int points) {
+        return new BatchResult(id, points, null);
+    }
+
+    public static BatchResult error(String error) {
+        return new BatchResult(null, null, error);
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public Integer getPoints() {
+        return points;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,72 @@
+package com.receiptprocessor.challenge.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Money amounts as exact integer cents, so rules never depend on floating-point rounding.
+ */
+public final class Cents {
+
+    // Returned for a missing or malformed amount. Valid amounts are never negative.
+    public static final long INVALID = -1;
+
+    private Cents() {
+    }
+
+    /**
+     * Parses an amount such as "6.49" into cents. At most two digits are allowed after the decimal point.
+     * @param amount
+     * @return amount in cents, or INVALID if the amount is null or not a non-negative decimal number
+     */
+    public static long parse(String amount) {
+        if (amount == null) {
+            return INVALID;
+        }
+        // Characters outside ASCII become '?', which is invalid like any other non-digit
+        byte[] bytes = amount.getBytes(StandardCharsets.US_ASCII);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parses an amount from ASCII bytes, such as a value within a request body, so it can be read without a String.
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return amount in cents, or INVALID if the bytes are not a non-negative decimal number
+     */
+    public static long parse(byte[] bytes, int offset, int length) {
+        if (length == 0 || length > 18) {
+            return INVALID;
+        }
+        long cents = 0;
+        int fractionDigits = -1;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[offset + i];
+            if (b == '.' && fractionDigits < 0 && i > 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9' && fractionDigits < 2) {
+                cents = cents * 10 + (b - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                return INVALID;
+            }
+        }
+        // Scale "6", "6." and "6.4" up to whole cents
+        for (int i = Math.max(fractionDigits, 0); i < 2; i++) {
+            cents *= 10;
+        }
+        return cents;
+    }
+
+    /**
+     * Formats cents as an amount such as "6.49", the inverse of parse.
+     * @param cents non-negative
+     * @return amount
+     */
+    public static String format(long cents) {
+        long fraction = cents % 100;
+        return (cents / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
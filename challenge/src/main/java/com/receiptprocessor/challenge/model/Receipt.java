@@ -1,13 +1,18 @@
 package com.receiptprocessor.challenge.model;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 
 import java.util.List;
 
 public class Receipt {
-    @NotNull
-    @Pattern(regexp = "^[\\w\\s\\-&]+$")
-    private String retailer;
+
+    // Layouts of purchaseDate and purchaseTime for packDigits, as their @Pattern
+    public static final String DATE_LAYOUT = "dddd-dd-dd";
+    public static final String TIME_LAYOUT = "dd:dd";
+
+    // Shared with every receipt of the same retailer once the name is interned. Constrained on its getter, as the field is not the String itself.
+    private StringDictionary.Entry retailer;
 
     @NotNull
     @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$")
@@ -24,12 +29,37 @@ public class Receipt {
     @Pattern(regexp = "^\\d+\\.\\d{2}$")
     private String total;
 
+    // Parsed once when total is set, Cents.INVALID if total is missing or malformed
+    @JsonIgnore
+    private long totalCents = Cents.INVALID;
+
+    // yyyyMMdd as digits, e.g. 20220320, parsed once when purchaseDate is set; -1 unless it matches its pattern
+    @JsonIgnore
+    private int purchaseDateDigits = -1;
+
+    // HHmm as digits, e.g. 1433, parsed once when purchaseTime is set; -1 unless it matches its pattern
+    @JsonIgnore
+    private int purchaseTimeDigits = -1;
+
     // Getters and Setters
+    @NotNull
+    @Pattern(regexp = "^[\\w\\s\\-&]+$")
     public String getRetailer() {
-        return retailer;
+        return retailer == null ? null : retailer.getValue();
     }
 
+    // An entry of this receipt's own; ReceiptService replaces it with the shared one once the receipt is valid
     public void setRetailer(String retailer) {
+        this.retailer = retailer == null ? null : new StringDictionary.Entry(retailer, StringDictionary.NO_ID);
+    }
+
+    @JsonIgnore
+    public StringDictionary.Entry getRetailerEntry() {
+        return retailer;
+    }
+
+    @JsonIgnore
+    public void setRetailerEntry(StringDictionary.Entry retailer) {
         this.retailer = retailer;
     }
 
@@ -38,7 +68,18 @@ public class Receipt {
     }
 
     public void setPurchaseDate(String purchaseDate) {
+        setPurchaseDate(purchaseDate, packDigits(purchaseDate, DATE_LAYOUT));
+    }
+
+    // For ReceiptJsonParser, which reads the digits from the request body itself
+    void setPurchaseDate(String purchaseDate, int purchaseDateDigits) {
         this.purchaseDate = purchaseDate;
+        this.purchaseDateDigits = purchaseDateDigits;
+    }
+
+    @JsonIgnore
+    public int getPurchaseDateDigits() {
+        return purchaseDateDigits;
     }
 
     public String getPurchaseTime() {
@@ -46,7 +87,18 @@ public class Receipt {
     }
 
     public void setPurchaseTime(String purchaseTime) {
+        setPurchaseTime(purchaseTime, packDigits(purchaseTime, TIME_LAYOUT));
+    }
+
+    // For ReceiptJsonParser, which reads the digits from the request body itself
+    void setPurchaseTime(String purchaseTime, int purchaseTimeDigits) {
         this.purchaseTime = purchaseTime;
+        this.purchaseTimeDigits = purchaseTimeDigits;
+    }
+
+    @JsonIgnore
+    public int getPurchaseTimeDigits() {
+        return purchaseTimeDigits;
     }
 
     public List<ReceiptItem> getItems() {
@@ -62,6 +114,42 @@ public class Receipt {
     }
 
     public void setTotal(String total) {
+        setTotal(total, Cents.parse(total));
+    }
+
+    // For ReceiptJsonParser, which parses the cents from the request body itself
+    void setTotal(String total, long totalCents) {
         this.total = total;
+        this.totalCents = totalCents;
+    }
+
+    @JsonIgnore
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Packs the digits of a value laid out as the pattern of its field.
+     * @param value
+     * @param layout where d is a digit and any other character is itself, e.g. "dddd-dd-dd"
+     * @return the digits as an int, or -1 if value is null or does not match the layout
+     */
+    public static int packDigits(String value, String layout) {
+        if (value == null || value.length() != layout.length()) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < layout.length(); i++) {
+            char c = value.charAt(i);
+            if (layout.charAt(i) == 'd') {
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                packed = packed * 10 + (c - '0');
+            } else if (c != layout.charAt(i)) {
+                return -1;
+            }
+        }
+        return packed;
     }
 }
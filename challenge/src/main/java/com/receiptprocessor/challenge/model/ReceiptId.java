@@ -0,0 +1,152 @@
+package com.receiptprocessor.challenge.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A receipt id as its 128 bits, so stores key on two longs instead of a 36-character String.
+ * Ids are time-ordered (version 7) UUIDs: 48 bits of Unix milliseconds followed by 74 random bits. Clients still see the
+ * canonical UUID string; it is parsed once when a request comes in and formatted once when an id goes out.
+ * The 12 bits after the version (rand_a) name the shard that stores the receipt; see ShardRouter.
+ */
+public final class ReceiptId implements Comparable<ReceiptId> {
+
+    // Shards an id can name
+    public static final int SHARDS = 4096;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long mostSigBits;
+
+    private final long leastSigBits;
+
+    public ReceiptId(long mostSigBits, long leastSigBits) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+    }
+
+    /**
+     * Creates a new version 7 UUID. UUID.randomUUID() draws from a shared SecureRandom that holds a monitor while reading
+     * the OS entropy source, which pins virtual threads to their carrier; ThreadLocalRandom needs no lock.
+     * @return receiptId
+     */
+    public static ReceiptId generate() {
+        return generate(ThreadLocalRandom.current().nextInt(SHARDS));
+    }
+
+    /**
+     * Creates a new version 7 UUID naming the given shard.
+     * @param shard 0 to SHARDS - 1
+     * @return receiptId
+     */
+    public static ReceiptId generate(int shard) {
+        long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (shard & (SHARDS - 1));
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new ReceiptId(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Parses the canonical 8-4-4-4-12 hex form, in either case.
+     * @param value
+     * @return receiptId, or null if value is null or not a canonical UUID string
+     */
+    public static ReceiptId parse(String value) {
+        if (value == null || value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-'
+                || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return null;
+        }
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            if (digits++ < 16) {
+                mostSigBits = (mostSigBits << 4) | digit;
+            } else {
+                leastSigBits = (leastSigBits << 4) | digit;
+            }
+        }
+        return new ReceiptId(mostSigBits, leastSigBits);
+    }
+
+    public long getMostSigBits() {
+        return mostSigBits;
+    }
+
+    public long getLeastSigBits() {
+        return leastSigBits;
+    }
+
+    // Shard named by the id, 0 to SHARDS - 1.
+    public int getShard() {
+        return (int) (mostSigBits & (SHARDS - 1));
+    }
+
+    // Mixes all 128 bits, so the random low bits spread ids evenly across hash tables.
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mix(mostSigBits, leastSigBits));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ReceiptId)) {
+            return false;
+        }
+        ReceiptId id = (ReceiptId) other;
+        return mostSigBits == id.mostSigBits && leastSigBits == id.leastSigBits;
+    }
+
+    // Ids generated in a later millisecond sort after earlier ones.
+    @Override
+    public int compareTo(ReceiptId other) {
+        int result = Long.compareUnsigned(mostSigBits, other.mostSigBits);
+        return result != 0 ? result : Long.compareUnsigned(leastSigBits, other.leastSigBits);
+    }
+
+    // Canonical lower-case UUID string.
+    @Override
+    public String toString() {
+        char[] chars = new char[36];
+        hex(chars, 0, mostSigBits >>> 32, 8);
+        chars[8] = '-';
+        hex(chars, 9, mostSigBits >>> 16, 4);
+        chars[13] = '-';
+        hex(chars, 14, mostSigBits, 4);
+        chars[18] = '-';
+        hex(chars, 19, leastSigBits >>> 48, 4);
+        chars[23] = '-';
+        hex(chars, 24, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    /**
+     * 64-bit hash of the two halves of an id (murmur3 finalizer), shared with the primitive-keyed stores.
+     * @param mostSigBits
+     * @param leastSigBits
+     * @return hash
+     */
+    public static long mix(long mostSigBits, long leastSigBits) {
+        long hash = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static void hex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
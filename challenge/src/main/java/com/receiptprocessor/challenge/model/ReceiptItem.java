@@ -1,24 +1,41 @@
 package com.receiptprocessor.challenge.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.NotNull;
 
 public class ReceiptItem {
 
-    @NotNull
-    @Pattern(regexp = "^[\\w\\s\\-]+$")
-    private String shortDescription;
+    // Shared with every item of the same description once the name is interned. Constrained on its getter, as the field is not the String itself.
+    private StringDictionary.Entry shortDescription;
 
     @NotNull
     @Pattern(regexp = "^\\d+\\.\\d{2}$")
     private String price;
 
+    // Parsed once when price is set, Cents.INVALID if price is missing or malformed
+    @JsonIgnore
+    private long priceCents = Cents.INVALID;
+
     // Getters and Setters
+    @NotNull
+    @Pattern(regexp = "^[\\w\\s\\-]+$")
     public String getShortDescription() {
-        return shortDescription;
+        return shortDescription == null ? null : shortDescription.getValue();
     }
 
+    // An entry of this item's own; ReceiptService replaces it with the shared one once the receipt is valid
     public void setShortDescription(String shortDescription) {
+        this.shortDescription = shortDescription == null ? null : new StringDictionary.Entry(shortDescription, StringDictionary.NO_ID);
+    }
+
+    @JsonIgnore
+    public StringDictionary.Entry getShortDescriptionEntry() {
+        return shortDescription;
+    }
+
+    @JsonIgnore
+    public void setShortDescriptionEntry(StringDictionary.Entry shortDescription) {
         this.shortDescription = shortDescription;
     }
 
@@ -27,6 +44,17 @@ public class ReceiptItem {
     }
 
     public void setPrice(String price) {
+        setPrice(price, Cents.parse(price));
+    }
+
+    // For ReceiptJsonParser, which parses the cents from the request body itself
+    void setPrice(String price, long priceCents) {
         this.price = price;
+        this.priceCents = priceCents;
+    }
+
+    @JsonIgnore
+    public long getPriceCents() {
+        return priceCents;
     }
 }
@@ -0,0 +1,288 @@
+package com.receiptprocessor.challenge.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a Receipt straight from the UTF-8 bytes of a request body, in one pass without reflection or a char copy of the
+ * body. Retailer and descriptions are looked up in the given StringDictionary by their bytes, amounts are parsed into cents and
+ * the date and time into digits as they are scanned, and the short values that repeat across receipts (dates, times,
+ * amounts) come from a small cache of Strings, so a typical receipt is bound without a String per field.
+ *
+ * Only the bodies clients actually send are read here: one object with the api.yml fields, and string values that are
+ * ASCII without escapes. For anything else (escapes, other text, null or non-string values, unknown fields, malformed
+ * JSON) parse returns null and the caller reads the body with Jackson instead, which binds it or reports the error as before.
+ */
+public final class ReceiptJsonParser {
+
+    // Slots of the value cache, a power of two
+    private static final int VALUE_SLOTS = 4096;
+
+    // Recently read dates, times and amounts by hash of their bytes. Written without a lock: a slot holds some String or
+    // null, and a miss only costs a new String.
+    private static final String[] VALUES = new String[VALUE_SLOTS];
+
+    private static final byte[] RETAILER = ascii("retailer");
+    private static final byte[] PURCHASE_DATE = ascii("purchaseDate");
+    private static final byte[] PURCHASE_TIME = ascii("purchaseTime");
+    private static final byte[] TOTAL = ascii("total");
+    private static final byte[] ITEMS = ascii("items");
+    private static final byte[] SHORT_DESCRIPTION = ascii("shortDescription");
+    private static final byte[] PRICE = ascii("price");
+
+    private final byte[] bytes;
+
+    private final int end;
+
+    private final StringDictionary dictionary;
+
+    private int position;
+
+    // Bounds of the last string read, without its quotes
+    private int stringStart;
+
+    private int stringLength;
+
+    private ReceiptJsonParser(byte[] bytes, int offset, int end, StringDictionary dictionary) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = end;
+        this.dictionary = dictionary;
+    }
+
+    // Reads a whole body; see parse(byte[], int, int, StringDictionary).
+    public static Receipt parse(byte[] bytes, StringDictionary dictionary) {
+        return parse(bytes, 0, bytes.length, dictionary);
+    }
+
+    /**
+     * Reads a receipt that makes up the whole of the given bytes.
+     * @param bytes UTF-8 JSON
+     * @param offset
+     * @param length
+     * @param dictionary dictionary the retailer and descriptions are looked up in; nothing is added to it
+     * @return receipt, or null if the bytes are anything but the plain receipt this parser reads; read them with Jackson then
+     */
+    public static Receipt parse(byte[] bytes, int offset, int length, StringDictionary dictionary) {
+        ReceiptJsonParser parser = new ReceiptJsonParser(bytes, offset, offset + length, dictionary);
+        Receipt receipt = parser.receipt();
+        return receipt != null && parser.skipWhitespace() == parser.end ? receipt : null;
+    }
+
+    private Receipt receipt() {
+        if (!expect('{')) {
+            return null;
+        }
+        Receipt receipt = new Receipt();
+        if (next() == '}') {
+            position++;
+            return receipt;
+        }
+        do {
+            if (!string() || !expect(':')) {
+                return null;
+            }
+            if (isKey(RETAILER)) {
+                if (!string()) {
+                    return null;
+                }
+                receipt.setRetailerEntry(dictionary.lookup(bytes, stringStart, stringLength));
+            } else if (isKey(PURCHASE_DATE)) {
+                if (!string()) {
+                    return null;
+                }
+                receipt.setPurchaseDate(value(), digits(Receipt.DATE_LAYOUT));
+            } else if (isKey(PURCHASE_TIME)) {
+                if (!string()) {
+                    return null;
+                }
+                receipt.setPurchaseTime(value(), digits(Receipt.TIME_LAYOUT));
+            } else if (isKey(TOTAL)) {
+                if (!string()) {
+                    return null;
+                }
+                receipt.setTotal(value(), Cents.parse(bytes, stringStart, stringLength));
+            } else if (isKey(ITEMS)) {
+                List<ReceiptItem> items = items();
+                if (items == null) {
+                    return null;
+                }
+                receipt.setItems(items);
+            } else {
+                return null;
+            }
+        } while (separator());
+        return expect('}') ? receipt : null;
+    }
+
+    private List<ReceiptItem> items() {
+        if (!expect('[')) {
+            return null;
+        }
+        List<ReceiptItem> items = new ArrayList<>();
+        if (next() == ']') {
+            position++;
+            return items;
+        }
+        do {
+            ReceiptItem item = item();
+            if (item == null) {
+                return null;
+            }
+            items.add(item);
+        } while (separator());
+        return expect(']') ? items : null;
+    }
+
+    private ReceiptItem item() {
+        if (!expect('{')) {
+            return null;
+        }
+        ReceiptItem item = new ReceiptItem();
+        if (next() == '}') {
+            position++;
+            return item;
+        }
+        do {
+            if (!string() || !expect(':')) {
+                return null;
+            }
+            if (isKey(SHORT_DESCRIPTION)) {
+                if (!string()) {
+                    return null;
+                }
+                item.setShortDescriptionEntry(dictionary.lookup(bytes, stringStart, stringLength));
+            } else if (isKey(PRICE)) {
+                if (!string()) {
+                    return null;
+                }
+                item.setPrice(value(), Cents.parse(bytes, stringStart, stringLength));
+            } else {
+                return null;
+            }
+        } while (separator());
+        return expect('}') ? item : null;
+    }
+
+    // Reads a string, keeping its bounds. False for anything but an ASCII string without escapes or control characters.
+    private boolean string() {
+        if (!expect('"')) {
+            return false;
+        }
+        int start = position;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '"') {
+                stringStart = start;
+                stringLength = i - start;
+                position = i + 1;
+                return true;
+            }
+            // Bytes of non-ASCII UTF-8 are negative, so below 0x20 too
+            if (b == '\\' || b < 0x20) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Whether the last string read is this key
+    private boolean isKey(byte[] key) {
+        if (stringLength != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (bytes[stringStart + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The last string read, from the value cache if it was read recently
+    private String value() {
+        int hash = 0;
+        for (int i = stringStart, stringEnd = stringStart + stringLength; i < stringEnd; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (VALUE_SLOTS - 1);
+        String value = VALUES[slot];
+        if (value != null && value.hashCode() == hash && matches(value)) {
+            return value;
+        }
+        value = new String(bytes, stringStart, stringLength, StandardCharsets.ISO_8859_1);
+        VALUES[slot] = value;
+        return value;
+    }
+
+    private boolean matches(String value) {
+        if (value.length() != stringLength) {
+            return false;
+        }
+        for (int i = 0; i < stringLength; i++) {
+            if (value.charAt(i) != bytes[stringStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The digits of the last string read as Receipt.packDigits reads them, -1 unless it matches the layout
+    private int digits(String layout) {
+        if (stringLength != layout.length()) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < stringLength; i++) {
+            byte b = bytes[stringStart + i];
+            if (layout.charAt(i) == 'd') {
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                packed = packed * 10 + (b - '0');
+            } else if (b != layout.charAt(i)) {
+                return -1;
+            }
+        }
+        return packed;
+    }
+
+    // Consumes a comma and returns true, or returns false before anything else
+    private boolean separator() {
+        if (next() == ',') {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    // Consumes c after any whitespace
+    private boolean expect(char c) {
+        if (next() != c) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    // The next byte after any whitespace, without consuming it; -1 at the end
+    private int next() {
+        return skipWhitespace() < end ? bytes[position] : -1;
+    }
+
+    private int skipWhitespace() {
+        while (position < end) {
+            byte b = bytes[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,54 @@
+package com.receiptprocessor.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Receipts, points and spend of all receipts, of one retailer or of one purchase date, as served by /receipts/stats.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReceiptTotals {
+
+    private final String retailer;
+
+    private final String date;
+
+    private final long receipts;
+
+    private final long points;
+
+    private final long totalCents;
+
+    public ReceiptTotals(String retailer, String date, long receipts, long points, long totalCents) {
+        this.retailer = retailer;
+        this.date = date;
+        this.receipts = receipts;
+        this.points = points;
+        this.totalCents = totalCents;
+    }
+
+    // Getters
+    public String getRetailer() {
+        return retailer;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public long getReceipts() {
+        return receipts;
+    }
+
+    public long getPoints() {
+        return points;
+    }
+
+    // Sum of the receipt totals, as an amount such as "35.35".
+    public String getTotal() {
+        return Cents.format(totalCents);
+    }
+
+    @JsonIgnore
+    public long getTotalCents() {
+        return totalCents;
+    }
+}
@@ -0,0 +1,82 @@
+package com.receiptprocessor.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Progress of a bulk rescoring job, as reported by GET /admin/rescore.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RescoreProgress {
+
+    public enum State { IDLE, RUNNING, DONE, FAILED }
+
+    private final State state;
+
+    private final String ruleSet;
+
+    // Receipts in the repository when the job started; an estimate, as receipts keep arriving
+    private final long total;
+
+    private final long processed;
+
+    private final long changed;
+
+    // Receipts without a full receipt to score, or dropped by the repository meanwhile
+    private final long skipped;
+
+    private final long elapsedMillis;
+
+    private final String error;
+
+    public RescoreProgress(State state, String ruleSet, long total, long processed, long changed, long skipped,
+                           long elapsedMillis, String error) {
+        this.state = state;
+        this.ruleSet = ruleSet;
+        this.total = total;
+        this.processed = processed;
+        this.changed = changed;
+        this.skipped = skipped;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    public static RescoreProgress idle() {
+        return new RescoreProgress(State.IDLE, null, 0, 0, 0, 0, 0, null);
+    }
+
+    // Getters
+    public State getState() {
+        return state;
+    }
+
+    public String getRuleSet() {
+        return ruleSet;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // Receipts processed per second so far.
+    public long getReceiptsPerSecond() {
+        return elapsedMillis == 0 ? 0 : processed * 1000 / elapsedMillis;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,246 @@
+package com.receiptprocessor.challenge.model;
+
+import com.receiptprocessor.challenge.service.PointsCalculator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded dictionary of the retailer names and item descriptions that repeat across receipts. Every receipt with the
+ * same name shares one Entry, which holds the String once and the lengths the points rules need, computed once per name
+ * instead of once per receipt. Entries get dense ids, so stored receipts can keep an int instead of the String.
+ *
+ * One dictionary is the StringDictionary bean, sized by receipt.dictionary.max-entries, and handed to whatever binds or
+ * stores receipts. Binding a request only looks names up: ReceiptJsonParser in the dictionary it is given, while Jackson
+ * leaves Receipt and ReceiptItem with entries of their own. A name is added by intern, which ReceiptService calls once a
+ * receipt is valid and the repository calls when it stores one, so a request that is rejected never takes a place in the
+ * dictionary.
+ * Lookups are a ConcurrentHashMap read; only a new name takes the lock to get its id. Entries are never removed: once
+ * receipt.dictionary.max-entries names are known, or for names longer than MAX_LENGTH, intern returns an Entry of
+ * the receipt's own without an id and counts the name as rejected.
+ *
+ * Names read straight from a request body are looked up by their bytes in a small direct-mapped cache of recent entries,
+ * so a name seen before costs no String at all.
+ */
+public final class StringDictionary {
+
+    // Id of an Entry that is not in the dictionary
+    public static final int NO_ID = -1;
+
+    // Longer names are not shared, so a few huge descriptions cannot fill the dictionary's memory
+    public static final int MAX_LENGTH = 128;
+
+    // Names shared at most unless receipt.dictionary.max-entries says otherwise
+    public static final int DEFAULT_MAX_ENTRIES = 65_536;
+
+    // Slots of the recent-entry cache, a power of two
+    private static final int RECENT_SLOTS = 4096;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Entry of each id. Replaced by a larger copy when full; only written under the lock.
+    private volatile Entry[] byId = new Entry[1024];
+
+    private volatile int size;
+
+    // Entries with an id, by hash of their name. Written without a lock: a slot holds some entry or null, and a miss only
+    // costs the String lookup. Entry fields are final, so an entry read from here is fully built.
+    private final Entry[] recent = new Entry[RECENT_SLOTS];
+
+    private final int maxEntries;
+
+    // Names intern could not add
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param maxEntries names to share at most
+     */
+    public StringDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the shared Entry of value, or an Entry of its own without an id if value is not in the dictionary.
+     * Does not add value.
+     * @param value
+     * @return entry
+     */
+    public Entry lookup(String value) {
+        Entry entry = entries.get(value);
+        return entry != null ? entry : new Entry(value, NO_ID);
+    }
+
+    /**
+     * Returns the shared Entry of a name given as ASCII bytes, as lookup(String) does, without a String if it is cached.
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return entry, with NO_ID if the name is not in the dictionary
+     */
+    public Entry lookup(byte[] bytes, int offset, int length) {
+        // String.hashCode of the name, which the cached entry's String has already computed
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (RECENT_SLOTS - 1);
+        Entry entry = recent[slot];
+        if (entry != null && entry.value.hashCode() == hash && entry.matches(bytes, offset, length)) {
+            return entry;
+        }
+        entry = lookup(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+        if (entry.id != NO_ID) {
+            recent[slot] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the shared Entry of value, adding it if there is room.
+     * @param value
+     * @return entry, with NO_ID if the dictionary is full or value is longer than MAX_LENGTH
+     */
+    public Entry intern(String value) {
+        Entry entry = entries.get(value);
+        if (entry != null) {
+            return entry;
+        }
+        if (value.length() > MAX_LENGTH || size >= maxEntries) {
+            rejected.increment();
+            return new Entry(value, NO_ID);
+        }
+        synchronized (this) {
+            entry = entries.get(value);
+            if (entry != null) {
+                return entry;
+            }
+            int id = size;
+            if (id >= maxEntries) {
+                rejected.increment();
+                return new Entry(value, NO_ID);
+            }
+            entry = new Entry(value, id);
+            Entry[] ids = byId;
+            if (id == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[id] = entry;
+            byId = ids;
+            size = id + 1;
+            // Published last, so a reader that finds the entry by value can also find it by id
+            entries.put(value, entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Returns the shared Entry of a name already looked up, adding it if there is room. An entry of this dictionary is
+     * returned as it is, without a map lookup.
+     * @param entry
+     * @return entry, with NO_ID if the dictionary is full or the name is longer than MAX_LENGTH
+     */
+    public Entry intern(Entry entry) {
+        int id = entry.id;
+        if (id != NO_ID && id < size && byId[id] == entry) {
+            return entry;
+        }
+        return intern(entry.value);
+    }
+
+    /**
+     * Replaces the retailer and item description entries of a valid receipt with the shared ones, adding the names
+     * if there is room.
+     * @param receipt
+     */
+    public void intern(Receipt receipt) {
+        if (receipt.getRetailerEntry() != null) {
+            receipt.setRetailerEntry(intern(receipt.getRetailerEntry()));
+        }
+        if (receipt.getItems() == null) {
+            return;
+        }
+        for (ReceiptItem item : receipt.getItems()) {
+            if (item != null && item.getShortDescriptionEntry() != null) {
+                item.setShortDescriptionEntry(intern(item.getShortDescriptionEntry()));
+            }
+        }
+    }
+
+    /**
+     * Returns the entry with an id returned by intern.
+     * @param id
+     * @return entry
+     */
+    public Entry get(int id) {
+        return byId[id];
+    }
+
+    // Number of names shared.
+    public int size() {
+        return size;
+    }
+
+    // Names intern could not add since the start, because the dictionary was full or the name too long.
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    // Names shared at most.
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    // A name and the values the points rules read from it.
+    public static final class Entry {
+
+        private final String value;
+
+        private final int id;
+
+        private final int alphanumericCount;
+
+        private final int trimmedLength;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+            this.alphanumericCount = PointsCalculator.countAlphanumeric(value);
+            this.trimmedLength = PointsCalculator.trimmedLength(value);
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        // Id in the dictionary, NO_ID if the name is not shared
+        public int getId() {
+            return id;
+        }
+
+        // Characters in [a-zA-Z0-9], for the retailer name rule
+        public int getAlphanumericCount() {
+            return alphanumericCount;
+        }
+
+        // Length after String.trim(), for the item description rule
+        public int getTrimmedLength() {
+            return trimmedLength;
+        }
+
+        // Whether the name is these ASCII bytes
+        boolean matches(byte[] bytes, int offset, int length) {
+            if (value.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.receiptprocessor.challenge.repository;
+
+import com.receiptprocessor.challenge.model.Cents;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.model.StringDictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Receipt as ReceiptRepositoryImpl keeps it on the heap: StringDictionary ids for the retailer and item descriptions,
+ * the purchase date and time packed into ints, and every amount in cents, with the items as two primitive arrays.
+ * About 70 bytes plus 12 per item, where the Receipt it was made from holds a dozen Strings and an object per item.
+ * toReceipt gives back a Receipt with the same values.
+ */
+final class CompactReceipt {
+
+    private final int retailer;
+
+    // yyyyMMdd as digits, e.g. 20220320
+    private final int purchaseDate;
+
+    // HHmm as digits, e.g. 1433
+    private final int purchaseTime;
+
+    private final long totalCents;
+
+    private final int[] descriptions;
+
+    private final long[] priceCents;
+
+    private CompactReceipt(int retailer, int purchaseDate, int purchaseTime, long totalCents, int[] descriptions,
+                           long[] priceCents) {
+        this.retailer = retailer;
+        this.purchaseDate = purchaseDate;
+        this.purchaseTime = purchaseTime;
+        this.totalCents = totalCents;
+        this.descriptions = descriptions;
+        this.priceCents = priceCents;
+    }
+
+    /**
+     * Packs a receipt, if it can be given back exactly: every field set, date and time as the api.yml patterns,
+     * amounts without leading zeros, and the retailer and descriptions in the dictionary, interned here if they are not yet.
+     * @param receipt
+     * @param dictionary
+     * @return compact receipt, or null to keep the Receipt itself
+     */
+    static CompactReceipt of(Receipt receipt, StringDictionary dictionary) {
+        int retailer = id(dictionary, receipt.getRetailerEntry());
+        int purchaseDate = receipt.getPurchaseDateDigits();
+        int purchaseTime = receipt.getPurchaseTimeDigits();
+        long totalCents = cents(receipt.getTotal(), receipt.getTotalCents());
+        List<ReceiptItem> items = receipt.getItems();
+        if (retailer < 0 || purchaseDate < 0 || purchaseTime < 0 || totalCents < 0 || items == null) {
+            return null;
+        }
+        int itemCount = items.size();
+        int[] descriptions = new int[itemCount];
+        long[] priceCents = new long[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            ReceiptItem item = items.get(i);
+            if (item == null) {
+                return null;
+            }
+            descriptions[i] = id(dictionary, item.getShortDescriptionEntry());
+            priceCents[i] = cents(item.getPrice(), item.getPriceCents());
+            if (descriptions[i] < 0 || priceCents[i] < 0) {
+                return null;
+            }
+        }
+        return new CompactReceipt(retailer, purchaseDate, purchaseTime, totalCents, descriptions, priceCents);
+    }
+
+    // Unpacks into a new Receipt. The retailer and descriptions are the entries of the dictionary it was packed with.
+    Receipt toReceipt(StringDictionary dictionary) {
+        Receipt receipt = new Receipt();
+        receipt.setRetailerEntry(dictionary.get(retailer));
+        receipt.setPurchaseDate(unpackDigits(purchaseDate, Receipt.DATE_LAYOUT));
+        receipt.setPurchaseTime(unpackDigits(purchaseTime, Receipt.TIME_LAYOUT));
+        receipt.setTotal(Cents.format(totalCents));
+        List<ReceiptItem> items = new ArrayList<>(descriptions.length);
+        for (int i = 0; i < descriptions.length; i++) {
+            ReceiptItem item = new ReceiptItem();
+            item.setShortDescriptionEntry(dictionary.get(descriptions[i]));
+            item.setPrice(Cents.format(priceCents[i]));
+            items.add(item);
+        }
+        receipt.setItems(items);
+        return receipt;
+    }
+
+    private static int id(StringDictionary dictionary, StringDictionary.Entry entry) {
+        return entry == null ? StringDictionary.NO_ID : dictionary.intern(entry).getId();
+    }
+
+    // The parsed cents, or -1 unless formatting them gives back the amount as sent
+    private static long cents(String amount, long cents) {
+        return cents != Cents.INVALID && Cents.format(cents).equals(amount) ? cents : -1;
+    }
+
+    private static String unpackDigits(int packed, String layout) {
+        char[] value = new char[layout.length()];
+        for (int i = value.length - 1; i >= 0; i--) {
+            if (layout.charAt(i) == 'd') {
+                value[i] = (char) ('0' + packed % 10);
+                packed /= 10;
+            } else {
+                value[i] = layout.charAt(i);
+            }
+        }
+        return new String(value);
+    }
+}
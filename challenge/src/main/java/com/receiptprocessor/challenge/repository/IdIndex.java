@@ -0,0 +1,606 @@
+package com.receiptprocessor.challenge.repository;
+
+import com.receiptprocessor.challenge.model.ReceiptId;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Concurrent map from a 128-bit receipt id to a long, stored in primitive arrays: no key objects, no boxed values and no
+ * per-entry nodes, 24 bytes per slot, about 40 per receipt at the load factor. PointsIndex keeps int points in it, the
+ * off-heap repository the offsets of its records.
+ *
+ * The table is split into stripes, each an open-addressing (linear probing) table behind its own StampedLock.
+ * Lookups are optimistic reads that only fall back to the read lock if a write to the same stripe overlapped them.
+ * The nil id (all zero bits) marks free slots, so it is kept in a field of its stripe instead.
+ *
+ * Optionally bounded. With a time-to-live each slot also keeps the second it was written in (4 more bytes); a lookup
+ * never returns an expired entry, and expire() removes them in the background. With a maximum number of entries each slot
+ * keeps a referenced flag (1 more byte) that lookups set, and a full stripe makes room with the CLOCK algorithm: a hand
+ * sweeps the slots, clearing set flags and evicting the first entry whose flag is already clear, which approximates LRU
+ * without reordering anything on reads. The bound is split evenly across stripes, so it holds to within one entry per stripe.
+ * Entries are removed by shifting the rest of their probe run back, so there are no tombstones and lookups stay short.
+ * An optional Visitor is told of every entry dropped because it expired or was evicted, or overwritten once expired.
+ */
+final class IdIndex {
+
+    // Returned by get for an id without a value; any other long is a valid value
+    static final long MISSING = Long.MIN_VALUE;
+
+    private static final int STRIPES = 64;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Grow a stripe when it is this full
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Entries allowed per stripe, Integer.MAX_VALUE if unbounded
+    private final int maxPerStripe;
+
+    // 0 if entries never expire
+    private final long ttlSeconds;
+
+    private final LongSupplier clockMillis;
+
+    // Write times are kept as int seconds since this instant
+    private final long epochMillis;
+
+    // Told of dropped entries under the write lock of their stripe, null if nobody needs to know
+    private final Visitor dropped;
+
+    IdIndex() {
+        this(0, 0, System::currentTimeMillis, null);
+    }
+
+    /**
+     * @param maxEntries entries to keep at most, 0 for no bound
+     * @param ttlSeconds seconds an entry is kept after it was written, 0 to keep entries until evicted
+     * @param clockMillis current time in milliseconds
+     * @param dropped visits each entry that expired or was evicted as it is dropped, or null
+     */
+    IdIndex(long maxEntries, long ttlSeconds, LongSupplier clockMillis, Visitor dropped) {
+        this.maxPerStripe = maxEntries <= 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (maxEntries + STRIPES - 1) / STRIPES);
+        this.ttlSeconds = Math.max(0, ttlSeconds);
+        this.clockMillis = clockMillis;
+        this.epochMillis = clockMillis.getAsLong();
+        this.dropped = dropped;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(this.ttlSeconds > 0, maxPerStripe != Integer.MAX_VALUE);
+        }
+    }
+
+    // Saves the value for the id, replacing an earlier value and its write time.
+    void put(long mostSigBits, long leastSigBits, long value) {
+        long hash = ReceiptId.mix(mostSigBits, leastSigBits);
+        stripe(hash).put(mostSigBits, leastSigBits, (int) hash, value, now());
+    }
+
+    /**
+     * Looks up the value of an id.
+     * @return value, or MISSING
+     */
+    long get(long mostSigBits, long leastSigBits) {
+        long hash = ReceiptId.mix(mostSigBits, leastSigBits);
+        return stripe(hash).get(mostSigBits, leastSigBits, (int) hash, now());
+    }
+
+    /**
+     * Replaces the value of an id that still has expectedValue, keeping its write time, so the entry expires when it
+     * would have. An id that is missing or expired is left out.
+     * @return whether the value was replaced
+     */
+    boolean replace(long mostSigBits, long leastSigBits, long expectedValue, long value) {
+        long hash = ReceiptId.mix(mostSigBits, leastSigBits);
+        return stripe(hash).replace(mostSigBits, leastSigBits, (int) hash, expectedValue, value, now());
+    }
+
+    /**
+     * Replaces the value of an id with function(current value, or MISSING) under the write lock of its stripe, so concurrent
+     * updates of one id apply one after the other. If function returns MISSING the id is removed, or left out if it had no
+     * value. An expired entry counts as missing. function runs under the lock, so it must not use the index itself.
+     * @param mostSigBits
+     * @param leastSigBits
+     * @param written whether an entry that is kept counts as written now, rather than keeping its write time
+     * @param function returns the new value
+     * @return new value, or MISSING
+     */
+    long update(long mostSigBits, long leastSigBits, boolean written, LongUnaryOperator function) {
+        long hash = ReceiptId.mix(mostSigBits, leastSigBits);
+        return stripe(hash).update(mostSigBits, leastSigBits, (int) hash, written, function, now());
+    }
+
+    /**
+     * Removes every expired entry, one stripe at a time under its write lock.
+     * @return number of entries removed
+     */
+    int expire() {
+        if (ttlSeconds == 0) {
+            return 0;
+        }
+        int now = now();
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                removed += stripe.expire(now);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        return removed;
+    }
+
+    // Number of ids with a value, including expired entries not yet removed by expire().
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // Entries removed because they outlived the time-to-live.
+    long expiredCount() {
+        long expired = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                expired += stripe.expired;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return expired;
+    }
+
+    // Entries evicted to stay within the maximum number of entries.
+    long evictedCount() {
+        long evicted = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                evicted += stripe.evicted;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return evicted;
+    }
+
+    // Bytes held by the slot arrays of all stripes, used or not.
+    long estimatedBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            // A racy read is fine for an estimate
+            int capacity = stripe.values.length;
+            bytes += capacity * 24L + (stripe.writtenAt != null ? capacity * 4L : 0) + (stripe.referenced != null ? capacity : 0);
+        }
+        return bytes;
+    }
+
+    // Visits every id that has not expired and its value, one stripe at a time under its read lock.
+    void forEach(Visitor visitor) {
+        int now = now();
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.forEach(visitor, now);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    // Removes every entry.
+    void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    interface Visitor {
+        void accept(long mostSigBits, long leastSigBits, long value);
+    }
+
+    // High bits pick the stripe, low bits the slot within it
+    private Stripe stripe(long hash) {
+        return stripes[(int) (hash >>> 58)];
+    }
+
+    // Seconds since the index was created; the clock is only read when entries expire
+    private int now() {
+        return ttlSeconds == 0 ? 0 : (int) ((clockMillis.getAsLong() - epochMillis) / 1000);
+    }
+
+    private final class Stripe {
+
+        final StampedLock lock = new StampedLock();
+
+        // Slot i holds its id in keys[2i] and keys[2i + 1]. Replaced as a whole on resize, never shrunk.
+        long[] keys = new long[INITIAL_CAPACITY * 2];
+        long[] values = new long[INITIAL_CAPACITY];
+        // Second each slot was written in, if entries expire
+        int[] writtenAt;
+        // Set when a slot is read and cleared by the clock hand, if the stripe is bounded
+        byte[] referenced;
+
+        int size;
+        boolean hasNil;
+        long nilValue;
+        int nilWrittenAt;
+
+        // Next slot the clock hand looks at
+        int hand;
+
+        long expired;
+        long evicted;
+
+        Stripe(boolean expiring, boolean bounded) {
+            writtenAt = expiring ? new int[INITIAL_CAPACITY] : null;
+            referenced = bounded ? new byte[INITIAL_CAPACITY] : null;
+        }
+
+        void put(long mostSigBits, long leastSigBits, int hash, long value, int now) {
+            long stamp = lock.writeLock();
+            try {
+                if (mostSigBits == 0 && leastSigBits == 0) {
+                    if (hasNil && expired(nilWrittenAt, now)) {
+                        drop(0, 0, nilValue);
+                    }
+                    if (!hasNil) {
+                        size++;
+                    }
+                    hasNil = true;
+                    nilValue = value;
+                    nilWrittenAt = now;
+                    return;
+                }
+                int slot = find(mostSigBits, leastSigBits, hash);
+                if (slot >= 0) {
+                    if (writtenAt != null && expired(writtenAt[slot], now)) {
+                        drop(mostSigBits, leastSigBits, values[slot]);
+                    }
+                    values[slot] = value;
+                    if (writtenAt != null) {
+                        writtenAt[slot] = now;
+                    }
+                    return;
+                }
+                insert(mostSigBits, leastSigBits, hash, value, now);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(long mostSigBits, long leastSigBits, int hash, long expectedValue, long value, int now) {
+            long stamp = lock.writeLock();
+            try {
+                if (mostSigBits == 0 && leastSigBits == 0) {
+                    if (!hasNil || expired(nilWrittenAt, now) || nilValue != expectedValue) {
+                        return false;
+                    }
+                    nilValue = value;
+                    return true;
+                }
+                int slot = find(mostSigBits, leastSigBits, hash);
+                if (slot < 0 || (writtenAt != null && expired(writtenAt[slot], now)) || values[slot] != expectedValue) {
+                    return false;
+                }
+                values[slot] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long update(long mostSigBits, long leastSigBits, int hash, boolean written, LongUnaryOperator function, int now) {
+            long stamp = lock.writeLock();
+            try {
+                if (mostSigBits == 0 && leastSigBits == 0) {
+                    if (hasNil && expired(nilWrittenAt, now)) {
+                        drop(0, 0, nilValue);
+                        hasNil = false;
+                        size--;
+                    }
+                    long value = function.applyAsLong(hasNil ? nilValue : MISSING);
+                    if (value == MISSING) {
+                        if (hasNil) {
+                            hasNil = false;
+                            size--;
+                        }
+                    } else {
+                        if (!hasNil || written) {
+                            nilWrittenAt = now;
+                        }
+                        if (!hasNil) {
+                            size++;
+                        }
+                        hasNil = true;
+                        nilValue = value;
+                    }
+                    return value;
+                }
+                int slot = find(mostSigBits, leastSigBits, hash);
+                if (slot >= 0 && writtenAt != null && expired(writtenAt[slot], now)) {
+                    drop(mostSigBits, leastSigBits, values[slot]);
+                    remove(slot);
+                    slot = -1;
+                }
+                long value = function.applyAsLong(slot >= 0 ? values[slot] : MISSING);
+                if (value == MISSING) {
+                    if (slot >= 0) {
+                        remove(slot);
+                    }
+                } else if (slot >= 0) {
+                    values[slot] = value;
+                    if (written && writtenAt != null) {
+                        writtenAt[slot] = now;
+                    }
+                } else {
+                    insert(mostSigBits, leastSigBits, hash, value, now);
+                }
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long get(long mostSigBits, long leastSigBits, int hash, int now) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long value = read(mostSigBits, leastSigBits, hash, now);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return read(mostSigBits, leastSigBits, hash, now);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Reads the value of an id. Safe without a lock: each array is read once and the probe is bounded by its length,
+         * so an overlapping write can only produce a result that the caller then discards. Also marks the slot as referenced;
+         * a mark that lands on the wrong slot during an overlapping write only skews the eviction order.
+         * @return value, or MISSING
+         */
+        private long read(long mostSigBits, long leastSigBits, int hash, int now) {
+            if (mostSigBits == 0 && leastSigBits == 0) {
+                return hasNil && !expired(nilWrittenAt, now) ? nilValue : MISSING;
+            }
+            long[] keys = this.keys;
+            long[] values = this.values;
+            int capacity = keys.length / 2;
+            int mask = capacity - 1;
+            for (int i = 0, slot = hash & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+                long slotMost = keys[2 * slot];
+                long slotLeast = keys[2 * slot + 1];
+                if (slotMost == mostSigBits && slotLeast == leastSigBits) {
+                    if (slot >= values.length) {
+                        return MISSING;
+                    }
+                    int[] writtenAt = this.writtenAt;
+                    if (writtenAt != null && slot < writtenAt.length && expired(writtenAt[slot], now)) {
+                        return MISSING;
+                    }
+                    byte[] referenced = this.referenced;
+                    // Only written when clear, so reading a hot entry does not keep dirtying its cache line
+                    if (referenced != null && slot < referenced.length && referenced[slot] == 0) {
+                        referenced[slot] = 1;
+                    }
+                    return values[slot];
+                }
+                if (slotMost == 0 && slotLeast == 0) {
+                    return MISSING;
+                }
+            }
+            return MISSING;
+        }
+
+        // Slot holding the id, or -1. Write lock held.
+        private int find(long mostSigBits, long leastSigBits, int hash) {
+            int mask = values.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long slotMost = keys[2 * slot];
+                long slotLeast = keys[2 * slot + 1];
+                if (slotMost == mostSigBits && slotLeast == leastSigBits) {
+                    return slot;
+                }
+                if (slotMost == 0 && slotLeast == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        // Adds an id that is not in the stripe, evicting an entry first if the stripe is full. Write lock held.
+        private void insert(long mostSigBits, long leastSigBits, int hash, long value, int now) {
+            if (size >= maxPerStripe) {
+                evict(now);
+            }
+            if (size + 1 > values.length * LOAD_FACTOR) {
+                resize();
+            }
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            while (keys[2 * slot] != 0 || keys[2 * slot + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            // Value first, so an optimistic reader that sees the key never reads a stale value without failing validation
+            values[slot] = value;
+            if (writtenAt != null) {
+                writtenAt[slot] = now;
+            }
+            if (referenced != null) {
+                referenced[slot] = 0;
+            }
+            keys[2 * slot + 1] = leastSigBits;
+            keys[2 * slot] = mostSigBits;
+            size++;
+        }
+
+        private boolean expired(int writtenAt, int now) {
+            return ttlSeconds != 0 && now - writtenAt >= ttlSeconds;
+        }
+
+        private void drop(long mostSigBits, long leastSigBits, long value) {
+            if (dropped != null) {
+                dropped.accept(mostSigBits, leastSigBits, value);
+            }
+        }
+
+        // Removes one entry at the clock hand, an expired one if it comes first. Write lock held.
+        private void evict(int now) {
+            int mask = values.length - 1;
+            // Two turns at most: the first clears every referenced flag it passes
+            for (int turn = 0; turn < 2 * values.length; turn++) {
+                int slot = hand;
+                hand = (hand + 1) & mask;
+                if (keys[2 * slot] == 0 && keys[2 * slot + 1] == 0) {
+                    continue;
+                }
+                if (writtenAt != null && expired(writtenAt[slot], now)) {
+                    drop(keys[2 * slot], keys[2 * slot + 1], values[slot]);
+                    remove(slot);
+                    expired++;
+                    return;
+                }
+                if (referenced[slot] != 0) {
+                    referenced[slot] = 0;
+                    continue;
+                }
+                drop(keys[2 * slot], keys[2 * slot + 1], values[slot]);
+                remove(slot);
+                evicted++;
+                return;
+            }
+        }
+
+        // Removes every expired entry. Write lock held.
+        int expire(int now) {
+            int removed = 0;
+            if (hasNil && expired(nilWrittenAt, now)) {
+                drop(0, 0, nilValue);
+                hasNil = false;
+                size--;
+                removed++;
+            }
+            for (int slot = 0; slot < values.length; ) {
+                if ((keys[2 * slot] != 0 || keys[2 * slot + 1] != 0) && expired(writtenAt[slot], now)) {
+                    drop(keys[2 * slot], keys[2 * slot + 1], values[slot]);
+                    // Stay on the slot, an entry from later in the run may have moved into it
+                    remove(slot);
+                    removed++;
+                } else {
+                    slot++;
+                }
+            }
+            expired += removed;
+            return removed;
+        }
+
+        // Empties a slot and moves later entries of its probe run back, so no lookup stops early at the gap. Write lock held.
+        private void remove(int slot) {
+            int mask = values.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; keys[2 * next] != 0 || keys[2 * next + 1] != 0; next = (next + 1) & mask) {
+                long mostSigBits = keys[2 * next];
+                long leastSigBits = keys[2 * next + 1];
+                int home = (int) ReceiptId.mix(mostSigBits, leastSigBits) & mask;
+                // The entry can fill the hole unless its home slot lies between the hole and the entry
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[2 * hole] = mostSigBits;
+                    keys[2 * hole + 1] = leastSigBits;
+                    values[hole] = values[next];
+                    if (writtenAt != null) {
+                        writtenAt[hole] = writtenAt[next];
+                    }
+                    if (referenced != null) {
+                        referenced[hole] = referenced[next];
+                    }
+                    hole = next;
+                }
+            }
+            keys[2 * hole] = 0;
+            keys[2 * hole + 1] = 0;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            int[] oldWrittenAt = writtenAt;
+            byte[] oldReferenced = referenced;
+            int capacity = oldValues.length * 2;
+            long[] newKeys = new long[capacity * 2];
+            long[] newValues = new long[capacity];
+            int[] newWrittenAt = oldWrittenAt != null ? new int[capacity] : null;
+            byte[] newReferenced = oldReferenced != null ? new byte[capacity] : null;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                long mostSigBits = oldKeys[2 * i];
+                long leastSigBits = oldKeys[2 * i + 1];
+                if (mostSigBits == 0 && leastSigBits == 0) {
+                    continue;
+                }
+                int slot = (int) ReceiptId.mix(mostSigBits, leastSigBits) & mask;
+                while (newKeys[2 * slot] != 0 || newKeys[2 * slot + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[2 * slot] = mostSigBits;
+                newKeys[2 * slot + 1] = leastSigBits;
+                newValues[slot] = oldValues[i];
+                if (newWrittenAt != null) {
+                    newWrittenAt[slot] = oldWrittenAt[i];
+                }
+                if (newReferenced != null) {
+                    newReferenced[slot] = oldReferenced[i];
+                }
+            }
+            values = newValues;
+            writtenAt = newWrittenAt;
+            referenced = newReferenced;
+            keys = newKeys;
+            hand = 0;
+        }
+
+        void forEach(Visitor visitor, int now) {
+            if (hasNil && !expired(nilWrittenAt, now)) {
+                visitor.accept(0, 0, nilValue);
+            }
+            for (int i = 0; i < values.length; i++) {
+                long mostSigBits = keys[2 * i];
+                long leastSigBits = keys[2 * i + 1];
+                if ((mostSigBits != 0 || leastSigBits != 0) && (writtenAt == null || !expired(writtenAt[i], now))) {
+                    visitor.accept(mostSigBits, leastSigBits, values[i]);
+                }
+            }
+        }
+
+        // Write lock held.
+        void clear() {
+            keys = new long[INITIAL_CAPACITY * 2];
+            values = new long[INITIAL_CAPACITY];
+            writtenAt = writtenAt != null ? new int[INITIAL_CAPACITY] : null;
+            referenced = referenced != null ? new byte[INITIAL_CAPACITY] : null;
+            size = 0;
+            hasNil = false;
+            hand = 0;
+        }
+    }
+}
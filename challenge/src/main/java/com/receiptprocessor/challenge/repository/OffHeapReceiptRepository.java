@@ -0,0 +1,533 @@
+package com.receiptprocessor.challenge.repository;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps points and receipts outside the Java heap, for stores of tens of millions of receipts.
+ * A saved Receipt is appended as a compact binary record to fixed-size ByteBuffer segments (direct memory, or memory-mapped
+ * files when receipt.repository.offheap.directory is set). The heap only holds the id index, in the primitive arrays of an
+ * IdIndex, so it holds no object per receipt; a Receipt is decoded from its record when it is read.
+ *
+ * Each receipt takes one index entry and at most one live record. Points without a receipt are kept in the index entry
+ * itself, and points of a receipt with a record are written over the record's points, so scoring and rescoring never
+ * append. Only saving a receipt again leaves its old record behind, as garbage.
+ *
+ * receipt.repository.max-entries and receipt.repository.ttl bound the index like the memory repository's; the records of
+ * dropped receipts become garbage too. A background sweep every receipt.repository.sweep-interval removes expired
+ * receipts, then compacts: the live records of each full segment that is at least half garbage are appended again and
+ * the segment is released.
+ *
+ * Record layout: int points, varint receipt length, then the receipt encoded by ReceiptCodec, padded to a multiple of
+ * 4 bytes so the points are aligned and written in place with a single store.
+ */
+@Repository
+@ConditionalOnProperty(name = "receipt.repository.type", havingValue = "offheap")
+public class OffHeapReceiptRepository implements ReceiptRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapReceiptRepository.class);
+
+    // Points of a receipt that was saved before its points
+    private static final int NO_POINTS = Integer.MIN_VALUE;
+
+    // Compact a full segment once this share of it is garbage
+    private static final double COMPACT_GARBAGE_RATIO = 0.5;
+
+    private final int segmentSize;
+
+    private final Path directory;
+
+    // Per receipt, the offset of its record (segment index in the high 32 bits, position in the low 32 bits), or for
+    // points without a record, pointsOnly(points), which is negative
+    private final IdIndex index;
+
+    private final boolean expiring;
+
+    // Guards segment allocation, release and the write position; records are written outside the lock
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    // One compaction at a time
+    private final ReentrantLock compactLock = new ReentrantLock();
+
+    // By index; a released segment leaves null, and its index is never reused
+    private volatile Segment[] segments = new Segment[0];
+
+    private int writePosition;
+
+    @Value("${receipt.repository.sweep-interval:1m}")
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    private ScheduledExecutorService sweeper;
+
+    // Unbounded
+    public OffHeapReceiptRepository(int segmentSize, String directory) {
+        this(segmentSize, directory, 0, Duration.ZERO, System::currentTimeMillis);
+    }
+
+    @Autowired
+    public OffHeapReceiptRepository(@Value("${receipt.repository.offheap.segment-size:67108864}") int segmentSize,
+                                    @Value("${receipt.repository.offheap.directory:}") String directory,
+                                    @Value("${receipt.repository.max-entries:0}") long maxEntries,
+                                    @Value("${receipt.repository.ttl:0}") Duration ttl) {
+        this(segmentSize, directory, maxEntries, ttl, System::currentTimeMillis);
+    }
+
+    /**
+     * @param segmentSize bytes per segment, the largest record that can be saved
+     * @param directory directory for memory-mapped segment files, empty for direct memory
+     * @param maxEntries receipts to keep at most, 0 for no bound
+     * @param ttl how long receipts are kept after their points were saved, rounded up to seconds; zero to keep them until evicted
+     * @param clockMillis current time in milliseconds
+     */
+    public OffHeapReceiptRepository(int segmentSize, String directory, long maxEntries, Duration ttl, LongSupplier clockMillis) {
+        long ttlSeconds = (ttl.toMillis() + 999) / 1000;
+        this.segmentSize = segmentSize;
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+        this.index = new IdIndex(maxEntries, ttlSeconds, clockMillis, (mostSigBits, leastSigBits, value) -> discard(value));
+        this.expiring = ttlSeconds > 0;
+    }
+
+    // Starts the background sweep that removes expired receipts and compacts segments.
+    @PostConstruct
+    public void start() {
+        if (sweepInterval.isZero() || sweepInterval.isNegative()) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-offheap-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                expire();
+                compact();
+            } catch (RuntimeException e) {
+                log.warn("Off-heap receipt sweep failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes expired receipts; their records become garbage for compact(). Runs in the background; public so it can be
+     * run on demand.
+     * @return number of receipts removed
+     */
+    public int expire() {
+        return expiring ? index.expire() : 0;
+    }
+
+    /**
+     * Appends the live records of every full segment that is at least half garbage again, and releases the segment.
+     * Each record is moved under the index lock of its id, so a concurrent save of the same receipt is never lost;
+     * a reader that still had the old offset finds the segment gone and looks the id up again.
+     * Runs in the background; public so it can be run on demand.
+     * @return number of segments released
+     */
+    public int compact() {
+        compactLock.lock();
+        try {
+            int released = 0;
+            Segment[] current = segments;
+            // The last segment is still being written
+            for (int i = 0; i < current.length - 1; i++) {
+                Segment segment = current[i];
+                if (segment == null || segment.garbage.get() < segmentSize * COMPACT_GARBAGE_RATIO) {
+                    continue;
+                }
+                move(i);
+                release(i);
+                released++;
+            }
+            return released;
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    // Saves the Receipt in a new record, keeping the points already saved for receiptId.
+    @Override
+    public void saveReceipt(ReceiptId receiptId, Receipt receipt) {
+        byte[] encoded = ReceiptCodec.encode(receipt);
+        index.update(receiptId.getMostSigBits(), receiptId.getLeastSigBits(), false, value -> {
+            if (value == IdIndex.MISSING) {
+                return append(NO_POINTS, encoded);
+            }
+            if (value < 0) {
+                return append(pointsOf(value), encoded);
+            }
+            long offset = append(readPoints(value), encoded);
+            discard(value);
+            return offset;
+        });
+    }
+
+    // Decodes the Receipt for given receiptId from its record, null if only points were saved.
+    @Override
+    public Receipt findReceiptById(ReceiptId receiptId) {
+        if (receiptId == null) {
+            return null;
+        }
+        while (true) {
+            long value = index.get(receiptId.getMostSigBits(), receiptId.getLeastSigBits());
+            if (value == IdIndex.MISSING || value < 0) {
+                return null;
+            }
+            Segment segment = segments[(int) (value >>> 32)];
+            // Otherwise compaction moved the record since the lookup
+            if (segment != null) {
+                return ReceiptCodec.decode(readReceipt(segment.buffer, (int) value));
+            }
+        }
+    }
+
+    // Saves points over the points of the receipt's record, or in the index if it has none.
+    @Override
+    public void savePoints(ReceiptId receiptId, int points) {
+        index.update(receiptId.getMostSigBits(), receiptId.getLeastSigBits(), true, value -> {
+            if (value == IdIndex.MISSING || value < 0) {
+                return pointsOnly(points);
+            }
+            writePoints(value, points);
+            return value;
+        });
+    }
+
+    // Returns the points for given receiptId, empty if the receipt was never processed.
+    @Override
+    public OptionalInt findPointsById(ReceiptId receiptId) {
+        if (receiptId == null) {
+            return OptionalInt.empty();
+        }
+        while (true) {
+            long value = index.get(receiptId.getMostSigBits(), receiptId.getLeastSigBits());
+            if (value == IdIndex.MISSING) {
+                return OptionalInt.empty();
+            }
+            if (value < 0) {
+                return OptionalInt.of(pointsOf(value));
+            }
+            Segment segment = segments[(int) (value >>> 32)];
+            // Otherwise compaction moved the record since the lookup
+            if (segment != null) {
+                int points = segment.buffer.getInt((int) value);
+                return points == NO_POINTS ? OptionalInt.empty() : OptionalInt.of(points);
+            }
+        }
+    }
+
+    // Saves a batch of receiptIds and Receipts.
+    @Override
+    public void saveAllReceipts(Map<ReceiptId, Receipt> receiptsById) {
+        receiptsById.forEach(this::saveReceipt);
+    }
+
+    // Saves a batch of receiptIds and points.
+    @Override
+    public void saveAllPoints(Map<ReceiptId, Integer> pointsById) {
+        pointsById.forEach(this::savePoints);
+    }
+
+    // Replaces the points of receiptId in place if they are still expectedPoints, keeping its write time.
+    @Override
+    public boolean replacePoints(ReceiptId receiptId, int expectedPoints, int points) {
+        boolean[] replaced = new boolean[1];
+        index.update(receiptId.getMostSigBits(), receiptId.getLeastSigBits(), false, value -> {
+            if (value == IdIndex.MISSING) {
+                return value;
+            }
+            if (value < 0) {
+                if (pointsOf(value) != expectedPoints) {
+                    return value;
+                }
+                replaced[0] = true;
+                return pointsOnly(points);
+            }
+            if (readPoints(value) == expectedPoints) {
+                writePoints(value, points);
+                replaced[0] = true;
+            }
+            return value;
+        });
+        return replaced[0];
+    }
+
+    // Ids of every receipt, including those with points only, for which findReceiptById returns null.
+    // Collected from the index first, as the index has no id objects to split.
+    @Override
+    public Spliterator<ReceiptId> receiptIds() {
+        List<ReceiptId> ids = new ArrayList<>(index.size());
+        index.forEach((mostSigBits, leastSigBits, value) -> ids.add(new ReceiptId(mostSigBits, leastSigBits)));
+        return ids.spliterator();
+    }
+
+    // Number of receipts with points or a record, including expired receipts not yet removed by expire().
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    // Reserved segments plus the slot arrays of the on-heap index.
+    @Override
+    public long estimatedMemoryBytes() {
+        return reservedBytes() + index.estimatedBytes();
+    }
+
+    @Override
+    public long expiredCount() {
+        return index.expiredCount();
+    }
+
+    @Override
+    public long evictedCount() {
+        return index.evictedCount();
+    }
+
+    // Bytes reserved for segments outside the heap, released ones excluded.
+    public long reservedBytes() {
+        long reserved = 0;
+        for (Segment segment : segments) {
+            if (segment != null) {
+                reserved += segmentSize;
+            }
+        }
+        return reserved;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            Segment[] current = segments;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != null) {
+                    current[i].close(i);
+                }
+            }
+            segments = new Segment[0];
+            writePosition = 0;
+            index.clear();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Index value of points without a record: negative and never IdIndex.MISSING, so it cannot be taken for an offset.
+    private static long pointsOnly(int points) {
+        return ~(points & 0xFFFFFFFFL);
+    }
+
+    private static int pointsOf(long pointsOnly) {
+        return (int) ~pointsOnly;
+    }
+
+    /**
+     * Appends a record and returns its offset.
+     * @param points
+     * @param receipt encoded receipt
+     * @return offset
+     */
+    private long append(int points, byte[] receipt) {
+        int recordLength = recordLength(receipt.length);
+        if (recordLength > segmentSize) {
+            throw new IllegalArgumentException("Receipt of " + receipt.length + " bytes does not fit in a segment of " + segmentSize + " bytes");
+        }
+
+        ByteBuffer segment;
+        int segmentIndex;
+        int position;
+        appendLock.lock();
+        try {
+            Segment[] current = segments;
+            if (current.length == 0 || writePosition + recordLength > segmentSize) {
+                if (current.length > 0) {
+                    // The rest of the full segment is never written
+                    current[current.length - 1].garbage.addAndGet(segmentSize - writePosition);
+                }
+                current = addSegment(current);
+                writePosition = 0;
+            }
+            segmentIndex = current.length - 1;
+            segment = current[segmentIndex].buffer;
+            position = writePosition;
+            writePosition += recordLength;
+        } finally {
+            appendLock.unlock();
+        }
+
+        // Absolute puts on a reserved range, so concurrent appends never touch the same bytes
+        segment.putInt(position, points);
+        int next = ReceiptCodec.putVarInt(segment, position + 4, receipt.length);
+        segment.put(next, receipt);
+        return ((long) segmentIndex << 32) | position;
+    }
+
+    // Counts the record at offset as garbage. Called under the index lock of the id that referenced it.
+    private void discard(long offset) {
+        if (offset < 0) {
+            return;
+        }
+        Segment segment = segments[(int) (offset >>> 32)];
+        int position = (int) offset;
+        segment.garbage.addAndGet(recordLength(ReceiptCodec.getVarInt(segment.buffer, position + 4)));
+    }
+
+    // Appends the records still referenced from segment segmentIndex again, one id at a time under its index lock.
+    private void move(int segmentIndex) {
+        // Ids are collected first, as forEach holds the read lock of the stripe it visits
+        LongList ids = new LongList();
+        index.forEach((mostSigBits, leastSigBits, value) -> {
+            if (value >= 0 && (int) (value >>> 32) == segmentIndex) {
+                ids.add(mostSigBits);
+                ids.add(leastSigBits);
+            }
+        });
+        ByteBuffer buffer = segments[segmentIndex].buffer;
+        for (int i = 0; i < ids.size; i += 2) {
+            index.update(ids.values[i], ids.values[i + 1], false, value -> {
+                // Saved again or dropped since it was collected
+                if (value < 0 || (int) (value >>> 32) != segmentIndex) {
+                    return value;
+                }
+                return append(buffer.getInt((int) value), readReceipt(buffer, (int) value));
+            });
+        }
+    }
+
+    // Removes a segment whose records are all garbage. Readers still holding it keep reading it until they look up again.
+    private void release(int segmentIndex) {
+        Segment segment;
+        appendLock.lock();
+        try {
+            Segment[] released = segments.clone();
+            segment = released[segmentIndex];
+            released[segmentIndex] = null;
+            segments = released;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            segment.close(segmentIndex);
+        } catch (IOException e) {
+            log.warn("Could not remove receipt segment {}", segmentIndex, e);
+        }
+    }
+
+    private Segment[] addSegment(Segment[] current) {
+        Segment segment;
+        if (directory == null) {
+            segment = new Segment(ByteBuffer.allocateDirect(segmentSize), null);
+        } else {
+            try {
+                Files.createDirectories(directory);
+                FileChannel channel = FileChannel.open(segmentPath(current.length),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                segment = new Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize), channel);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map receipt segment in " + directory, e);
+            }
+        }
+        Segment[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = segment;
+        segments = grown;
+        return grown;
+    }
+
+    private Path segmentPath(int segmentIndex) {
+        return directory.resolve("receipts-" + segmentIndex + ".seg");
+    }
+
+    // Record bytes for an encoded receipt of the given length, padded so the next record's points are aligned
+    private static int recordLength(int receiptLength) {
+        return (4 + ReceiptCodec.varIntSize(receiptLength) + receiptLength + 3) & ~3;
+    }
+
+    // Only called under the index lock of an id whose record is at offset, so the segment cannot be released meanwhile
+    private int readPoints(long offset) {
+        return segments[(int) (offset >>> 32)].buffer.getInt((int) offset);
+    }
+
+    private void writePoints(long offset, int points) {
+        segments[(int) (offset >>> 32)].buffer.putInt((int) offset, points);
+    }
+
+    private static byte[] readReceipt(ByteBuffer segment, int position) {
+        int length = ReceiptCodec.getVarInt(segment, position + 4);
+        byte[] receipt = new byte[length];
+        segment.get(position + 4 + ReceiptCodec.varIntSize(length), receipt);
+        return receipt;
+    }
+
+    // Growable array of longs, so collecting ids creates no object per id
+    private static final class LongList {
+
+        long[] values = new long[64];
+
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private final class Segment {
+
+        final ByteBuffer buffer;
+
+        // Null for direct memory
+        final FileChannel channel;
+
+        // Bytes of records no longer referenced, and the unwritten rest of a full segment
+        final AtomicLong garbage = new AtomicLong();
+
+        Segment(ByteBuffer buffer, FileChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        // Closes and deletes the file of a memory-mapped segment. The mapping itself stays readable until it is collected.
+        void close(int segmentIndex) throws IOException {
+            if (channel != null) {
+                channel.close();
+                Files.deleteIfExists(segmentPath(segmentIndex));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.receiptprocessor.challenge.repository;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent map from a 128-bit receipt id to int points: an IdIndex whose values are narrowed to int. About 40 bytes per
+ * receipt at full load instead of over 150 for a ConcurrentHashMap of Strings, and no object per receipt.
+ *
+ * Optionally bounded by a time-to-live and a maximum number of entries, evicted least recently used first; see IdIndex.
+ */
+final class PointsIndex {
+
+    // Returned by get for an id without points; any int value is valid points
+    static final long MISSING = IdIndex.MISSING;
+
+    private final IdIndex index;
+
+    PointsIndex() {
+        this(0, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * @param maxEntries entries to keep at most, 0 for no bound
+     * @param ttlSeconds seconds an entry is kept after it was written, 0 to keep entries until evicted
+     * @param clockMillis current time in milliseconds
+     */
+    PointsIndex(long maxEntries, long ttlSeconds, LongSupplier clockMillis) {
+        this.index = new IdIndex(maxEntries, ttlSeconds, clockMillis, null);
+    }
+
+    // Saves points for the id, replacing earlier points.
+    void put(long mostSigBits, long leastSigBits, int points) {
+        index.put(mostSigBits, leastSigBits, points);
+    }
+
+    /**
+     * Looks up the points of an id.
+     * @return points, or MISSING
+     */
+    long get(long mostSigBits, long leastSigBits) {
+        return index.get(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Replaces the points of an id that still has expectedPoints, keeping its write time, so the entry expires when it
+     * would have. An id that is missing or expired is left out.
+     * @return whether the points were replaced
+     */
+    boolean replace(long mostSigBits, long leastSigBits, int expectedPoints, int points) {
+        return index.replace(mostSigBits, leastSigBits, expectedPoints, points);
+    }
+
+    /**
+     * Removes every expired entry, one stripe at a time under its write lock.
+     * @return number of entries removed
+     */
+    int expire() {
+        return index.expire();
+    }
+
+    // Number of ids with points, including expired entries not yet removed by expire().
+    int size() {
+        return index.size();
+    }
+
+    // Entries removed because they outlived the time-to-live.
+    long expiredCount() {
+        return index.expiredCount();
+    }
+
+    // Entries evicted to stay within the maximum number of entries.
+    long evictedCount() {
+        return index.evictedCount();
+    }
+
+    // Bytes held by the slot arrays of all stripes, used or not.
+    long estimatedBytes() {
+        return index.estimatedBytes();
+    }
+
+    // Visits every id that has not expired and its points, one stripe at a time under its read lock.
+    void forEach(Visitor visitor) {
+        index.forEach((mostSigBits, leastSigBits, points) -> visitor.accept(mostSigBits, leastSigBits, (int) points));
+    }
+
+    interface Visitor {
+        void accept(long mostSigBits, long leastSigBits, int points);
+    }
+}
@@ -0,0 +1,138 @@
+package com.receiptprocessor.challenge.repository;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary form of a Receipt shared by the off-heap and write-ahead log stores.
+ * Strings are a varint (UTF-8 length + 1, 0 for null) followed by the bytes; items are a varint count (+ 1, 0 for null)
+ * followed by description and price of each item.
+ */
+final class ReceiptCodec {
+
+    private ReceiptCodec() {
+    }
+
+    static byte[] encode(Receipt receipt) {
+        Encoder encoder = new Encoder();
+        encoder.writeString(receipt.getRetailer());
+        encoder.writeString(receipt.getPurchaseDate());
+        encoder.writeString(receipt.getPurchaseTime());
+        encoder.writeString(receipt.getTotal());
+        List<ReceiptItem> items = receipt.getItems();
+        encoder.writeVarInt(items == null ? 0 : items.size() + 1);
+        if (items != null) {
+            for (ReceiptItem item : items) {
+                encoder.writeString(item.getShortDescription());
+                encoder.writeString(item.getPrice());
+            }
+        }
+        return Arrays.copyOf(encoder.bytes, encoder.length);
+    }
+
+    static Receipt decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    // Decodes a receipt starting at the buffer position, leaving the position after it
+    static Receipt decode(ByteBuffer buffer) {
+        Receipt receipt = new Receipt();
+        receipt.setRetailer(readString(buffer));
+        receipt.setPurchaseDate(readString(buffer));
+        receipt.setPurchaseTime(readString(buffer));
+        receipt.setTotal(readString(buffer));
+        int itemCount = readVarInt(buffer);
+        if (itemCount > 0) {
+            List<ReceiptItem> items = new ArrayList<>(itemCount - 1);
+            for (int i = 1; i < itemCount; i++) {
+                ReceiptItem item = new ReceiptItem();
+                item.setShortDescription(readString(buffer));
+                item.setPrice(readString(buffer));
+                items.add(item);
+            }
+            receipt.setItems(items);
+        }
+        return receipt;
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = readVarInt(buffer);
+        if (length == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length - 1];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Reads a varint at the buffer position and advances past it
+    static int readVarInt(ByteBuffer buffer) {
+        int value = getVarInt(buffer, buffer.position());
+        buffer.position(buffer.position() + varIntSize(value));
+        return value;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    static int putVarInt(ByteBuffer buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(position++, (byte) value);
+        return position;
+    }
+
+    static int getVarInt(ByteBuffer buffer, int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    // Growable byte array for encoding one receipt
+    private static final class Encoder {
+        private byte[] bytes = new byte[128];
+        private int length;
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            length = putVarInt(ByteBuffer.wrap(bytes), length, value);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
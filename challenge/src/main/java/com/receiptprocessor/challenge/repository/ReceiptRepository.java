@@ -1,8 +1,51 @@
 package com.receiptprocessor.challenge.repository;
 
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Spliterator;
 
 public interface ReceiptRepository {
-    void saveReceipt(String receiptId, Receipt receipt);
-    Receipt findReceiptById(String receiptId);
+    void saveReceipt(ReceiptId receiptId, Receipt receipt);
+    Receipt findReceiptById(ReceiptId receiptId);
+    void savePoints(ReceiptId receiptId, int points);
+    OptionalInt findPointsById(ReceiptId receiptId);
+    void saveAllReceipts(Map<ReceiptId, Receipt> receiptsById);
+    void saveAllPoints(Map<ReceiptId, Integer> pointsById);
+
+    // Replaces the points of a receipt that still has expectedPoints, keeping when they were saved, so the receipt expires
+    // as it would have. A receipt without points, or with other points, is left as it is. Returns whether it was replaced.
+    boolean replacePoints(ReceiptId receiptId, int expectedPoints, int points);
+
+    // replacePoints for a batch given as parallel arrays; returns, for each receipt, whether its points were replaced.
+    default boolean[] replaceAllPoints(List<ReceiptId> receiptIds, int[] expectedPoints, int[] points) {
+        boolean[] replaced = new boolean[receiptIds.size()];
+        for (int i = 0; i < replaced.length; i++) {
+            replaced[i] = replacePoints(receiptIds.get(i), expectedPoints[i], points[i]);
+        }
+        return replaced;
+    }
+
+    // Number of receipts with points.
+    int size();
+
+    // Rough number of bytes held for the stored receipts, on and off the heap. Cheap enough to read on every metrics scrape.
+    long estimatedMemoryBytes();
+
+    // Receipts dropped because they outlived receipt.repository.ttl.
+    long expiredCount();
+
+    // Receipts dropped to stay within receipt.repository.max-entries.
+    long evictedCount();
+
+    // Ids of the receipts stored in full, split for parallel traversal. Receipts saved concurrently may or may not be visited.
+    Spliterator<ReceiptId> receiptIds();
+
+    // Whether saves wait for the disk, so callers on an event loop have to run them elsewhere. Reads never do.
+    default boolean blocksOnSave() {
+        return false;
+    }
 }
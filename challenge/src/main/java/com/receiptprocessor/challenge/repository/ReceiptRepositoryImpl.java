@@ -1,24 +1,241 @@
 package com.receiptprocessor.challenge.repository;
 
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
 
+// Singleton bean shared by all request threads, so both stores must be safe for concurrent writes.
+// Points are keyed by the two longs of the id in a primitive map; full receipts are rare and kept in a ConcurrentHashMap,
+// each as a CompactReceipt of dictionary ids and cents, or as the Receipt itself if it cannot be packed exactly.
+// Unbounded by default. receipt.repository.max-entries and receipt.repository.ttl bound the points (see PointsIndex);
+// a background thread removes expired points, and full receipts whose points are gone, every receipt.repository.sweep-interval.
 @Repository
+@ConditionalOnProperty(name = "receipt.repository.type", havingValue = "memory", matchIfMissing = true)
 public class ReceiptRepositoryImpl implements ReceiptRepository {
-    private final Map<String, Receipt> receiptStorage = new HashMap<>();
 
-    // Saves receiptId and Receipt in map.
+    private static final Logger log = LoggerFactory.getLogger(ReceiptRepositoryImpl.class);
+
+    // CompactReceipt or Receipt values
+    private final Map<ReceiptId, Object> receiptStorage = new ConcurrentHashMap<>();
+    private final PointsIndex pointsStorage;
+    private final boolean bounded;
+    private final boolean expiring;
+    private final LongSupplier clockMillis;
+    // Dictionary the CompactReceipts hold ids of
+    private final StringDictionary dictionary;
+
+    // Time the expiry thread last read from clockMillis, once it is started. Lookups read this instead of the clock itself,
+    // which costs tens of nanoseconds on some virtual machines; a second of staleness does not matter for a ttl.
+    private volatile long tickMillis;
+    private volatile boolean ticking;
+
+    // Map entry, id and a CompactReceipt of a few items; only for estimatedMemoryBytes
+    private static final long RECEIPT_BYTES = 192;
+
+    @Value("${receipt.repository.sweep-interval:1m}")
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    private ScheduledExecutorService sweeper;
+
+    // Unbounded, with a dictionary of its own
+    public ReceiptRepositoryImpl() {
+        this(0, Duration.ZERO, System::currentTimeMillis);
+    }
+
+    @Autowired
+    public ReceiptRepositoryImpl(@Value("${receipt.repository.max-entries:0}") long maxEntries,
+                                 @Value("${receipt.repository.ttl:0}") Duration ttl,
+                                 StringDictionary dictionary) {
+        this(maxEntries, ttl, System::currentTimeMillis, dictionary);
+    }
+
+    // With a dictionary of its own
+    public ReceiptRepositoryImpl(long maxEntries, Duration ttl, LongSupplier clockMillis) {
+        this(maxEntries, ttl, clockMillis, new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * @param maxEntries receipts to keep at most, 0 for no bound
+     * @param ttl how long points are kept after they were saved, rounded up to seconds; zero to keep them until evicted
+     * @param clockMillis current time in milliseconds
+     * @param dictionary dictionary full receipts are packed against, the one ReceiptService interns their names in
+     */
+    public ReceiptRepositoryImpl(long maxEntries, Duration ttl, LongSupplier clockMillis, StringDictionary dictionary) {
+        long ttlSeconds = (ttl.toMillis() + 999) / 1000;
+        this.clockMillis = clockMillis;
+        this.dictionary = dictionary;
+        this.pointsStorage = new PointsIndex(maxEntries, ttlSeconds, this::currentTimeMillis);
+        this.bounded = maxEntries > 0 || ttlSeconds > 0;
+        this.expiring = ttlSeconds > 0;
+    }
+
+    // Starts the background sweep, and the clock tick for expiry, if receipts can be dropped.
+    @PostConstruct
+    public void start() {
+        if (!bounded) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (expiring) {
+            tickMillis = clockMillis.getAsLong();
+            ticking = true;
+            sweeper.scheduleAtFixedRate(() -> tickMillis = clockMillis.getAsLong(), 1, 1, TimeUnit.SECONDS);
+        }
+        if (sweepInterval.isZero() || sweepInterval.isNegative()) {
+            return;
+        }
+        long interval = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                expire();
+            } catch (RuntimeException e) {
+                log.warn("Receipt expiry sweep failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (sweeper != null) {
+            ticking = false;
+            sweeper.shutdownNow();
+        }
+    }
+
+    private long currentTimeMillis() {
+        return ticking ? tickMillis : clockMillis.getAsLong();
+    }
+
+    /**
+     * Removes expired points, then full receipts whose points expired or were evicted. Takes each stripe's write lock in turn,
+     * so request threads only wait for the stripe being swept. Runs in the background; public so it can be run on demand.
+     * @return number of points removed
+     */
+    public int expire() {
+        int removed = pointsStorage.expire();
+        if (bounded && !receiptStorage.isEmpty()) {
+            receiptStorage.keySet().removeIf(receiptId -> !findPointsById(receiptId).isPresent());
+        }
+        return removed;
+    }
+
+    // Saves receiptId and Receipt in map, packed into a CompactReceipt when it can be.
+    @Override
+    public void saveReceipt(ReceiptId receiptId, Receipt receipt) {
+        receiptStorage.put(receiptId, compact(receipt));
+    }
+
+    // Returns Receipt from map for given receiptId; a packed one is unpacked into a new Receipt.
+    @Override
+    public Receipt findReceiptById(ReceiptId receiptId) {
+        if (receiptId == null) {
+            return null;
+        }
+        return expand(receiptStorage.get(receiptId));
+    }
+
+    // Saves receiptId and the points calculated at ingest.
+    @Override
+    public void savePoints(ReceiptId receiptId, int points) {
+        pointsStorage.put(receiptId.getMostSigBits(), receiptId.getLeastSigBits(), points);
+    }
+
+    // Returns points for given receiptId, empty if the receipt was never processed.
+    @Override
+    public OptionalInt findPointsById(ReceiptId receiptId) {
+        if (receiptId == null) {
+            return OptionalInt.empty();
+        }
+        long points = pointsStorage.get(receiptId.getMostSigBits(), receiptId.getLeastSigBits());
+        return points == PointsIndex.MISSING ? OptionalInt.empty() : OptionalInt.of((int) points);
+    }
+
+    // Saves a batch of receiptIds and Receipts in map.
+    @Override
+    public void saveAllReceipts(Map<ReceiptId, Receipt> receiptsById) {
+        receiptsById.forEach(this::saveReceipt);
+    }
+
+    // Saves a batch of receiptIds and points.
+    @Override
+    public void saveAllPoints(Map<ReceiptId, Integer> pointsById) {
+        pointsById.forEach(this::savePoints);
+    }
+
+    // Replaces points in the index if they are still expectedPoints, keeping their write time.
+    @Override
+    public boolean replacePoints(ReceiptId receiptId, int expectedPoints, int points) {
+        return pointsStorage.replace(receiptId.getMostSigBits(), receiptId.getLeastSigBits(), expectedPoints, points);
+    }
+
+    // Visits every receiptId and its points. Entries saved concurrently may or may not be visited.
+    public void forEachPoints(ObjIntConsumer<ReceiptId> action) {
+        pointsStorage.forEach((mostSigBits, leastSigBits, points) -> action.accept(new ReceiptId(mostSigBits, leastSigBits), points));
+    }
+
+    // Visits every receiptId and its Receipt. Entries saved concurrently may or may not be visited.
+    public void forEachReceipt(BiConsumer<ReceiptId, Receipt> action) {
+        receiptStorage.forEach((receiptId, stored) -> action.accept(receiptId, expand(stored)));
+    }
+
+    // Ids of the full receipts; the map's spliterator splits by table range.
+    @Override
+    public Spliterator<ReceiptId> receiptIds() {
+        return receiptStorage.keySet().spliterator();
+    }
+
+    // Number of receipts with points.
+    @Override
+    public int size() {
+        return pointsStorage.size();
+    }
+
+    // Slot arrays of the points index, plus a rough size for each full receipt kept.
+    @Override
+    public long estimatedMemoryBytes() {
+        return pointsStorage.estimatedBytes() + (long) receiptStorage.size() * RECEIPT_BYTES;
+    }
+
+    private Object compact(Receipt receipt) {
+        CompactReceipt compact = CompactReceipt.of(receipt, dictionary);
+        return compact == null ? receipt : compact;
+    }
+
+    private Receipt expand(Object stored) {
+        return stored instanceof CompactReceipt compact ? compact.toReceipt(dictionary) : (Receipt) stored;
+    }
+
     @Override
-    public void saveReceipt(String receiptId, Receipt receipt) {
-        receiptStorage.put(receiptId, receipt);
+    public long expiredCount() {
+        return pointsStorage.expiredCount();
     }
 
-    // Returns Receipt from map for given receiptId.
     @Override
-    public Receipt findReceiptById(String receiptId) {
-        return receiptStorage.get(receiptId);
+    public long evictedCount() {
+        return pointsStorage.evictedCount();
     }
 }
@@ -0,0 +1,798 @@
+package com.receiptprocessor.challenge.repository;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable ReceiptRepository: every save is appended to a segmented, checksummed write-ahead log on local disk,
+ * and reads are served from the in-memory state the log rebuilds on startup.
+ *
+ * Saves are queued to a single writer thread that writes everything queued in one gather write (group commit).
+ * With fsync=group the batch is fsynced before any of its callers return; with fsync=interval callers return after the
+ * write and the log is fsynced every fsync-interval-ms; with fsync=none fsync is left to the OS.
+ * Every snapshot-every records the log is rolled to a new segment and the state is written to a snapshot in the
+ * background, after which older segments are deleted. Startup loads the newest snapshot and replays the log tail,
+ * stopping at the first torn or corrupt record.
+ *
+ * A group whose write fails is cut off the segment again before the next group is written, so an acknowledged record
+ * never follows a torn one. A failed fsync is fatal: the pages it covered may be lost without the next fsync noticing,
+ * so the log stops accepting writes until restarted, and recovery replays what actually reached the disk.
+ *
+ * Log and snapshot record layout: int length, int CRC32C of the body, then the body: byte type,
+ * the 16 bytes of the receiptId and the points (int) or the receipt encoded by ReceiptCodec.
+ */
+@Repository
+@ConditionalOnProperty(name = "receipt.repository.type", havingValue = "wal")
+public class WalReceiptRepository implements ReceiptRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(WalReceiptRepository.class);
+
+    public enum FsyncPolicy { GROUP, INTERVAL, NONE }
+
+    private static final byte POINTS = 1;
+    private static final byte RECEIPT = 2;
+    // Last record of a complete snapshot, body is the number of entries
+    private static final byte END = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 << 20;
+    private static final long SNAPSHOT_MAGIC = 0x52435054534E4150L;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long fsyncIntervalNanos;
+
+    private final int maxBatch;
+
+    private final long snapshotEvery;
+
+    private final StringDictionary dictionary;
+
+    // Live state rebuilt from the log. Only the writer thread applies saves to it, after they are written.
+    // Replaced only during open(), by the state of a complete snapshot.
+    private ReceiptRepositoryImpl state;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    private volatile boolean open;
+
+    // Set when the log can no longer be written safely (a failed fsync); no write is accepted after it
+    private volatile IOException failure;
+
+    private Thread writer;
+
+    private ExecutorService snapshotExecutor;
+
+    // Owned by the writer thread once it is started
+    private FileChannel segment;
+    private long segmentSequence;
+    private long lastFsyncNanos;
+    private boolean unsynced;
+
+    public WalReceiptRepository(@Value("${receipt.repository.wal.directory:data/receipts}") String directory,
+                                @Value("${receipt.repository.wal.segment-size:67108864}") long segmentSize,
+                                @Value("${receipt.repository.wal.fsync:group}") String fsyncPolicy,
+                                @Value("${receipt.repository.wal.fsync-interval-ms:50}") long fsyncIntervalMillis,
+                                @Value("${receipt.repository.wal.max-batch:1024}") int maxBatch,
+                                @Value("${receipt.repository.wal.snapshot-every:1000000}") long snapshotEvery,
+                                StringDictionary dictionary) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase());
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+        this.maxBatch = Math.max(1, maxBatch);
+        this.snapshotEvery = snapshotEvery;
+        this.dictionary = dictionary;
+        this.state = newState();
+    }
+
+    /**
+     * Recovers the state from the newest snapshot and the log tail, then starts accepting writes in a new segment.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        deleteFiles(".tmp");
+
+        long replayFrom = 0;
+        List<Long> snapshots = sequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        Collections.reverse(snapshots);
+        for (long snapshot : snapshots) {
+            ReceiptRepositoryImpl loaded = loadSnapshot(snapshot);
+            if (loaded != null) {
+                state = loaded;
+                replayFrom = snapshot;
+                break;
+            }
+            log.warn("Ignoring incomplete or corrupt snapshot {}", snapshotPath(snapshot));
+        }
+
+        List<Long> segments = sequences(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long nextSegment = replayFrom;
+        long replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            long sequence = segments.get(i);
+            nextSegment = Math.max(nextSegment, sequence + 1);
+            if (sequence >= replayFrom) {
+                replayed += replaySegment(sequence, i == segments.size() - 1);
+            }
+        }
+
+        segmentSequence = nextSegment;
+        segment = openSegment(segmentPath(segmentSequence));
+        lastFsyncNanos = System.nanoTime();
+        recordsSinceSnapshot.set(replayed);
+        open = true;
+
+        snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "receipt-wal-snapshot"));
+        writer = daemon(this::writeLoop, "receipt-wal-writer");
+        writer.start();
+        log.info("Recovered {} receipts from {} (snapshot {}, {} log records) in {} ms", state.size(), directory, replayFrom,
+                replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Writes and fsyncs everything queued, then stops the writer.
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            await(enqueue(PendingWrite.Kind.CLOSE, null, null));
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            // The writer already stopped after a failed fsync
+            log.warn("Closed receipt log {} after a write failure", directory);
+        }
+    }
+
+    // Logs the Receipt, then makes it readable.
+    @Override
+    public void saveReceipt(ReceiptId receiptId, Receipt receipt) {
+        byte[] encoded = ReceiptCodec.encode(receipt);
+        await(enqueue(PendingWrite.Kind.RECORD, record(RECEIPT, receiptId, encoded.length, body -> body.put(encoded)),
+                () -> state.saveReceipt(receiptId, receipt)));
+    }
+
+    // Returns Receipt from the recovered state for given receiptId.
+    @Override
+    public Receipt findReceiptById(ReceiptId receiptId) {
+        return state.findReceiptById(receiptId);
+    }
+
+    // Logs the points, then makes them readable.
+    @Override
+    public void savePoints(ReceiptId receiptId, int points) {
+        await(enqueue(PendingWrite.Kind.RECORD, record(POINTS, receiptId, 4, body -> body.putInt(points)),
+                () -> state.savePoints(receiptId, points)));
+    }
+
+    // Returns points from the recovered state for given receiptId, empty if the receipt was never processed.
+    @Override
+    public OptionalInt findPointsById(ReceiptId receiptId) {
+        return state.findPointsById(receiptId);
+    }
+
+    // Logs a batch of Receipts; they share group commits instead of waiting one by one.
+    @Override
+    public void saveAllReceipts(Map<ReceiptId, Receipt> receiptsById) {
+        List<CompletableFuture<Long>> writes = new ArrayList<>(receiptsById.size());
+        receiptsById.forEach((receiptId, receipt) -> {
+            byte[] encoded = ReceiptCodec.encode(receipt);
+            writes.add(enqueue(PendingWrite.Kind.RECORD, record(RECEIPT, receiptId, encoded.length, body -> body.put(encoded)),
+                    () -> state.saveReceipt(receiptId, receipt)));
+        });
+        writes.forEach(WalReceiptRepository::await);
+    }
+
+    // Logs a batch of points; they share group commits instead of waiting one by one.
+    @Override
+    public void saveAllPoints(Map<ReceiptId, Integer> pointsById) {
+        List<CompletableFuture<Long>> writes = new ArrayList<>(pointsById.size());
+        pointsById.forEach((receiptId, points) -> writes.add(enqueue(PendingWrite.Kind.RECORD,
+                record(POINTS, receiptId, 4, body -> body.putInt(points)), () -> state.savePoints(receiptId, points))));
+        writes.forEach(WalReceiptRepository::await);
+    }
+
+    // Logs the new points if the receipt still has expectedPoints, then replaces them unless they changed meanwhile.
+    @Override
+    public boolean replacePoints(ReceiptId receiptId, int expectedPoints, int points) {
+        return replaceAllPoints(List.of(receiptId), new int[] {expectedPoints}, new int[] {points})[0];
+    }
+
+    // Logs a batch of replaced points; they share group commits instead of waiting one by one.
+    @Override
+    public boolean[] replaceAllPoints(List<ReceiptId> receiptIds, int[] expectedPoints, int[] points) {
+        boolean[] replaced = new boolean[receiptIds.size()];
+        List<CompletableFuture<Long>> writes = new ArrayList<>(replaced.length);
+        for (int i = 0; i < replaced.length; i++) {
+            ReceiptId receiptId = receiptIds.get(i);
+            OptionalInt stored = state.findPointsById(receiptId);
+            if (stored.isEmpty() || stored.getAsInt() != expectedPoints[i]) {
+                continue;
+            }
+            int index = i;
+            writes.add(enqueue(PendingWrite.Kind.RECORD, record(POINTS, receiptId, 4, body -> body.putInt(points[index])),
+                    () -> replaced[index] = state.replacePoints(receiptId, expectedPoints[index], points[index])));
+        }
+        writes.forEach(WalReceiptRepository::await);
+        return replaced;
+    }
+
+    // Number of receipts with points.
+    @Override
+    public int size() {
+        return state.size();
+    }
+
+    // Ids of the full receipts in the recovered state.
+    @Override
+    public Spliterator<ReceiptId> receiptIds() {
+        return state.receiptIds();
+    }
+
+    // The in-memory state; the log and snapshots are on disk.
+    @Override
+    public long estimatedMemoryBytes() {
+        return state.estimatedMemoryBytes();
+    }
+
+    // Keeps every receipt, so replaying the log always restores the same state.
+    @Override
+    public long expiredCount() {
+        return 0;
+    }
+
+    @Override
+    public long evictedCount() {
+        return 0;
+    }
+
+    // Saves wait for their group commit and, with fsync=group, its fsync.
+    @Override
+    public boolean blocksOnSave() {
+        return true;
+    }
+
+    /**
+     * Rolls the log and writes a snapshot of the state, then deletes the segments and snapshots it replaces.
+     * Runs in the background every snapshot-every records; public so it can also be triggered on demand.
+     */
+    public void snapshot() throws IOException {
+        // After the roll every record in older segments has been applied to the state
+        long sequence = await(enqueue(PendingWrite.Kind.ROLL, null, null));
+        Path temporary = directory.resolve(SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX + ".tmp");
+        long[] entries = new long[1];
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.putLong(SNAPSHOT_MAGIC).putLong(sequence);
+            Consumer<ByteBuffer> writeRecord = record -> {
+                try {
+                    if (buffer.remaining() < record.remaining()) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    if (buffer.remaining() < record.remaining()) {
+                        writeFully(channel, record);
+                    } else {
+                        buffer.put(record);
+                    }
+                    entries[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            state.forEachPoints((receiptId, points) -> writeRecord.accept(record(POINTS, receiptId, 4, body -> body.putInt(points))));
+            state.forEachReceipt((receiptId, receipt) -> {
+                byte[] encoded = ReceiptCodec.encode(receipt);
+                writeRecord.accept(record(RECEIPT, receiptId, encoded.length, body -> body.put(encoded)));
+            });
+            long count = entries[0];
+            writeRecord.accept(record(END, new ReceiptId(0, 0), 8, body -> body.putLong(count)));
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temporary, snapshotPath(sequence), StandardCopyOption.ATOMIC_MOVE);
+
+        for (long older : sequences(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (older < sequence) {
+                Files.deleteIfExists(segmentPath(older));
+            }
+        }
+        for (long older : sequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (older < sequence) {
+                Files.deleteIfExists(snapshotPath(older));
+            }
+        }
+        log.info("Wrote snapshot {} with {} entries", snapshotPath(sequence), entries[0] - 1);
+    }
+
+    private CompletableFuture<Long> enqueue(PendingWrite.Kind kind, ByteBuffer record, Runnable apply) {
+        if (failure != null) {
+            throw failed();
+        }
+        if (!open && kind == PendingWrite.Kind.RECORD) {
+            throw new IllegalStateException("Receipt log " + directory + " is closed");
+        }
+        PendingWrite write = new PendingWrite(kind, record, apply);
+        queue.add(write);
+        if (failure != null) {
+            // The writer may have stopped before this write was queued
+            failQueued(failed());
+        }
+        return write.done;
+    }
+
+    private static Long await(CompletableFuture<Long> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the receipt log", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Single writer: drains the queue into group commits until closed.
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        List<ByteBuffer> records = new ArrayList<>(maxBatch);
+        while (true) {
+            PendingWrite first;
+            try {
+                first = queue.poll(fsyncIntervalNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            try {
+                if (first == null) {
+                    if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+                        fsyncIfDue();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+
+                int start = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingWrite write = batch.get(i);
+                    if (write.kind == PendingWrite.Kind.RECORD) {
+                        records.add(write.record);
+                        continue;
+                    }
+                    commit(batch.subList(start, i), records);
+                    start = i + 1;
+                    if (write.kind == PendingWrite.Kind.ROLL) {
+                        roll();
+                        write.done.complete(segmentSequence);
+                    } else {
+                        fsync();
+                        segment.close();
+                        write.done.complete(null);
+                        failQueued(new IllegalStateException("Receipt log " + directory + " is closed"));
+                        return;
+                    }
+                }
+                commit(batch.subList(start, batch.size()), records);
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not write to receipt log {}", directory, e);
+                for (PendingWrite write : batch) {
+                    write.done.completeExceptionally(e);
+                }
+                if (failure != null) {
+                    log.error("Receipt log {} stopped accepting writes; restart to recover from what is on disk", directory);
+                    failQueued(failed());
+                    closeQuietly();
+                    return;
+                }
+            } finally {
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    // Writes the records of one group with a single gather write, fsyncs per policy, then applies and acknowledges them.
+    private void commit(List<PendingWrite> writes, List<ByteBuffer> records) throws IOException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        long start = segment.position();
+        try {
+            while (remaining > 0) {
+                remaining -= segment.write(buffers);
+            }
+        } catch (IOException | RuntimeException e) {
+            discardFrom(start, e);
+            throw e;
+        }
+        records.clear();
+        unsynced = true;
+
+        if (fsyncPolicy == FsyncPolicy.GROUP) {
+            fsync();
+        } else if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            fsyncIfDue();
+        }
+        for (PendingWrite write : writes) {
+            write.apply.run();
+            write.done.complete(null);
+        }
+
+        if (segment.position() >= segmentSize) {
+            roll();
+        }
+        if (open && snapshotEvery > 0 && recordsSinceSnapshot.addAndGet(writes.size()) >= snapshotEvery
+                && snapshotRunning.compareAndSet(false, true)) {
+            recordsSinceSnapshot.set(0);
+            try {
+                snapshotExecutor.execute(() -> {
+                    try {
+                        snapshot();
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Could not write receipt snapshot in {}", directory, e);
+                    } finally {
+                        snapshotRunning.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closing, the log tail is replayed instead
+                snapshotRunning.set(false);
+            }
+        }
+    }
+
+    // Cuts a partly written group off the segment, or moves on to a new segment if it cannot, so that later groups are
+    // not written after a torn record that replay would stop at.
+    private void discardFrom(long start, Exception writeFailure) {
+        try {
+            segment.truncate(start);
+        } catch (IOException truncateFailure) {
+            writeFailure.addSuppressed(truncateFailure);
+            try {
+                roll();
+            } catch (IOException rollFailure) {
+                writeFailure.addSuppressed(rollFailure);
+                if (failure == null) {
+                    failure = rollFailure;
+                }
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        fsync();
+        segment.close();
+        segmentSequence++;
+        segment = openSegment(segmentPath(segmentSequence));
+    }
+
+    private void fsyncIfDue() throws IOException {
+        if (unsynced && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos) {
+            fsync();
+        }
+    }
+
+    private void fsync() throws IOException {
+        if (unsynced && fsyncPolicy != FsyncPolicy.NONE) {
+            try {
+                segment.force(false);
+            } catch (IOException e) {
+                // Not retried: a second fsync can succeed although the pages of the first were dropped
+                failure = e;
+                throw e;
+            }
+        }
+        unsynced = false;
+        lastFsyncNanos = System.nanoTime();
+    }
+
+    private IllegalStateException failed() {
+        return new IllegalStateException("Receipt log " + directory + " stopped after a write failure", failure);
+    }
+
+    private void closeQuietly() {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Could not close receipt log segment in {}", directory, e);
+        }
+    }
+
+    private void failQueued(RuntimeException e) {
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            write.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Opens a log segment for appending.
+     * @param path
+     * @return channel the writer thread appends groups to
+     */
+    protected FileChannel openSegment(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replays one log segment into the state.
+     * @param sequence
+     * @param last whether this is the newest segment, whose torn tail is cut off
+     * @return number of records replayed
+     */
+    private long replaySegment(long sequence, boolean last) throws IOException {
+        Path path = segmentPath(sequence);
+        long[] replayed = new long[1];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long valid = readRecords(channel, 0, body -> {
+                applyRecord(state, body);
+                replayed[0]++;
+            });
+            if (valid < channel.size()) {
+                log.warn("Receipt log {} has a torn or corrupt record at byte {}, ignoring the remaining {} bytes",
+                        path, valid, channel.size() - valid);
+                if (last) {
+                    channel.truncate(valid);
+                }
+            }
+        }
+        return replayed[0];
+    }
+
+    // Loads a snapshot into a new state. Returns null if the snapshot is incomplete or corrupt, so nothing of it is kept.
+    private ReceiptRepositoryImpl loadSnapshot(long sequence) throws IOException {
+        ReceiptRepositoryImpl loaded = newState();
+        boolean[] complete = new boolean[1];
+        try (FileChannel channel = FileChannel.open(snapshotPath(sequence), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            header.flip();
+            if (header.remaining() < 16 || header.getLong() != SNAPSHOT_MAGIC || header.getLong() != sequence) {
+                return null;
+            }
+            readRecords(channel, 16, body -> {
+                if (body.get(body.position()) == END) {
+                    complete[0] = true;
+                } else {
+                    applyRecord(loaded, body);
+                }
+            });
+        }
+        return complete[0] ? loaded : null;
+    }
+
+    // Empty unbounded state, packing full receipts against the dictionary of the service
+    private ReceiptRepositoryImpl newState() {
+        return new ReceiptRepositoryImpl(0, Duration.ZERO, System::currentTimeMillis, dictionary);
+    }
+
+    private static void applyRecord(ReceiptRepositoryImpl state, ByteBuffer body) {
+        byte type = body.get();
+        ReceiptId receiptId = new ReceiptId(body.getLong(), body.getLong());
+        if (type == POINTS) {
+            state.savePoints(receiptId, body.getInt());
+        } else if (type == RECEIPT) {
+            state.saveReceipt(receiptId, ReceiptCodec.decode(body));
+        }
+    }
+
+    /**
+     * Reads checksummed records from the given position until the end of the file or the first torn or corrupt record.
+     * @return position after the last valid record
+     */
+    private static long readRecords(FileChannel channel, long start, Consumer<ByteBuffer> handler) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        buffer.flip();
+        channel.position(start);
+        long position = start;
+        while (fill(channel, buffer, HEADER_SIZE)) {
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                break;
+            }
+            if (buffer.capacity() < HEADER_SIZE + length) {
+                ByteBuffer grown = ByteBuffer.allocate(HEADER_SIZE + length);
+                grown.put(buffer);
+                grown.flip();
+                buffer = grown;
+            }
+            if (!fill(channel, buffer, HEADER_SIZE + length)) {
+                break;
+            }
+            ByteBuffer body = buffer.slice(buffer.position() + HEADER_SIZE, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            handler.accept(body);
+            buffer.position(buffer.position() + HEADER_SIZE + length);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    // Reads from the channel until the buffer has at least the needed bytes remaining. False at end of file.
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        while (buffer.remaining() < needed) {
+            buffer.compact();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds one checksummed record.
+     * @param type
+     * @param receiptId
+     * @param bodySize size of what writeBody puts after the id
+     * @param writeBody
+     * @return record ready to be written
+     */
+    private static ByteBuffer record(byte type, ReceiptId receiptId, int bodySize, Consumer<ByteBuffer> writeBody) {
+        int length = 1 + 16 + bodySize;
+        if (length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Receipt record of " + length + " bytes exceeds " + MAX_RECORD_SIZE + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.position(HEADER_SIZE);
+        record.put(type);
+        record.putLong(receiptId.getMostSigBits()).putLong(receiptId.getLeastSigBits());
+        writeBody.accept(record);
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private List<Long> sequences(String prefix, String suffix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    private void deleteFiles(String suffix) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", sequence) + SEGMENT_SUFFIX);
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%020d", sequence) + SNAPSHOT_SUFFIX);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // A save (or a roll/close request) waiting for the writer thread
+    private static final class PendingWrite {
+        enum Kind { RECORD, ROLL, CLOSE }
+
+        final Kind kind;
+        final ByteBuffer record;
+        final Runnable apply;
+        // Completes with the new segment sequence for ROLL, null otherwise
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        PendingWrite(Kind kind, ByteBuffer record, Runnable apply) {
+            this.kind = kind;
+            this.record = record;
+            this.apply = apply;
+        }
+    }
+}
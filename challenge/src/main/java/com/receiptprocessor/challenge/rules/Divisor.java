@@ -0,0 +1,63 @@
+package com.receiptprocessor.challenge.rules;
+
+/**
+ * A divisor known when a rule set is compiled, prepared so that checks on each receipt multiply instead of divide, as the
+ * JIT does for constant divisors in PointsCalculator. A hardware division costs tens of cycles; a multiplication a few.
+ *
+ * divides uses the modular inverse of the odd part of the divisor (Granlund and Montgomery), exact for every non-negative long.
+ * divide uses a 64-bit reciprocal (Lemire, Kaser and Kurz), exact for dividends and divisors below 2^32, and falls back
+ * to a division otherwise.
+ */
+final class Divisor {
+
+    private static final long LOW_32 = 0xFFFFFFFFL;
+
+    private final long value;
+
+    // Inverse of the odd part of value, modulo 2^64
+    private final long inverse;
+
+    // Trailing zero bits of value
+    private final int shift;
+
+    // (2^64 - 1) / value, unsigned
+    private final long limit;
+
+    // ceil(2^64 / value), unsigned, or 0 if value is 1 or 2^32 or more
+    private final long reciprocal;
+
+    Divisor(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive, was " + value);
+        }
+        this.value = value;
+        this.shift = Long.numberOfTrailingZeros(value);
+        long odd = value >>> shift;
+        // Newton's iteration doubles the correct low bits of the inverse: 3, 6, 12, 24, 48, 96
+        long x = odd;
+        for (int i = 0; i < 5; i++) {
+            x *= 2 - odd * x;
+        }
+        this.inverse = x;
+        this.limit = Long.divideUnsigned(-1L, value);
+        this.reciprocal = value > 1 && value <= LOW_32 ? limit + 1 : 0;
+    }
+
+    long value() {
+        return value;
+    }
+
+    // Whether n, non-negative, is a multiple of the divisor.
+    boolean divides(long n) {
+        return Long.compareUnsigned(Long.rotateRight(n * inverse, shift), limit) <= 0;
+    }
+
+    // n / divisor, rounded down, for non-negative n.
+    long divide(long n) {
+        if (reciprocal != 0 && n <= LOW_32) {
+            // High 64 bits of the unsigned product reciprocal * n
+            return Math.multiplyHigh(reciprocal, n) + ((reciprocal >> 63) & n);
+        }
+        return value == 1 ? n : n / value;
+    }
+}
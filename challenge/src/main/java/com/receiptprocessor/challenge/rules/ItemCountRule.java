@@ -0,0 +1,33 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points for every group of `every` items on the receipt.
+@JsonTypeName("item-count")
+public class ItemCountRule extends PointsRule {
+
+    private int every = 1;
+
+    private int points;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        program.itemsEvery(positive(every, "every"), points);
+    }
+
+    public int getEvery() {
+        return every;
+    }
+
+    public void setEvery(int every) {
+        this.every = every;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,36 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// For each item whose trimmed description length is a multiple of lengthMultiple, the price times priceMultiplier,
+// rounded up to the nearest point.
+@JsonTypeName("item-description-length")
+public class ItemDescriptionRule extends PointsRule {
+
+    private int lengthMultiple;
+
+    private String priceMultiplier;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        long[] multiplier = fraction(priceMultiplier, "priceMultiplier");
+        // Prices are in cents, points are per dollar
+        program.itemDescriptionLengthMultipleOf(positive(lengthMultiple, "lengthMultiple"), multiplier[0], multiplier[1] * 100);
+    }
+
+    public int getLengthMultiple() {
+        return lengthMultiple;
+    }
+
+    public void setLengthMultiple(int lengthMultiple) {
+        this.lengthMultiple = lengthMultiple;
+    }
+
+    public String getPriceMultiplier() {
+        return priceMultiplier;
+    }
+
+    public void setPriceMultiplier(String priceMultiplier) {
+        this.priceMultiplier = priceMultiplier;
+    }
+}
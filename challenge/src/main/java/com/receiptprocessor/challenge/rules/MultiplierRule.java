@@ -0,0 +1,24 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Multiplies the points of all other rules by factor, rounding down; usually limited to a promotion with from and to.
+@JsonTypeName("multiplier")
+public class MultiplierRule extends PointsRule {
+
+    private String factor;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        long[] fraction = fraction(factor, "factor");
+        program.multiplier(fraction[0], fraction[1]);
+    }
+
+    public String getFactor() {
+        return factor;
+    }
+
+    public void setFactor(String factor) {
+        this.factor = factor;
+    }
+}
@@ -0,0 +1,106 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.Receipt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores receipts with the current rule set, loaded from receipt.points.rules at startup.
+ * A new rule set is compiled before it replaces the current one, so a broken rule set is rejected without effect; requests
+ * already scoring keep the program they started with, so a swap never fails or mixes rules within a receipt.
+ */
+@Service
+@ImportRuntimeHints(RulesRuntimeHints.class)
+public class PointsEngine {
+
+    public static final String DEFAULT_RULES = "classpath:rules/default-rules.json";
+
+    private static final Logger log = LoggerFactory.getLogger(PointsEngine.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final ResourceLoader resourceLoader;
+
+    private final String rulesLocation;
+
+    private final AtomicReference<RuleProgram> program = new AtomicReference<>();
+
+    @Autowired
+    public PointsEngine(ObjectMapper objectMapper, ResourceLoader resourceLoader,
+                        @Value("${receipt.points.rules:" + DEFAULT_RULES + "}") String rulesLocation) throws IOException {
+        this.objectMapper = RuleSet.withRuleTypes(objectMapper);
+        this.resourceLoader = resourceLoader;
+        this.rulesLocation = rulesLocation;
+        reload();
+    }
+
+    // Engine with the default rule set, the seven original rules.
+    public static PointsEngine withDefaultRules() {
+        try {
+            return new PointsEngine(new ObjectMapper(), new DefaultResourceLoader(), DEFAULT_RULES);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the default rule set", e);
+        }
+    }
+
+    /**
+     * Scores a valid receipt with the current rule set.
+     * @param receipt
+     * @param ruleHits receives the rules that awarded points, or null
+     * @return points
+     */
+    public int score(Receipt receipt, RuleProgram.RuleHits ruleHits) {
+        return program.get().evaluate(receipt, ruleHits);
+    }
+
+    // The program receipts are scored with.
+    public RuleProgram current() {
+        return program.get();
+    }
+
+    /**
+     * Compiles a rule set and makes it current.
+     * @param ruleSet
+     * @return the new program
+     * @throws IllegalArgumentException if the rule set is invalid; the current one stays
+     */
+    public RuleProgram swap(RuleSet ruleSet) {
+        RuleProgram compiled = ruleSet.compile();
+        program.set(compiled);
+        log.info("Scoring receipts with rule set {} ({} rules)", ruleSet.getName(), ruleSet.getRules().size());
+        return compiled;
+    }
+
+    /**
+     * Reads receipt.points.rules again and makes it current.
+     * @return the new program
+     * @throws IllegalArgumentException if the rule set is invalid; the current one stays
+     */
+    public RuleProgram reload() throws IOException {
+        Resource resource = resourceLoader.getResource(rulesLocation);
+        try (InputStream json = resource.getInputStream()) {
+            return swap(read(json));
+        }
+    }
+
+    /**
+     * Reads a rule set document, with every registered rule type.
+     * @param json
+     * @return rule set, not compiled yet
+     */
+    public RuleSet read(InputStream json) throws IOException {
+        return objectMapper.readValue(json, RuleSet.class);
+    }
+}
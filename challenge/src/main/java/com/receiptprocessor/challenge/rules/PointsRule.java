@@ -0,0 +1,159 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.receiptprocessor.challenge.model.Cents;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A points rule, read from a rule set document by its "type". Each rule compiles itself into checks of a RuleProgram once,
+ * when the rule set is loaded, so rules cost nothing to look up while scoring.
+ *
+ * To add a rule type, extend this class with a public no-argument constructor and a @JsonTypeName, and list it in
+ * META-INF/services/com.receiptprocessor.challenge.rules.PointsRule; RuleSet registers those types when it reads a document.
+ * Rules that the RuleProgram.Builder checks cannot express can use its custom hook.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(RetailerCharactersRule.class),
+        @JsonSubTypes.Type(TotalMultipleRule.class),
+        @JsonSubTypes.Type(TotalAtLeastRule.class),
+        @JsonSubTypes.Type(ItemCountRule.class),
+        @JsonSubTypes.Type(ItemDescriptionRule.class),
+        @JsonSubTypes.Type(PurchaseDayRule.class),
+        @JsonSubTypes.Type(PurchaseTimeRule.class),
+        @JsonSubTypes.Type(MultiplierRule.class)
+})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public abstract class PointsRule {
+
+    // Name of the rule in metrics; defaults to its position in the rule set, starting at 1
+    private String id;
+
+    private String description;
+
+    // First and last purchase date (yyyy-MM-dd) the rule applies to, both optional, for promotions
+    private String from;
+
+    private String to;
+
+    /**
+     * Adds the checks of this rule to a program. Throws IllegalArgumentException if the rule is misconfigured.
+     * @param program
+     */
+    protected abstract void compile(RuleProgram.Builder program);
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    /**
+     * Parses an amount such as "0.25" for a rule parameter.
+     * @return cents
+     * @throws IllegalArgumentException if the amount is missing or malformed
+     */
+    protected static long cents(String amount, String parameter) {
+        long cents = Cents.parse(amount);
+        if (cents == Cents.INVALID) {
+            throw new IllegalArgumentException(parameter + " must be an amount such as \"1.00\", was " + amount);
+        }
+        return cents;
+    }
+
+    /**
+     * Parses a non-negative decimal such as "0.2" into an exact fraction.
+     * @return {numerator, denominator}
+     * @throws IllegalArgumentException if the number is missing or malformed
+     */
+    protected static long[] fraction(String decimal, String parameter) {
+        try {
+            BigDecimal value = new BigDecimal(decimal).stripTrailingZeros();
+            if (value.signum() < 0 || value.scale() > 9 || value.precision() - value.scale() > 9) {
+                throw new IllegalArgumentException(parameter + " must be between 0 and 999999999 with at most 9 decimals, was " + decimal);
+            }
+            int scale = Math.max(value.scale(), 0);
+            return new long[]{value.movePointRight(scale).longValueExact(), BigDecimal.TEN.pow(scale).longValueExact()};
+        } catch (NullPointerException | ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException(parameter + " must be a decimal number, was " + decimal);
+        }
+    }
+
+    /**
+     * Parses a time of day such as "14:00".
+     * @return minutes since midnight
+     * @throws IllegalArgumentException if the time is missing or malformed
+     */
+    protected static int minuteOfDay(String time, String parameter) {
+        if (time == null || !time.matches("\\d{2}:\\d{2}")) {
+            throw new IllegalArgumentException(parameter + " must be a time such as \"14:00\", was " + time);
+        }
+        int hour = Integer.parseInt(time.substring(0, 2));
+        int minute = Integer.parseInt(time.substring(3));
+        if (hour > 24 || minute > 59 || (hour == 24 && minute > 0)) {
+            throw new IllegalArgumentException(parameter + " must be a time such as \"14:00\", was " + time);
+        }
+        return hour * 60 + minute;
+    }
+
+    /**
+     * Checks a rule parameter is positive.
+     * @throws IllegalArgumentException otherwise
+     */
+    protected static int positive(int value, String parameter) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(parameter + " must be positive, was " + value);
+        }
+        return value;
+    }
+
+    // from as yyyyMMdd, 0 if open
+    int fromKey() {
+        return from == null ? 0 : dateKey(from, "from");
+    }
+
+    // to as yyyyMMdd, Integer.MAX_VALUE if open
+    int toKey() {
+        return to == null ? Integer.MAX_VALUE : dateKey(to, "to");
+    }
+
+    private static int dateKey(String date, String parameter) {
+        try {
+            LocalDate parsed = LocalDate.parse(date);
+            return parsed.getYear() * 10000 + parsed.getMonthValue() * 100 + parsed.getDayOfMonth();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(parameter + " must be a date such as \"2024-11-29\", was " + date);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points if the day in the purchase date is odd, or even.
+@JsonTypeName("purchase-day")
+public class PurchaseDayRule extends PointsRule {
+
+    // odd or even
+    private String parity = "odd";
+
+    private int points;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        if (!"odd".equals(parity) && !"even".equals(parity)) {
+            throw new IllegalArgumentException("parity must be odd or even, was " + parity);
+        }
+        program.purchaseDay("odd".equals(parity), points);
+    }
+
+    public String getParity() {
+        return parity;
+    }
+
+    public void setParity(String parity) {
+        this.parity = parity;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
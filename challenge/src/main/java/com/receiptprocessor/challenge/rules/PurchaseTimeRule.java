@@ -0,0 +1,43 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points if the purchase time is after `after` and before `before` (both exclusive, e.g. "14:00" and "16:00").
+@JsonTypeName("purchase-time")
+public class PurchaseTimeRule extends PointsRule {
+
+    private String after;
+
+    private String before;
+
+    private int points;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        program.purchaseTimeBetween(minuteOfDay(after, "after"), minuteOfDay(before, "before"), points);
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public void setBefore(String before) {
+        this.before = before;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,23 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points for every alphanumeric character in the retailer name.
+@JsonTypeName("retailer-alphanumeric")
+public class RetailerCharactersRule extends PointsRule {
+
+    private int points = 1;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        program.retailerCharacters(points);
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,613 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A rule set compiled into one evaluator. Each rule adds its checks to the program when the rule set is loaded; checks of the
+ * same kind are kept together in primitive arrays, so scoring a receipt is a single pass over the retailer name, a single pass
+ * over the items that serves every item rule, and a few array loops, with no per-rule virtual calls and no allocation.
+ * Divisors are prepared as Divisors, so multiples and rounding cost multiplications rather than divisions.
+ * Dates and times are only parsed if some rule needs them. A set with at most one rule of each kind and no date windows,
+ * such as the default rules, is scored by a straight-line path without the loops and window checks.
+ * Products that would overflow a long are computed exactly, and points beyond an int saturate instead of wrapping.
+ *
+ * Immutable, so a program can be swapped while requests are scoring with the previous one.
+ */
+public final class RuleProgram {
+
+    // Only the first 32 rules of a set can be reported to RuleHits
+    static final int MAX_REPORTED_RULES = 32;
+
+    private final RuleSet ruleSet;
+
+    // Id of each rule, in the order of the rule set
+    private final String[] ruleIds;
+
+    // Purchase dates (yyyyMMdd) each rule applies to, inclusive; only checked if some rule has a window
+    private final int[] ruleFrom;
+    private final int[] ruleTo;
+    private final boolean windowed;
+
+    private final int[] retailerPoints;
+    private final int[] retailerRule;
+
+    private final Divisor[] totalMultipleCents;
+    private final int[] totalMultiplePoints;
+    private final int[] totalMultipleRule;
+
+    private final long[] totalMinimumCents;
+    private final int[] totalMinimumPoints;
+    private final int[] totalMinimumRule;
+
+    private final Divisor[] itemsEvery;
+    private final int[] itemsPoints;
+    private final int[] itemsRule;
+
+    // Item description rules: ceil(priceCents * numerator / denominator) if the trimmed length is a multiple
+    private final Divisor[] descriptionMultiple;
+    private final long[] descriptionNumerator;
+    private final Divisor[] descriptionDenominator;
+    // Largest price whose product with the numerator cannot overflow
+    private final long[] descriptionMaxPrice;
+    private final int[] descriptionRule;
+
+    // 1 for odd days, 0 for even days
+    private final int[] dayParity;
+    private final int[] dayPoints;
+    private final int[] dayRule;
+
+    // Minutes of the day, both exclusive
+    private final int[] timeAfter;
+    private final int[] timeBefore;
+    private final int[] timePoints;
+    private final int[] timeRule;
+
+    private final ToIntFunction<Receipt>[] custom;
+    private final int[] customRule;
+
+    // Applied last, to the points of all other rules
+    private final long[] multiplierNumerator;
+    private final long[] multiplierDenominator;
+    // Largest absolute points whose product with the numerator cannot overflow
+    private final long[] multiplierMaxPoints;
+    private final int[] multiplierRule;
+
+    // At most one rule of each kind, no custom rules and no date windows: evaluateSingle applies
+    private final boolean single;
+
+    private RuleProgram(RuleSet ruleSet, Builder builder) {
+        this.ruleSet = ruleSet;
+        this.ruleIds = builder.ruleIds.toArray(new String[0]);
+        this.ruleFrom = ints(builder.ruleFrom);
+        this.ruleTo = ints(builder.ruleTo);
+        this.windowed = builder.windowed;
+        this.retailerPoints = ints(builder.retailerPoints);
+        this.retailerRule = ints(builder.retailerRule);
+        this.totalMultipleCents = divisors(builder.totalMultipleCents);
+        this.totalMultiplePoints = ints(builder.totalMultiplePoints);
+        this.totalMultipleRule = ints(builder.totalMultipleRule);
+        this.totalMinimumCents = longs(builder.totalMinimumCents);
+        this.totalMinimumPoints = ints(builder.totalMinimumPoints);
+        this.totalMinimumRule = ints(builder.totalMinimumRule);
+        this.itemsEvery = divisors(builder.itemsEvery);
+        this.itemsPoints = ints(builder.itemsPoints);
+        this.itemsRule = ints(builder.itemsRule);
+        this.descriptionMultiple = divisors(builder.descriptionMultiple);
+        this.descriptionNumerator = longs(builder.descriptionNumerator);
+        this.descriptionDenominator = divisors(builder.descriptionDenominator);
+        this.descriptionMaxPrice = new long[descriptionNumerator.length];
+        for (int i = 0; i < descriptionMaxPrice.length; i++) {
+            long numerator = descriptionNumerator[i];
+            descriptionMaxPrice[i] = numerator == 0 ? Long.MAX_VALUE : (Long.MAX_VALUE - descriptionDenominator[i].value()) / numerator;
+        }
+        this.descriptionRule = ints(builder.descriptionRule);
+        this.dayParity = ints(builder.dayParity);
+        this.dayPoints = ints(builder.dayPoints);
+        this.dayRule = ints(builder.dayRule);
+        this.timeAfter = ints(builder.timeAfter);
+        this.timeBefore = ints(builder.timeBefore);
+        this.timePoints = ints(builder.timePoints);
+        this.timeRule = ints(builder.timeRule);
+        // An array of a wildcard type can be created; the cast to the element type the builder holds is safe
+        @SuppressWarnings("unchecked")
+        ToIntFunction<Receipt>[] custom = (ToIntFunction<Receipt>[]) new ToIntFunction<?>[builder.custom.size()];
+        this.custom = builder.custom.toArray(custom);
+        this.customRule = ints(builder.customRule);
+        this.multiplierNumerator = longs(builder.multiplierNumerator);
+        this.multiplierDenominator = longs(builder.multiplierDenominator);
+        this.multiplierMaxPoints = new long[multiplierNumerator.length];
+        for (int i = 0; i < multiplierMaxPoints.length; i++) {
+            long numerator = multiplierNumerator[i];
+            multiplierMaxPoints[i] = numerator == 0 ? Long.MAX_VALUE : Long.MAX_VALUE / numerator;
+        }
+        this.multiplierRule = ints(builder.multiplierRule);
+        this.single = !windowed && custom.length == 0 && retailerPoints.length <= 1 && totalMultipleCents.length <= 1
+                && totalMinimumCents.length <= 1 && itemsEvery.length <= 1 && descriptionMultiple.length <= 1
+                && dayParity.length <= 1 && timeAfter.length <= 1 && multiplierNumerator.length <= 1;
+    }
+
+    // The rule set this program was compiled from.
+    public RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    // Ids of the rules, indexed like the bits reported to RuleHits.
+    public String[] getRuleIds() {
+        return ruleIds.clone();
+    }
+
+    /**
+     * Scores a valid receipt with every rule in one pass.
+     * @param receipt
+     * @param ruleHits receives the rules that awarded points once per receipt, or null
+     * @return points
+     */
+    public int evaluate(Receipt receipt, RuleHits ruleHits) {
+        if (single) {
+            return evaluateSingle(receipt, ruleHits);
+        }
+        int points = 0;
+        int hits = 0;
+        int date = windowed ? dateKey(receipt) : 0;
+
+        if (retailerPoints.length > 0) {
+            int alphanumeric = receipt.getRetailerEntry().getAlphanumericCount();
+            if (alphanumeric > 0) {
+                for (int i = 0; i < retailerPoints.length; i++) {
+                    int rule = retailerRule[i];
+                    if (active(rule, date)) {
+                        points += alphanumeric * retailerPoints[i];
+                        hits |= bit(rule);
+                    }
+                }
+            }
+        }
+
+        long totalCents = receipt.getTotalCents();
+        for (int i = 0; i < totalMultipleCents.length; i++) {
+            int rule = totalMultipleRule[i];
+            if (totalMultipleCents[i].divides(totalCents) && active(rule, date)) {
+                points += totalMultiplePoints[i];
+                hits |= bit(rule);
+            }
+        }
+        for (int i = 0; i < totalMinimumCents.length; i++) {
+            int rule = totalMinimumRule[i];
+            if (totalCents >= totalMinimumCents[i] && active(rule, date)) {
+                points += totalMinimumPoints[i];
+                hits |= bit(rule);
+            }
+        }
+
+        List<ReceiptItem> items = receipt.getItems();
+        int itemCount = items.size();
+        for (int i = 0; i < itemsEvery.length; i++) {
+            int groups = (int) itemsEvery[i].divide(itemCount);
+            int rule = itemsRule[i];
+            if (groups > 0 && active(rule, date)) {
+                points += groups * itemsPoints[i];
+                hits |= bit(rule);
+            }
+        }
+
+        if (descriptionMultiple.length == 1) {
+            // The usual case: one item rule, with its parameters and date window checked once rather than per item
+            if (active(descriptionRule[0], date)) {
+                int itemPoints = descriptionPoints(items, itemCount);
+                if (itemPoints > 0) {
+                    points += itemPoints;
+                    hits |= bit(descriptionRule[0]);
+                }
+            }
+        } else if (descriptionMultiple.length > 1) {
+            // One pass over the items for all item rules: the trimmed length and price of each item are read once
+            for (int i = 0; i < itemCount; i++) {
+                ReceiptItem item = items.get(i);
+                int length = item.getShortDescriptionEntry().getTrimmedLength();
+                long priceCents = item.getPriceCents();
+                for (int j = 0; j < descriptionMultiple.length; j++) {
+                    if (descriptionMultiple[j].divides(length)) {
+                        int itemPoints = ceilMultiply(priceCents, descriptionNumerator[j], descriptionDenominator[j],
+                                descriptionMaxPrice[j]);
+                        int rule = descriptionRule[j];
+                        if (itemPoints > 0 && active(rule, date)) {
+                            points += itemPoints;
+                            hits |= bit(rule);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (dayParity.length > 0) {
+            int day = receipt.getPurchaseDateDigits() % 100;
+            if (day < 0) {
+                String purchaseDate = receipt.getPurchaseDate();
+                day = PointsCalculator.parseDigits(purchaseDate, purchaseDate.lastIndexOf('-') + 1, purchaseDate.length());
+            }
+            for (int i = 0; i < dayParity.length; i++) {
+                int rule = dayRule[i];
+                if ((day & 1) == dayParity[i] && active(rule, date)) {
+                    points += dayPoints[i];
+                    hits |= bit(rule);
+                }
+            }
+        }
+
+        if (timeAfter.length > 0) {
+            int digits = receipt.getPurchaseTimeDigits();
+            int minute;
+            if (digits >= 0) {
+                minute = digits / 100 * 60 + digits % 100;
+            } else {
+                String purchaseTime = receipt.getPurchaseTime();
+                int colon = purchaseTime.indexOf(':');
+                minute = PointsCalculator.parseDigits(purchaseTime, 0, colon) * 60
+                        + PointsCalculator.parseDigits(purchaseTime, colon + 1, purchaseTime.length());
+            }
+            for (int i = 0; i < timeAfter.length; i++) {
+                int rule = timeRule[i];
+                if (minute > timeAfter[i] && minute < timeBefore[i] && active(rule, date)) {
+                    points += timePoints[i];
+                    hits |= bit(rule);
+                }
+            }
+        }
+
+        for (int i = 0; i < custom.length; i++) {
+            int rule = customRule[i];
+            if (active(rule, date)) {
+                int customPoints = custom[i].applyAsInt(receipt);
+                if (customPoints != 0) {
+                    points += customPoints;
+                    hits |= bit(rule);
+                }
+            }
+        }
+
+        for (int i = 0; i < multiplierNumerator.length; i++) {
+            int rule = multiplierRule[i];
+            if (active(rule, date)) {
+                points = multiply(points, multiplierNumerator[i], multiplierDenominator[i], multiplierMaxPoints[i]);
+                hits |= bit(rule);
+            }
+        }
+
+        if (ruleHits != null) {
+            ruleHits.record(ruleIds, hits);
+        }
+        return points;
+    }
+
+    // evaluate for a program with at most one rule of each kind and no windows: each check runs once, without a loop.
+    private int evaluateSingle(Receipt receipt, RuleHits ruleHits) {
+        int points = 0;
+        int hits = 0;
+
+        if (retailerPoints.length != 0) {
+            int alphanumeric = receipt.getRetailerEntry().getAlphanumericCount();
+            if (alphanumeric > 0) {
+                points += alphanumeric * retailerPoints[0];
+                hits |= bit(retailerRule[0]);
+            }
+        }
+
+        long totalCents = receipt.getTotalCents();
+        if (totalMultipleCents.length != 0 && totalMultipleCents[0].divides(totalCents)) {
+            points += totalMultiplePoints[0];
+            hits |= bit(totalMultipleRule[0]);
+        }
+        if (totalMinimumCents.length != 0 && totalCents >= totalMinimumCents[0]) {
+            points += totalMinimumPoints[0];
+            hits |= bit(totalMinimumRule[0]);
+        }
+
+        List<ReceiptItem> items = receipt.getItems();
+        int itemCount = items.size();
+        if (itemsEvery.length != 0) {
+            int groups = (int) itemsEvery[0].divide(itemCount);
+            if (groups > 0) {
+                points += groups * itemsPoints[0];
+                hits |= bit(itemsRule[0]);
+            }
+        }
+
+        if (descriptionMultiple.length != 0) {
+            int itemPoints = descriptionPoints(items, itemCount);
+            if (itemPoints > 0) {
+                points += itemPoints;
+                hits |= bit(descriptionRule[0]);
+            }
+        }
+
+        if (dayParity.length != 0) {
+            int day = receipt.getPurchaseDateDigits() % 100;
+            if (day < 0) {
+                String purchaseDate = receipt.getPurchaseDate();
+                day = PointsCalculator.parseDigits(purchaseDate, purchaseDate.lastIndexOf('-') + 1, purchaseDate.length());
+            }
+            if ((day & 1) == dayParity[0]) {
+                points += dayPoints[0];
+                hits |= bit(dayRule[0]);
+            }
+        }
+
+        if (timeAfter.length != 0) {
+            int digits = receipt.getPurchaseTimeDigits();
+            int minute;
+            if (digits >= 0) {
+                minute = digits / 100 * 60 + digits % 100;
+            } else {
+                String purchaseTime = receipt.getPurchaseTime();
+                int colon = purchaseTime.indexOf(':');
+                minute = PointsCalculator.parseDigits(purchaseTime, 0, colon) * 60
+                        + PointsCalculator.parseDigits(purchaseTime, colon + 1, purchaseTime.length());
+            }
+            if (minute > timeAfter[0] && minute < timeBefore[0]) {
+                points += timePoints[0];
+                hits |= bit(timeRule[0]);
+            }
+        }
+
+        if (multiplierNumerator.length != 0) {
+            points = multiply(points, multiplierNumerator[0], multiplierDenominator[0], multiplierMaxPoints[0]);
+            hits |= bit(multiplierRule[0]);
+        }
+
+        if (ruleHits != null) {
+            ruleHits.record(ruleIds, hits);
+        }
+        return points;
+    }
+
+    // Points of the only item description rule over all items
+    private int descriptionPoints(List<ReceiptItem> items, int itemCount) {
+        Divisor lengthMultiple = descriptionMultiple[0];
+        long numerator = descriptionNumerator[0];
+        Divisor denominator = descriptionDenominator[0];
+        long maxPrice = descriptionMaxPrice[0];
+        int points = 0;
+        for (int i = 0; i < itemCount; i++) {
+            ReceiptItem item = items.get(i);
+            if (lengthMultiple.divides(item.getShortDescriptionEntry().getTrimmedLength())) {
+                points += ceilMultiply(item.getPriceCents(), numerator, denominator, maxPrice);
+            }
+        }
+        return points;
+    }
+
+    // Receives the rules that awarded points for a receipt: bit (1 << i) is set if the rule ruleIds[i] did.
+    public interface RuleHits {
+        void record(String[] ruleIds, int rules);
+    }
+
+    private boolean active(int rule, int date) {
+        return !windowed || (date >= ruleFrom[rule] && date <= ruleTo[rule]);
+    }
+
+    private static int bit(int rule) {
+        return rule < MAX_REPORTED_RULES ? 1 << rule : 0;
+    }
+
+    // ceil(value * numerator / denominator) for non-negative values, saturating at Integer.MAX_VALUE
+    private static int ceilMultiply(long value, long numerator, Divisor denominator, long maxValue) {
+        long divisor = denominator.value();
+        if (value <= maxValue) {
+            return saturate(denominator.divide(value * numerator + divisor - 1));
+        }
+        // Only for prices far beyond any receipt: the product needs more than 63 bits
+        BigInteger divisorValue = BigInteger.valueOf(divisor);
+        return saturate(BigInteger.valueOf(value).multiply(BigInteger.valueOf(numerator))
+                .add(divisorValue).subtract(BigInteger.ONE).divide(divisorValue));
+    }
+
+    // points * numerator / denominator rounded toward zero, saturating at the int range
+    private static int multiply(int points, long numerator, long denominator, long maxPoints) {
+        if (Math.abs((long) points) <= maxPoints) {
+            return saturate(points * numerator / denominator);
+        }
+        return saturate(BigInteger.valueOf(points).multiply(BigInteger.valueOf(numerator)).divide(BigInteger.valueOf(denominator)));
+    }
+
+    private static int saturate(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private static int saturate(BigInteger value) {
+        return value.bitLength() < 32 ? value.intValue() : value.signum() < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    }
+
+    // yyyy-MM-dd as the number yyyyMMdd, comparable with the rule windows
+    private static int dateKey(Receipt receipt) {
+        int key = receipt.getPurchaseDateDigits();
+        if (key >= 0) {
+            return key;
+        }
+        String purchaseDate = receipt.getPurchaseDate();
+        key = 0;
+        for (int i = 0, length = purchaseDate.length(); i < length; i++) {
+            char c = purchaseDate.charAt(i);
+            if (c >= '0' && c <= '9') {
+                key = key * 10 + (c - '0');
+            }
+        }
+        return key;
+    }
+
+    private static int[] ints(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static Divisor[] divisors(List<? extends Number> values) {
+        Divisor[] array = new Divisor[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new Divisor(values.get(i).longValue());
+        }
+        return array;
+    }
+
+    private static long[] longs(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Collects the checks of each rule while a rule set is compiled. PointsRule.compile adds the checks of one rule;
+     * they apply on the purchase dates of that rule and report its id.
+     */
+    public static final class Builder {
+
+        private final List<String> ruleIds = new ArrayList<>();
+        private final List<Integer> ruleFrom = new ArrayList<>();
+        private final List<Integer> ruleTo = new ArrayList<>();
+        private boolean windowed;
+        private int rule = -1;
+
+        private final List<Integer> retailerPoints = new ArrayList<>();
+        private final List<Integer> retailerRule = new ArrayList<>();
+        private final List<Long> totalMultipleCents = new ArrayList<>();
+        private final List<Integer> totalMultiplePoints = new ArrayList<>();
+        private final List<Integer> totalMultipleRule = new ArrayList<>();
+        private final List<Long> totalMinimumCents = new ArrayList<>();
+        private final List<Integer> totalMinimumPoints = new ArrayList<>();
+        private final List<Integer> totalMinimumRule = new ArrayList<>();
+        private final List<Integer> itemsEvery = new ArrayList<>();
+        private final List<Integer> itemsPoints = new ArrayList<>();
+        private final List<Integer> itemsRule = new ArrayList<>();
+        private final List<Integer> descriptionMultiple = new ArrayList<>();
+        private final List<Long> descriptionNumerator = new ArrayList<>();
+        private final List<Long> descriptionDenominator = new ArrayList<>();
+        private final List<Integer> descriptionRule = new ArrayList<>();
+        private final List<Integer> dayParity = new ArrayList<>();
+        private final List<Integer> dayPoints = new ArrayList<>();
+        private final List<Integer> dayRule = new ArrayList<>();
+        private final List<Integer> timeAfter = new ArrayList<>();
+        private final List<Integer> timeBefore = new ArrayList<>();
+        private final List<Integer> timePoints = new ArrayList<>();
+        private final List<Integer> timeRule = new ArrayList<>();
+        private final List<ToIntFunction<Receipt>> custom = new ArrayList<>();
+        private final List<Integer> customRule = new ArrayList<>();
+        private final List<Long> multiplierNumerator = new ArrayList<>();
+        private final List<Long> multiplierDenominator = new ArrayList<>();
+        private final List<Integer> multiplierRule = new ArrayList<>();
+
+        Builder() {
+        }
+
+        // Starts the checks of the next rule, which apply to purchase dates in [from, to] (yyyyMMdd).
+        void startRule(String id, int from, int to) {
+            rule++;
+            ruleIds.add(id);
+            ruleFrom.add(from);
+            ruleTo.add(to);
+            windowed |= from != 0 || to != Integer.MAX_VALUE;
+        }
+
+        // points for every alphanumeric character of the retailer name
+        public void retailerCharacters(int points) {
+            retailerPoints.add(points);
+            retailerRule.add(rule);
+        }
+
+        // points if the total in cents is a multiple of multipleCents
+        public void totalMultipleOf(long multipleCents, int points) {
+            positive(multipleCents, "multiple");
+            totalMultipleCents.add(multipleCents);
+            totalMultiplePoints.add(points);
+            totalMultipleRule.add(rule);
+        }
+
+        // points if the total in cents is at least minimumCents
+        public void totalAtLeast(long minimumCents, int points) {
+            totalMinimumCents.add(minimumCents);
+            totalMinimumPoints.add(points);
+            totalMinimumRule.add(rule);
+        }
+
+        // points for every group of `every` items
+        public void itemsEvery(int every, int points) {
+            positive(every, "every");
+            itemsEvery.add(every);
+            itemsPoints.add(points);
+            itemsRule.add(rule);
+        }
+
+        // ceil(priceCents * numerator / denominator) for each item whose trimmed description length is a multiple of lengthMultiple
+        public void itemDescriptionLengthMultipleOf(int lengthMultiple, long numerator, long denominator) {
+            positive(lengthMultiple, "lengthMultiple");
+            positive(denominator, "denominator");
+            // Smallest terms keep the product with the price small, e.g. 2/1000 becomes 1/500
+            long gcd = gcd(numerator, denominator);
+            descriptionMultiple.add(lengthMultiple);
+            descriptionNumerator.add(numerator / gcd);
+            descriptionDenominator.add(denominator / gcd);
+            descriptionRule.add(rule);
+        }
+
+        // points if the day of the purchase date is odd (or even)
+        public void purchaseDay(boolean odd, int points) {
+            dayParity.add(odd ? 1 : 0);
+            dayPoints.add(points);
+            dayRule.add(rule);
+        }
+
+        // points if the purchase time is strictly between the two minutes of the day
+        public void purchaseTimeBetween(int afterMinute, int beforeMinute, int points) {
+            timeAfter.add(afterMinute);
+            timeBefore.add(beforeMinute);
+            timePoints.add(points);
+            timeRule.add(rule);
+        }
+
+        // Points from arbitrary code, for rules the checks above cannot express. Called once per receipt, after the built-in checks.
+        public void custom(ToIntFunction<Receipt> points) {
+            custom.add(points);
+            customRule.add(rule);
+        }
+
+        // Multiplies the points of every other rule by numerator / denominator, rounding down
+        public void multiplier(long numerator, long denominator) {
+            positive(denominator, "denominator");
+            if (numerator < 0) {
+                throw new IllegalArgumentException("numerator must not be negative, was " + numerator);
+            }
+            long gcd = gcd(numerator, denominator);
+            multiplierNumerator.add(numerator / gcd);
+            multiplierDenominator.add(denominator / gcd);
+            multiplierRule.add(rule);
+        }
+
+        RuleProgram build(RuleSet ruleSet) {
+            return new RuleProgram(ruleSet, this);
+        }
+
+        private static void positive(long value, String parameter) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(parameter + " must be positive, was " + value);
+            }
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long r = a % b;
+                a = b;
+                b = r;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * A named list of points rules, as read from JSON:
+ * {"name": "default", "rules": [{"type": "retailer-alphanumeric", "points": 1}, ...]}
+ * Points of all rules add up, then multiplier rules apply in order.
+ */
+public class RuleSet {
+
+    private String name;
+
+    private List<PointsRule> rules = new ArrayList<>();
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<PointsRule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<PointsRule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles the rules into one evaluator.
+     * @return program
+     * @throws IllegalArgumentException naming the first misconfigured rule
+     */
+    public RuleProgram compile() {
+        if (rules == null || rules.isEmpty()) {
+            throw new IllegalArgumentException("The rule set has no rules.");
+        }
+        RuleProgram.Builder program = new RuleProgram.Builder();
+        for (int i = 0; i < rules.size(); i++) {
+            PointsRule rule = rules.get(i);
+            String id = rule == null || rule.getId() == null ? String.valueOf(i + 1) : rule.getId();
+            if (rule == null) {
+                throw new IllegalArgumentException("Rule " + id + " is empty.");
+            }
+            try {
+                program.startRule(id, rule.fromKey(), rule.toKey());
+                rule.compile(program);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rule " + id + " is invalid: " + e.getMessage(), e);
+            }
+        }
+        return program.build(this);
+    }
+
+    /**
+     * A copy of objectMapper that also knows the rule types listed for ServiceLoader.
+     * @param objectMapper
+     * @return mapper
+     */
+    public static ObjectMapper withRuleTypes(ObjectMapper objectMapper) {
+        ObjectMapper mapper = objectMapper.copy();
+        for (ServiceLoader.Provider<PointsRule> provider : ServiceLoader.load(PointsRule.class).stream().toList()) {
+            mapper.registerSubtypes(provider.type());
+        }
+        return mapper;
+    }
+}
@@ -0,0 +1,24 @@
+package com.receiptprocessor.challenge.rules;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * What a native image needs to read rule sets, which Spring cannot infer from the beans: the bundled rule set documents
+ * as resources, and RuleSet and every built-in rule type for Jackson binding, since they are only named in @JsonSubTypes.
+ * Rule types added through ServiceLoader need their own hints.
+ */
+class RulesRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] BOUND_TYPES = {
+            RuleSet.class, PointsRule.class, RetailerCharactersRule.class, TotalMultipleRule.class, TotalAtLeastRule.class,
+            ItemCountRule.class, ItemDescriptionRule.class, PurchaseDayRule.class, PurchaseTimeRule.class, MultiplierRule.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern("rules/*.json");
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BOUND_TYPES);
+    }
+}
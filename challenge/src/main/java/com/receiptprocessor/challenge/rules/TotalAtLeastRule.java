@@ -0,0 +1,33 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points if the total reaches a threshold amount.
+@JsonTypeName("total-at-least")
+public class TotalAtLeastRule extends PointsRule {
+
+    private String minimum;
+
+    private int points;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        program.totalAtLeast(cents(minimum, "minimum"), points);
+    }
+
+    public String getMinimum() {
+        return minimum;
+    }
+
+    public void setMinimum(String minimum) {
+        this.minimum = minimum;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,37 @@
+package com.receiptprocessor.challenge.rules;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+// Points if the total is a multiple of an amount, e.g. "1.00" for a round dollar total.
+@JsonTypeName("total-multiple")
+public class TotalMultipleRule extends PointsRule {
+
+    private String multiple;
+
+    private int points;
+
+    @Override
+    protected void compile(RuleProgram.Builder program) {
+        long cents = cents(multiple, "multiple");
+        if (cents == 0) {
+            throw new IllegalArgumentException("multiple must be more than 0.00");
+        }
+        program.totalMultipleOf(cents, points);
+    }
+
+    public String getMultiple() {
+        return multiple;
+    }
+
+    public void setMultiple(String multiple) {
+        this.multiple = multiple;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public void setPoints(int points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,155 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.ReceiptId;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Claims on receipt content or on Idempotency-Keys, each completed with the id of the receipt stored for it.
+ * A request claims its key before anything is scored or stored, so of concurrent duplicates only the first is stored
+ * and the others wait for its id. Claims are kept in the order they were made, and the oldest are dropped once there
+ * are more than maxEntries or they are older than ttl, so the index stays bounded whatever the repository keeps.
+ * @param <K> ReceiptFingerprint or Idempotency-Key
+ */
+final class DeduplicationIndex<K> {
+
+    private final ConcurrentHashMap<K, Claim<K>> claims = new ConcurrentHashMap<>();
+
+    // Claims in the order they were made, oldest first. May still hold claims already released or replaced.
+    private final ConcurrentLinkedQueue<Claim<K>> order = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger ordered = new AtomicInteger();
+
+    // Only one thread drops old claims at a time; the others go on
+    private final ReentrantLock expiring = new ReentrantLock();
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    /**
+     * @param maxEntries claims kept at most
+     * @param ttl how long a claim is kept, zero to keep it until maxEntries pushes it out
+     */
+    DeduplicationIndex(int maxEntries, Duration ttl) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.isNegative() ? 0 : ttl.toNanos();
+    }
+
+    /**
+     * Claims the key of the given claim unless a live claim holds it.
+     * @param claim
+     * @return null if the caller now holds the key, otherwise the earlier claim, possibly still pending
+     */
+    Claim<K> claim(Claim<K> claim) {
+        expire();
+        while (true) {
+            Claim<K> earlier = claims.putIfAbsent(claim.key, claim);
+            if (earlier == null) {
+                track(claim);
+                return null;
+            }
+            if (!isExpired(earlier, claim.claimedAt)) {
+                return earlier;
+            }
+            if (claims.replace(claim.key, earlier, claim)) {
+                track(claim);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Takes the key over from a claim whose receipt the repository dropped.
+     * @param stale
+     * @param claim
+     * @return whether the caller now holds the key
+     */
+    boolean replace(Claim<K> stale, Claim<K> claim) {
+        if (claims.replace(claim.key, stale, claim)) {
+            track(claim);
+            return true;
+        }
+        return false;
+    }
+
+    // Gives the key up, after the receipt of the claim could not be stored.
+    void release(Claim<K> claim) {
+        claims.remove(claim.key, claim);
+    }
+
+    // Removes the claims that match; returns how many.
+    int removeIf(Predicate<Claim<K>> filter) {
+        int before = claims.size();
+        claims.values().removeIf(filter);
+        return before - claims.size();
+    }
+
+    // Drops claims past ttl or beyond maxEntries, oldest first.
+    void expire() {
+        Claim<K> oldest = order.peek();
+        long now = System.nanoTime();
+        if (oldest == null || (ordered.get() <= maxEntries && !isExpired(oldest, now)) || !expiring.tryLock()) {
+            return;
+        }
+        try {
+            while ((oldest = order.peek()) != null && (ordered.get() > maxEntries || isExpired(oldest, now))) {
+                order.poll();
+                ordered.decrementAndGet();
+                claims.remove(oldest.key, oldest);
+            }
+        } finally {
+            expiring.unlock();
+        }
+    }
+
+    private void track(Claim<K> claim) {
+        order.add(claim);
+        ordered.incrementAndGet();
+    }
+
+    private boolean isExpired(Claim<K> claim, long now) {
+        return ttlNanos > 0 && now - claim.claimedAt >= ttlNanos;
+    }
+
+    /**
+     * A key claimed by one request, completed with the id its receipt was stored under, or exceptionally if it could
+     * not be stored. Requests with the same key wait on it.
+     * @param <K>
+     */
+    static final class Claim<K> extends CompletableFuture<ReceiptId> {
+
+        final K key;
+
+        // Content the key was claimed with
+        final ReceiptFingerprint fingerprint;
+
+        final long claimedAt = System.nanoTime();
+
+        Claim(K key, ReceiptFingerprint fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        // Whether the receipt was stored, so the claim has an id.
+        boolean hasId() {
+            return isDone() && !isCompletedExceptionally();
+        }
+
+        // Throws UNPROCESSABLE_ENTITY if a retry with this key carries a different receipt.
+        void checkSameContent(ReceiptFingerprint retried) {
+            if (!fingerprint.equals(retried)) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "The Idempotency-Key was already used for a different receipt.");
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.StringDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Creates the StringDictionary receipts are bound and stored against, sized by receipt.dictionary.max-entries.
+@Configuration(proxyBeanMethods = false)
+public class DictionaryConfiguration {
+
+    /**
+     * The dictionary receipts are bound against, shared by the parsers, ReceiptService and the repository; names past
+     * max-entries are kept per receipt.
+     * @param maxEntries names to share at most
+     * @return dictionary
+     */
+    @Bean
+    public StringDictionary stringDictionary(@Value("${receipt.dictionary.max-entries:65536}") int maxEntries) {
+        return new StringDictionary(maxEntries);
+    }
+}
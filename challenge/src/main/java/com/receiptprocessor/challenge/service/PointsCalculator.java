@@ -0,0 +1,124 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+
+import java.util.List;
+
+/**
+ * Scores a receipt by walking the characters of its fields directly.
+ * Dates and times are parsed as integers and amounts use the cents parsed at deserialization, so scoring a valid receipt does not allocate.
+ * The original seven rules, hard-coded: receipts are scored by the configurable PointsEngine, which must agree with this
+ * class for the default rule set and is benchmarked against it. The field helpers are shared with RuleProgram.
+ */
+public final class PointsCalculator {
+
+    private PointsCalculator() {
+    }
+
+    /**
+     * Calculates points for a receipt according to the given rules.
+     * @param receipt
+     * @return points
+     */
+    public static int calculatePoints(Receipt receipt) {
+        int points = 0;
+
+        // Rule 1: One point for every alphanumeric character in the retailer name
+        points += countAlphanumeric(receipt.getRetailer());
+
+        // Rule 2: 50 points if the total is a round dollar amount with no cents
+        long totalCents = receipt.getTotalCents();
+        if (totalCents % 100 == 0) {
+            points += 50;
+        }
+
+        // Rule 3: 25 points if the total is a multiple of 0.25
+        if (totalCents % 25 == 0) {
+            points += 25;
+        }
+
+        // Rule 4: 5 points for every two items on the receipt
+        List<ReceiptItem> items = receipt.getItems();
+        int itemCount = items.size();
+        points += (itemCount / 2) * 5;
+
+        // Rule 5: Item description length multiple of 3, price * 0.2 rounded up (ceil(cents / 500))
+        for (int i = 0; i < itemCount; i++) {
+            ReceiptItem item = items.get(i);
+            if (trimmedLength(item.getShortDescription()) % 3 == 0) {
+                points += (int) ((item.getPriceCents() + 499) / 500);
+            }
+        }
+
+        // Rule 6: 6 points if the purchase day is odd
+        String purchaseDate = receipt.getPurchaseDate();
+        int day = parseDigits(purchaseDate, purchaseDate.lastIndexOf('-') + 1, purchaseDate.length());
+        if (day % 2 == 1) {
+            points += 6;
+        }
+
+        // Rule 7: 10 points if purchase time is between 2:00 PM and 4:00 PM
+        String purchaseTime = receipt.getPurchaseTime();
+        int colon = purchaseTime.indexOf(':');
+        int hour = parseDigits(purchaseTime, 0, colon);
+        int minute = parseDigits(purchaseTime, colon + 1, purchaseTime.length());
+        if ((hour == 14 && minute >= 1) || (hour == 15 && minute <= 59)) {
+            points += 10;
+        }
+
+        return points;
+    }
+
+    /**
+     * Counts the characters in [a-zA-Z0-9].
+     * @param value
+     * @return number of alphanumeric characters
+     */
+    public static int countAlphanumeric(String value) {
+        int count = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Length the value would have after String.trim(), without creating the trimmed String.
+     * @param value
+     * @return trimmed length
+     */
+    public static int trimmedLength(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    /**
+     * Parses the non-negative decimal digits in value[start, end).
+     * @throws NumberFormatException if the range is empty or contains a non-digit
+     */
+    public static int parseDigits(String value, int start, int end) {
+        if (start < 0 || start >= end) {
+            throw new NumberFormatException("Invalid number: " + value);
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid number: " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
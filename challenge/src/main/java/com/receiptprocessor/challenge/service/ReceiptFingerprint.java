@@ -0,0 +1,100 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+
+import java.util.List;
+
+/**
+ * 128-bit hash of the content of a receipt, used to recognise a receipt that was already processed.
+ * Text fields are hashed as they were sent, each prefixed with its length, and amounts as cents, so the encoding is
+ * unambiguous. Two independent 64-bit lanes make an accidental match between different receipts practically impossible.
+ */
+public final class ReceiptFingerprint {
+
+    private static final long SEED_1 = 0xCBF29CE484222325L;
+    private static final long SEED_2 = 0x9AE16A3B2F90404FL;
+    private static final long PRIME_1 = 0x100000001B3L;
+    private static final long PRIME_2 = 0xC6A4A7935BD1E995L;
+
+    private final long high;
+
+    private final long low;
+
+    private ReceiptFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Hashes the fields and items of a valid receipt without allocating.
+     * @param receipt
+     * @return fingerprint
+     */
+    public static ReceiptFingerprint of(Receipt receipt) {
+        Hasher hasher = new Hasher();
+        hasher.putString(receipt.getRetailer());
+        hasher.putString(receipt.getPurchaseDate());
+        hasher.putString(receipt.getPurchaseTime());
+        hasher.putLong(receipt.getTotalCents());
+        List<ReceiptItem> items = receipt.getItems();
+        int itemCount = items.size();
+        hasher.putLong(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            ReceiptItem item = items.get(i);
+            hasher.putString(item.getShortDescription());
+            hasher.putLong(item.getPriceCents());
+        }
+        return new ReceiptFingerprint(ReceiptId.mix(hasher.lane1, hasher.lane2), ReceiptId.mix(hasher.lane2, hasher.lane1 ^ PRIME_2));
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(low);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ReceiptFingerprint)) {
+            return false;
+        }
+        ReceiptFingerprint fingerprint = (ReceiptFingerprint) other;
+        return high == fingerprint.high && low == fingerprint.low;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(high) + Long.toHexString(low);
+    }
+
+    // Never escapes of(), so the JIT keeps its lanes in registers
+    private static final class Hasher {
+        long lane1 = SEED_1;
+        long lane2 = SEED_2;
+
+        void putString(String value) {
+            if (value == null) {
+                putLong(-1);
+                return;
+            }
+            int length = value.length();
+            putLong(length);
+            for (int i = 0; i < length; i++) {
+                put(value.charAt(i));
+            }
+        }
+
+        void putLong(long value) {
+            put(value);
+        }
+
+        private void put(long value) {
+            lane1 = (lane1 ^ value) * PRIME_1;
+            lane2 = Long.rotateLeft(lane2 + value * PRIME_2, 31) * 5 + 0x52DCE729;
+        }
+    }
+}
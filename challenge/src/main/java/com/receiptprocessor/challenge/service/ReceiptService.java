@@ -1,116 +1,448 @@
 package com.receiptprocessor.challenge.service;
 
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.BatchResult;
+import com.receiptprocessor.challenge.model.Cents;
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
 import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.model.StringDictionary;
 import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.UUID;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ReceiptService {
 
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final ReceiptRepository receiptRepository;
 
+    private final Validator validator;
+
+    private final ReceiptMetrics metrics;
+
+    private final PointsEngine pointsEngine;
+
+    private final ReceiptStats stats;
+
+    private final ShardRouter shardRouter;
+
+    private final StringDictionary dictionary;
+
+    // Keep the full Receipt next to its points. Only needed when the receipt itself has to be read back later.
+    @Value("${receipt.store-full-receipt:false}")
+    private boolean storeFullReceipt;
+
+    // Check the Receipt constraints with ReceiptValidator instead of Bean Validation. Both accept the same receipts.
+    @Value("${receipt.validation.fast:true}")
+    private boolean fastValidation;
+
+    // Return the existing id when a receipt with the same content is submitted again, instead of storing it twice.
+    @Value("${receipt.deduplication.enabled:true}")
+    private boolean deduplicate;
+
+    // receiptId of each receipt content stored recently, bounded by receipt.deduplication.max-entries and ttl
+    private DeduplicationIndex<ReceiptFingerprint> idsByContent = new DeduplicationIndex<>(262_144, Duration.ofHours(1));
+
+    // receiptId of each Idempotency-Key used recently, bounded by receipt.idempotency.max-entries and ttl
+    private DeduplicationIndex<String> idsByIdempotencyKey = new DeduplicationIndex<>(262_144, Duration.ofHours(24));
+
+    // How often to drop expired content and Idempotency-Keys, and those of receipts the repository dropped
+    @Value("${receipt.repository.sweep-interval:1m}")
+    private Duration pruneInterval = Duration.ofMinutes(1);
+
+    // Receipts the repository had dropped at the last prune
+    private long droppedAtLastPrune;
+
+    private ScheduledExecutorService pruner;
+
     @Autowired
-    public ReceiptService(ReceiptRepository receiptRepository) {
+    public ReceiptService(ReceiptRepository receiptRepository, Validator validator, ReceiptMetrics metrics,
+                          PointsEngine pointsEngine, ReceiptStats stats, ShardRouter shardRouter,
+                          StringDictionary dictionary) {
         this.receiptRepository = receiptRepository;
+        this.validator = validator;
+        this.metrics = metrics;
+        this.pointsEngine = pointsEngine;
+        this.stats = stats;
+        this.shardRouter = shardRouter;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Bounds both deduplication indexes. A retry arriving after its entry was dropped is stored again under a new id.
+     * @param maxEntries receipt contents remembered at most
+     * @param ttl how long a receipt content is remembered
+     * @param keyMaxEntries Idempotency-Keys remembered at most
+     * @param keyTtl how long an Idempotency-Key is remembered
+     */
+    @Autowired
+    public void setDeduplicationLimits(@Value("${receipt.deduplication.max-entries:262144}") int maxEntries,
+                                       @Value("${receipt.deduplication.ttl:1h}") Duration ttl,
+                                       @Value("${receipt.idempotency.max-entries:262144}") int keyMaxEntries,
+                                       @Value("${receipt.idempotency.ttl:24h}") Duration keyTtl) {
+        idsByContent = new DeduplicationIndex<>(maxEntries, ttl);
+        idsByIdempotencyKey = new DeduplicationIndex<>(keyMaxEntries, keyTtl);
     }
 
     /**
-     * For a given receipt, check if it is a valid receipt and then generate receiptId and store in map. Return BAD_REQUEST if receipt is invalid.
+     * For a given receipt, check if it is a valid receipt, calculate its points once and store them against a new receiptId.
+     * The full receipt is only stored if receipt.store-full-receipt is set. Return BAD_REQUEST if receipt is invalid.
      * @param receipt
      * @return receiptId
      */
-    public String processReceipt(Receipt receipt) {
-        if (receipt == null || receipt.getRetailer() == null || receipt.getTotal() == null || receipt.getItems() == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid.");
+    public ReceiptId processReceipt(Receipt receipt) {
+        return processReceipt(receipt, null);
+    }
+
+    /**
+     * Like processReceipt(receipt), but a retry is answered with the id of the first submission instead of storing the receipt again:
+     * a receipt sent again with the same idempotencyKey, or with the same content if receipt.deduplication.enabled is set.
+     * Return UNPROCESSABLE_ENTITY if idempotencyKey was already used for a different receipt.
+     * @param receipt
+     * @param idempotencyKey Idempotency-Key sent by the client, or null
+     * @return receiptId
+     */
+    public ReceiptId processReceipt(Receipt receipt, String idempotencyKey) {
+        validateReceipt(receipt);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters.");
         }
 
-        // Validate and parse total
+        ReceiptFingerprint fingerprint = deduplicate || idempotencyKey != null ? ReceiptFingerprint.of(receipt) : null;
+        // The key and the content are claimed before anything is stored, so a concurrent duplicate waits for this
+        // receipt's id instead of being stored too
+        DeduplicationIndex.Claim<String> keyClaim = null;
+        if (idempotencyKey != null) {
+            keyClaim = new DeduplicationIndex.Claim<>(idempotencyKey, fingerprint);
+            ReceiptId earlier = claimOrAwait(idsByIdempotencyKey, keyClaim);
+            if (earlier != null) {
+                return earlier;
+            }
+        }
         try {
-            double total = Double.parseDouble(receipt.getTotal());
-            if (total < 0) { // Optional: Reject negative totals
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid. Total cannot be negative.");
+            ReceiptId receiptId = null;
+            DeduplicationIndex.Claim<ReceiptFingerprint> contentClaim = null;
+            if (deduplicate) {
+                contentClaim = new DeduplicationIndex.Claim<>(fingerprint, fingerprint);
+                receiptId = claimOrAwait(idsByContent, contentClaim);
+            }
+            if (receiptId == null) {
+                try {
+                    receiptId = store(receipt);
+                } catch (RuntimeException e) {
+                    if (contentClaim != null) {
+                        fail(idsByContent, contentClaim, e);
+                    }
+                    throw e;
+                }
+                if (contentClaim != null) {
+                    contentClaim.complete(receiptId);
+                }
             }
-        } catch (NumberFormatException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid. Total must be a valid number.");
+            if (keyClaim != null) {
+                keyClaim.complete(receiptId);
+            }
+            return receiptId;
+        } catch (RuntimeException e) {
+            if (keyClaim != null) {
+                fail(idsByIdempotencyKey, keyClaim, e);
+            }
+            throw e;
         }
+    }
 
-        //If valid create receiptId
-        String receiptId = UUID.randomUUID().toString();
+    // Scores a receipt and stores its points (and the receipt if configured) under a new id.
+    private ReceiptId store(Receipt receipt) {
+        // Only now that the receipt is valid do its names join the dictionary
+        dictionary.intern(receipt);
 
-        // If valid, store receipt in the repository
-        receiptRepository.saveReceipt(receiptId, receipt);
+        // Score once at ingest so reads are a single lookup
+        long start = metrics.start();
+        int points = pointsEngine.score(receipt, metrics);
+        metrics.scored(start);
 
+        //If valid create receiptId, on one of this node's shards
+        ReceiptId receiptId = shardRouter.generateId();
+
+        // If valid, store points (and the receipt if configured) in the repository
+        start = metrics.start();
+        receiptRepository.savePoints(receiptId, points);
+        if (storeFullReceipt) {
+            receiptRepository.saveReceipt(receiptId, receipt);
+        }
+        metrics.saved(start);
+        stats.record(receipt, points);
         return receiptId;
     }
 
     /**
-     * For a given receiptId, find the receipt and calculate points. Return NOT_FOUND if receipt is not found.
-     * @param receiptId
+     * For a batch of receipts, validate and score each one like processReceipt, then store all valid receipts with one bulk save.
+     * An invalid receipt does not fail the batch; its result carries the error instead of an id.
+     * @param receipts
+     * @return one result per receipt, in the same order
+     */
+    public List<BatchResult> processReceipts(List<Receipt> receipts) {
+        List<BatchResult> results = new ArrayList<>(receipts.size());
+        Map<ReceiptId, Integer> pointsById = new HashMap<>();
+        Map<ReceiptId, Receipt> receiptsById = new HashMap<>();
+        // Content claimed by this batch, and the id each is stored under
+        Map<DeduplicationIndex.Claim<ReceiptFingerprint>, ReceiptId> claimed = new HashMap<>();
+        // Receipts whose content another request, or an earlier receipt of this batch, is still storing; by position
+        Map<Integer, DeduplicationIndex.Claim<ReceiptFingerprint>> waiting = new HashMap<>();
+        int[] waitingPoints = new int[receipts.size()];
+
+        for (Receipt receipt : receipts) {
+            try {
+                validateConstraints(receipt);
+                validateReceipt(receipt);
+            } catch (ResponseStatusException e) {
+                results.add(BatchResult.error(e.getReason()));
+                continue;
+            }
+            dictionary.intern(receipt);
+
+            long start = metrics.start();
+            int points = pointsEngine.score(receipt, metrics);
+            metrics.scored(start);
+            DeduplicationIndex.Claim<ReceiptFingerprint> claim = null;
+            if (deduplicate) {
+                // Repeats of a stored receipt, or of an earlier receipt in this batch, get the same id and are not stored again
+                ReceiptFingerprint fingerprint = ReceiptFingerprint.of(receipt);
+                claim = new DeduplicationIndex.Claim<>(fingerprint, fingerprint);
+                DeduplicationIndex.Claim<ReceiptFingerprint> earlier = idsByContent.claim(claim);
+                if (earlier != null && earlier.hasId() && !isStored(earlier.join()) && idsByContent.replace(earlier, claim)) {
+                    earlier = null;
+                }
+                if (earlier != null && earlier.hasId()) {
+                    results.add(BatchResult.id(earlier.join().toString(), points));
+                    continue;
+                }
+                if (earlier != null) {
+                    // Only waited for once this batch completed its own claims, so batches never wait on each other
+                    waiting.put(results.size(), earlier);
+                    waitingPoints[results.size()] = points;
+                    results.add(null);
+                    continue;
+                }
+            }
+
+            ReceiptId receiptId = shardRouter.generateId();
+            pointsById.put(receiptId, points);
+            receiptsById.put(receiptId, receipt);
+            if (claim != null) {
+                claimed.put(claim, receiptId);
+            }
+            results.add(BatchResult.id(receiptId.toString(), points));
+        }
+
+        long start = metrics.start();
+        try {
+            receiptRepository.saveAllPoints(pointsById);
+            if (storeFullReceipt) {
+                receiptRepository.saveAllReceipts(receiptsById);
+            }
+        } catch (RuntimeException e) {
+            claimed.keySet().forEach(claim -> fail(idsByContent, claim, e));
+            throw e;
+        }
+        metrics.savedBatch(start);
+        receiptsById.forEach((receiptId, receipt) -> stats.record(receipt, pointsById.get(receiptId)));
+        claimed.forEach(DeduplicationIndex.Claim::complete);
+
+        waiting.forEach((index, earlier) -> {
+            ReceiptId receiptId = awaitStored(earlier);
+            if (receiptId == null) {
+                // The other request could not store it, or the repository dropped it since: process this one on its own
+                receiptId = processReceipt(receipts.get(index));
+            }
+            results.set(index, BatchResult.id(receiptId.toString(), waitingPoints[index]));
+        });
+        return results;
+    }
+
+    /**
+     * For a given receiptId, return the points calculated at ingest. Return NOT_FOUND if receipt is not found.
+     * @param receiptId parsed id, null if the client sent something that is not an id
      * @return points
      */
-    public int getPoints(String receiptId) {
+    public int getPoints(ReceiptId receiptId) {
+        OptionalInt points = findPoints(receiptId);
+        if (!points.isPresent()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No receipt found for that ID.");
+        }
+        return points.getAsInt();
+    }
+
+    /**
+     * Like getPoints, but empty instead of NOT_FOUND, for a read that asks another node when the receipt is not here.
+     * @param receiptId
+     * @return points, or empty
+     */
+    public OptionalInt findPoints(ReceiptId receiptId) {
+        long start = metrics.start();
+        OptionalInt points = receiptRepository.findPointsById(receiptId);
+        metrics.found(start);
+        return points;
+    }
 
-        Receipt receipt = receiptRepository.findReceiptById(receiptId);
+    /**
+     * Runs the Bean Validation constraints of Receipt, as @Valid does for a single receipt in the controller.
+     * Throws BAD_REQUEST naming the first violated field.
+     * @param receipt
+     */
+    public void validateConstraints(Receipt receipt) {
         if (receipt == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No receipt found for that ID.");
+            return;
+        }
+        long start = metrics.start();
+        if (fastValidation) {
+            String violation = ReceiptValidator.firstViolation(receipt);
+            metrics.validated(start);
+            if (violation != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid. " + violation);
+            }
+            return;
+        }
+        Set<ConstraintViolation<Receipt>> violations = validator.validate(receipt);
+        metrics.validated(start);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<Receipt> violation = violations.iterator().next();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The receipt is invalid. " + violation.getPropertyPath() + " " + violation.getMessage());
         }
-        return calculatePoints(receipt);
     }
 
     /**
-     * Calculates points for a receipt according to the given rules.
+     * Checks the fields needed for scoring are present and the amounts parsed. Throws BAD_REQUEST if receipt is invalid.
      * @param receipt
-     * @return points
      */
-    private int calculatePoints(Receipt receipt) {
-        int points = 0;
+    public void validateReceipt(Receipt receipt) {
+        if (receipt == null || receipt.getRetailer() == null || receipt.getTotal() == null || receipt.getItems() == null
+                || receipt.getPurchaseDate() == null || receipt.getPurchaseTime() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid.");
+        }
 
-        // Rule 1: One point for every alphanumeric character in the retailer name
-        points += receipt.getRetailer().replaceAll("[^a-zA-Z0-9]", "").length();
+        // Total and item prices are parsed into cents when the receipt is deserialized
+        if (receipt.getTotalCents() == Cents.INVALID) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid. Total must be a valid non-negative amount.");
+        }
+        for (ReceiptItem item : receipt.getItems()) {
+            if (item == null || item.getShortDescription() == null || item.getPriceCents() == Cents.INVALID) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid. Each item needs a description and a valid non-negative price.");
+            }
+        }
+    }
 
-        // Rule 2: 50 points if the total is a round dollar amount with no cents
-        double total = Double.parseDouble(receipt.getTotal());
-        if (total == Math.floor(total)) {
-            points += 50;
+    // Starts forgetting receipts the repository drops, in the background.
+    @PostConstruct
+    public void start() {
+        if (pruneInterval.isZero() || pruneInterval.isNegative()) {
+            return;
         }
+        pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-dedup-prune");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = pruneInterval.toMillis();
+        pruner.scheduleWithFixedDelay(this::pruneDropped, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
-        // Rule 3: 25 points if the total is a multiple of 0.25
-        if (total % 0.25 == 0) {
-            points += 25;
+    @PreDestroy
+    public void close() {
+        if (pruner != null) {
+            pruner.shutdownNow();
         }
+    }
 
-        // Rule 4: 5 points for every two items on the receipt
-        points += (receipt.getItems().size() / 2) * 5;
+    /**
+     * Forgets the content and Idempotency-Keys of receipts the repository expired or evicted, and drops expired entries.
+     * Only looks for dropped receipts if the repository dropped some since the last run.
+     * @return number of entries removed for dropped receipts
+     */
+    public synchronized int pruneDropped() {
+        idsByContent.expire();
+        idsByIdempotencyKey.expire();
+        long dropped = receiptRepository.expiredCount() + receiptRepository.evictedCount();
+        if (dropped == droppedAtLastPrune) {
+            return 0;
+        }
+        droppedAtLastPrune = dropped;
+        return idsByContent.removeIf(claim -> claim.hasId() && !isStored(claim.join()))
+                + idsByIdempotencyKey.removeIf(claim -> claim.hasId() && !isStored(claim.join()));
+    }
 
-        // Rule 5: Item description length multiple of 3
-        for (ReceiptItem item : receipt.getItems()) {
-            String description = item.getShortDescription().trim();
-            if (description.length() % 3 == 0) {
-                double itemPrice = Double.parseDouble(item.getPrice());
-                points += Math.ceil(itemPrice * 0.2);
+    /**
+     * Claims a key for a receipt about to be stored, or returns the id of the receipt stored under an earlier claim of
+     * the same key, waiting for it while it is being stored. An earlier claim that failed or whose receipt the repository
+     * dropped is taken over. Throws UNPROCESSABLE_ENTITY if the earlier claim was made with different content.
+     * @param index
+     * @param claim
+     * @return id stored for the key, or null if the caller now holds the claim and has to store the receipt
+     */
+    private <K> ReceiptId claimOrAwait(DeduplicationIndex<K> index, DeduplicationIndex.Claim<K> claim) {
+        while (true) {
+            DeduplicationIndex.Claim<K> earlier = index.claim(claim);
+            if (earlier == null) {
+                return null;
             }
+            earlier.checkSameContent(claim.fingerprint);
+            ReceiptId receiptId = awaitStored(earlier);
+            if (receiptId != null) {
+                return receiptId;
+            }
+            if (earlier.hasId() && index.replace(earlier, claim)) {
+                return null;
+            }
+            // Otherwise the earlier claim failed and was released, or another request took it over; claim again
         }
+    }
 
-        // Rule 6: 6 points if the purchase day is odd
-        int day = Integer.parseInt(receipt.getPurchaseDate().split("-")[2]);
-        if (day % 2 == 1) {
-            points += 6;
+    // Waits for a claim; returns the id its receipt was stored under, null if it failed or the repository dropped it.
+    private ReceiptId awaitStored(DeduplicationIndex.Claim<?> claim) {
+        try {
+            ReceiptId receiptId = claim.get();
+            return isStored(receiptId) ? receiptId : null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for a duplicate receipt.");
         }
+    }
 
-        // Rule 7: 10 points if purchase time is between 2:00 PM and 4:00 PM
-        String[] timeParts = receipt.getPurchaseTime().split(":");
-        int hour = Integer.parseInt(timeParts[0]);
-        int minute = Integer.parseInt(timeParts[1]);
-        if ((hour == 14 && minute>=1 ) || (hour == 15 && minute<=59)) {
-            points += 10;
-        }
+    // Gives up a claim whose receipt could not be stored; requests waiting on it claim the key again.
+    private static <K> void fail(DeduplicationIndex<K> index, DeduplicationIndex.Claim<K> claim, RuntimeException e) {
+        index.release(claim);
+        claim.completeExceptionally(e);
+    }
 
-        return points;
+    // An id is only handed out again while the repository still has its points.
+    private boolean isStored(ReceiptId receiptId) {
+        return receiptRepository.findPointsById(receiptId).isPresent();
     }
 }
@@ -0,0 +1,254 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptTotals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Totals of the receipts processed since startup, overall, per retailer and per purchase date, kept up to date on ingest
+ * so that reads never scan receipts. Each total is a set of LongAdders, which spread concurrent increments over
+ * striped cells instead of contending on one value.
+ *
+ * Reads of one retailer or day are a map lookup; a range of days is a walk of the sorted day map; the top retailers are
+ * served from a ranking rebuilt at most every receipt.stats.top-refresh. Totals count receipts when they are stored and
+ * are not reduced when the repository later drops them.
+ */
+@Component
+public class ReceiptStats {
+
+    // Collects the retailers or days beyond the limits, so a flood of distinct names cannot exhaust memory
+    public static final String OTHER = "(other)";
+
+    // Most top retailers a ranking keeps
+    public static final int MAX_TOP = 100;
+
+    private final Totals overall = new Totals();
+
+    private final Map<String, Totals> byRetailer = new ConcurrentHashMap<>();
+
+    private final AtomicInteger retailers = new AtomicInteger();
+
+    // Sorted, so date ranges are a sub-map; yyyy-MM-dd sorts chronologically as text
+    private final NavigableMap<String, Totals> byDay = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger days = new AtomicInteger();
+
+    private final ReentrantLock rankingLock = new ReentrantLock();
+
+    // Null until the top retailers are first read
+    private volatile Ranking ranking;
+
+    // Update the totals on ingest. Off saves a few map lookups per receipt; the endpoints then report zeros.
+    @Value("${receipt.stats.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${receipt.stats.max-retailers:100000}")
+    private int maxRetailers = 100_000;
+
+    @Value("${receipt.stats.max-days:36600}")
+    private int maxDays = 36_600;
+
+    // How stale the top retailers may be
+    @Value("${receipt.stats.top-refresh:1s}")
+    private Duration topRefresh = Duration.ofSeconds(1);
+
+    /**
+     * Counts a stored receipt and the points it got.
+     * @param receipt valid receipt
+     * @param points
+     */
+    public void record(Receipt receipt, int points) {
+        if (enabled) {
+            add(receipt, 1, points, receipt.getTotalCents());
+        }
+    }
+
+    /**
+     * Corrects the points counted for a receipt that was scored again.
+     * @param receipt valid receipt
+     * @param delta new points minus the points counted before
+     */
+    public void adjustPoints(Receipt receipt, int delta) {
+        if (enabled && delta != 0) {
+            add(receipt, 0, delta, 0);
+        }
+    }
+
+    // Totals of every receipt.
+    public ReceiptTotals overall() {
+        return overall.snapshot(null, null);
+    }
+
+    // Totals of one retailer, null if it has no receipts.
+    public ReceiptTotals retailer(String retailer) {
+        Totals totals = byRetailer.get(retailer);
+        return totals == null ? null : totals.snapshot(retailer, null);
+    }
+
+    // Totals of one purchase date (yyyy-MM-dd), null if it has no receipts.
+    public ReceiptTotals day(String date) {
+        Totals totals = byDay.get(date);
+        return totals == null ? null : totals.snapshot(null, date);
+    }
+
+    /**
+     * Totals of each purchase date with receipts in [from, to], in date order.
+     * @param from first date, or null for the earliest
+     * @param to last date, or null for the latest
+     * @return one entry per date
+     */
+    public List<ReceiptTotals> days(String from, String to) {
+        NavigableMap<String, Totals> range = byDay;
+        if (from != null) {
+            range = range.tailMap(from, true);
+        }
+        if (to != null) {
+            range = range.headMap(to, true);
+        }
+        List<ReceiptTotals> result = new ArrayList<>();
+        range.forEach((date, totals) -> result.add(totals.snapshot(null, date)));
+        return result;
+    }
+
+    /**
+     * The retailers with the most points, or the most receipts, from a ranking at most receipt.stats.top-refresh old.
+     * @param limit at most MAX_TOP
+     * @param byReceipts rank by receipts instead of points
+     * @return best first
+     */
+    public List<ReceiptTotals> topRetailers(int limit, boolean byReceipts) {
+        Ranking current = ranking;
+        if (isStale(current) && (current == null ? lock() : rankingLock.tryLock())) {
+            // One reader rebuilds while the others keep answering from the previous ranking
+            try {
+                current = ranking;
+                if (isStale(current)) {
+                    current = rank();
+                    ranking = current;
+                }
+            } finally {
+                rankingLock.unlock();
+            }
+        }
+        List<ReceiptTotals> ranked = byReceipts ? current.byReceipts : current.byPoints;
+        return ranked.subList(0, Math.min(Math.max(limit, 0), ranked.size()));
+    }
+
+    private boolean isStale(Ranking current) {
+        return current == null || System.nanoTime() - current.builtAtNanos >= topRefresh.toNanos();
+    }
+
+    // Waits for the first ranking instead of answering without one.
+    private boolean lock() {
+        rankingLock.lock();
+        return true;
+    }
+
+    private void add(Receipt receipt, int receipts, int points, long totalCents) {
+        overall.add(receipts, points, totalCents);
+        totals(byRetailer, retailers, maxRetailers, receipt.getRetailer()).add(receipts, points, totalCents);
+        totals(byDay, days, maxDays, receipt.getPurchaseDate()).add(receipts, points, totalCents);
+    }
+
+    private static Totals totals(Map<String, Totals> map, AtomicInteger size, int maxSize, String key) {
+        Totals totals = map.get(key);
+        if (totals != null) {
+            return totals;
+        }
+        if (size.get() >= maxSize) {
+            key = OTHER;
+            totals = map.get(key);
+            if (totals != null) {
+                return totals;
+            }
+        }
+        Totals created = new Totals();
+        totals = map.putIfAbsent(key, created);
+        if (totals == null) {
+            size.incrementAndGet();
+            return created;
+        }
+        return totals;
+    }
+
+    // Ranks the retailers in one pass, keeping the best MAX_TOP of each ranking in a min-heap.
+    private Ranking rank() {
+        Comparator<ReceiptTotals> byPoints = Comparator.comparingLong(ReceiptTotals::getPoints);
+        Comparator<ReceiptTotals> byReceipts = Comparator.comparingLong(ReceiptTotals::getReceipts);
+        PriorityQueue<ReceiptTotals> topPoints = new PriorityQueue<>(MAX_TOP + 1, byPoints);
+        PriorityQueue<ReceiptTotals> topReceipts = new PriorityQueue<>(MAX_TOP + 1, byReceipts);
+        byRetailer.forEach((retailer, totals) -> {
+            ReceiptTotals snapshot = totals.snapshot(retailer, null);
+            offer(topPoints, snapshot, MAX_TOP);
+            offer(topReceipts, snapshot, MAX_TOP);
+        });
+        return new Ranking(sorted(topPoints, byPoints), sorted(topReceipts, byReceipts), System.nanoTime());
+    }
+
+    private static void offer(PriorityQueue<ReceiptTotals> top, ReceiptTotals totals, int size) {
+        top.offer(totals);
+        if (top.size() > size) {
+            top.poll();
+        }
+    }
+
+    private static List<ReceiptTotals> sorted(PriorityQueue<ReceiptTotals> top, Comparator<ReceiptTotals> order) {
+        List<ReceiptTotals> sorted = new ArrayList<>(top);
+        sorted.sort(order.reversed().thenComparing(ReceiptTotals::getRetailer));
+        return List.copyOf(sorted);
+    }
+
+    // Running totals of a group of receipts.
+    private static final class Totals {
+
+        private final LongAdder receipts = new LongAdder();
+
+        private final LongAdder points = new LongAdder();
+
+        private final LongAdder totalCents = new LongAdder();
+
+        void add(int receiptCount, int receiptPoints, long receiptCents) {
+            if (receiptCount != 0) {
+                receipts.add(receiptCount);
+            }
+            points.add(receiptPoints);
+            if (receiptCents != 0) {
+                totalCents.add(receiptCents);
+            }
+        }
+
+        ReceiptTotals snapshot(String retailer, String date) {
+            return new ReceiptTotals(retailer, date, receipts.sum(), points.sum(), totalCents.sum());
+        }
+    }
+
+    // The top retailers by points and by receipts, as of builtAtNanos.
+    private static final class Ranking {
+
+        final List<ReceiptTotals> byPoints;
+
+        final List<ReceiptTotals> byReceipts;
+
+        final long builtAtNanos;
+
+        Ranking(List<ReceiptTotals> byPoints, List<ReceiptTotals> byReceipts, long builtAtNanos) {
+            this.byPoints = byPoints;
+            this.byReceipts = byReceipts;
+            this.builtAtNanos = builtAtNanos;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.receiptprocessor.challenge.service;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.RescoreProgress;
+import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.rules.RuleProgram;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recomputes the points of every stored receipt with the current rule set, after the rules changed.
+ * The repository's receipt ids are split into partitions that a dedicated ForkJoinPool scores in parallel; changed points
+ * are written back in batches with replaceAllPoints, which leaves out receipts dropped since they were read and keeps the
+ * write time of the others, so rescoring neither brings receipts back nor extends their time-to-live. Live requests keep
+ * their own threads and only share the repository's per-stripe locks for the duration of a batch write. Only receipts
+ * stored in full (receipt.store-full-receipt) can be rescored; a job is refused when they are not.
+ */
+@Service
+public class RescoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(RescoreService.class);
+
+    // Partitions stop splitting below this many receipts; also the size of each write-back batch
+    static final int BATCH_SIZE = 1024;
+
+    private final ReceiptRepository receiptRepository;
+
+    private final PointsEngine pointsEngine;
+
+    private final ReceiptStats stats;
+
+    private final ForkJoinPool pool;
+
+    // Only receipts stored in full can be rescored
+    @Value("${receipt.store-full-receipt:false}")
+    private boolean storeFullReceipt;
+
+    // The running job, or the last one
+    private volatile Job job;
+
+    public RescoreService(ReceiptRepository receiptRepository, PointsEngine pointsEngine, ReceiptStats stats,
+                          @Value("${receipt.rescore.parallelism:0}") int parallelism) {
+        this.receiptRepository = receiptRepository;
+        this.pointsEngine = pointsEngine;
+        this.stats = stats;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                    thread.setName("receipt-rescore-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Starts rescoring every stored receipt in the background. Return CONFLICT if a job is already running, or if
+     * receipt.store-full-receipt is not set.
+     * @return progress of the new job
+     */
+    public synchronized RescoreProgress start() {
+        Job started = newJob();
+        pool.execute(() -> run(started));
+        return started.progress();
+    }
+
+    /**
+     * Rescores every stored receipt and waits for the job to finish. Return CONFLICT if a job is already running, or if
+     * receipt.store-full-receipt is not set.
+     * @return progress of the finished job
+     */
+    public RescoreProgress rescore() {
+        Job started;
+        synchronized (this) {
+            started = newJob();
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                run(started);
+            }
+        });
+        return started.progress();
+    }
+
+    // Progress of the running job, or of the last one.
+    public RescoreProgress progress() {
+        Job current = job;
+        return current == null ? RescoreProgress.idle() : current.progress();
+    }
+
+    private Job newJob() {
+        if (!storeFullReceipt) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Receipts are stored as points only (receipt.store-full-receipt=false), so there is nothing to rescore.");
+        }
+        if (job != null && job.state == RescoreProgress.State.RUNNING) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A rescoring job is already running.");
+        }
+        // The whole job scores with one program, even if the rule set is replaced meanwhile
+        RuleProgram program = pointsEngine.current();
+        Spliterator<ReceiptId> receiptIds = receiptRepository.receiptIds();
+        job = new Job(program, receiptIds);
+        log.info("Rescoring about {} receipts with rule set {}", receiptIds.estimateSize(), program.getRuleSet().getName());
+        return job;
+    }
+
+    // Runs on a pool thread: splits the ids into partitions, then records how the job ended.
+    private void run(Job current) {
+        try {
+            new Partition(current, current.receiptIds).invoke();
+            current.finish(RescoreProgress.State.DONE, null);
+        } catch (RuntimeException e) {
+            log.error("Rescoring failed", e);
+            current.finish(RescoreProgress.State.FAILED, e.toString());
+        }
+        RescoreProgress progress = current.progress();
+        log.info("Rescored {} receipts ({} changed, {} skipped) in {} ms, {} receipts/s", progress.getProcessed(),
+                progress.getChanged(), progress.getSkipped(), progress.getElapsedMillis(), progress.getReceiptsPerSecond());
+    }
+
+    // Receipt ids scored by one fork-join task, which forks halves off while they are larger than a batch.
+    private final class Partition extends RecursiveAction {
+
+        // ForkJoinTask is Serializable; partitions never leave the pool that runs them
+        private static final long serialVersionUID = 1L;
+
+        private final Job current;
+
+        private final Spliterator<ReceiptId> receiptIds;
+
+        Partition(Job current, Spliterator<ReceiptId> receiptIds) {
+            this.current = current;
+            this.receiptIds = receiptIds;
+        }
+
+        @Override
+        protected void compute() {
+            List<Partition> forked = new ArrayList<>();
+            Spliterator<ReceiptId> half;
+            while (receiptIds.estimateSize() > BATCH_SIZE && (half = receiptIds.trySplit()) != null) {
+                Partition partition = new Partition(current, half);
+                partition.fork();
+                forked.add(partition);
+            }
+
+            Batch changed = new Batch();
+            receiptIds.forEachRemaining(receiptId -> {
+                rescore(receiptId, changed);
+                if (changed.size() >= BATCH_SIZE) {
+                    writeBack(changed);
+                }
+            });
+            writeBack(changed);
+
+            for (Partition partition : forked) {
+                partition.join();
+            }
+        }
+
+        private void rescore(ReceiptId receiptId, Batch changed) {
+            Receipt receipt = receiptRepository.findReceiptById(receiptId);
+            OptionalInt stored = receiptRepository.findPointsById(receiptId);
+            if (receipt == null || stored.isEmpty()) {
+                // Points only, or expired or evicted since the job started
+                current.skipped.increment();
+            } else {
+                int points = current.program.evaluate(receipt, null);
+                if (points != stored.getAsInt()) {
+                    changed.add(receiptId, receipt, stored.getAsInt(), points);
+                }
+            }
+            current.processed.increment();
+        }
+
+        // Replaces the points that are unchanged since they were read; only those count in the stats.
+        private void writeBack(Batch changed) {
+            if (changed.size() == 0) {
+                return;
+            }
+            boolean[] replaced = receiptRepository.replaceAllPoints(changed.receiptIds,
+                    Arrays.copyOf(changed.storedPoints, changed.size()), Arrays.copyOf(changed.points, changed.size()));
+            for (int i = 0; i < replaced.length; i++) {
+                if (replaced[i]) {
+                    stats.adjustPoints(changed.receipts.get(i), changed.points[i] - changed.storedPoints[i]);
+                    current.changed.increment();
+                } else {
+                    // Expired or evicted since it was read
+                    current.skipped.increment();
+                }
+            }
+            changed.clear();
+        }
+    }
+
+    // Receipts of a partition whose points changed, waiting to be written back.
+    private static final class Batch {
+
+        final List<ReceiptId> receiptIds = new ArrayList<>(BATCH_SIZE);
+
+        final List<Receipt> receipts = new ArrayList<>(BATCH_SIZE);
+
+        final int[] storedPoints = new int[BATCH_SIZE];
+
+        final int[] points = new int[BATCH_SIZE];
+
+        void add(ReceiptId receiptId, Receipt receipt, int stored, int rescored) {
+            storedPoints[receiptIds.size()] = stored;
+            points[receiptIds.size()] = rescored;
+            receiptIds.add(receiptId);
+            receipts.add(receipt);
+        }
+
+        int size() {
+            return receiptIds.size();
+        }
+
+        void clear() {
+            receiptIds.clear();
+            receipts.clear();
+        }
+    }
+
+    // State of one rescoring job. Counters are LongAdders, as every pool thread updates them for each receipt.
+    private static final class Job {
+
+        final RuleProgram program;
+
+        final Spliterator<ReceiptId> receiptIds;
+
+        final long total;
+
+        final long startNanos = System.nanoTime();
+
+        final LongAdder processed = new LongAdder();
+
+        final LongAdder changed = new LongAdder();
+
+        final LongAdder skipped = new LongAdder();
+
+        volatile RescoreProgress.State state = RescoreProgress.State.RUNNING;
+
+        volatile long finishNanos;
+
+        volatile String error;
+
+        Job(RuleProgram program, Spliterator<ReceiptId> receiptIds) {
+            this.program = program;
+            this.receiptIds = receiptIds;
+            this.total = receiptIds.estimateSize();
+        }
+
+        void finish(RescoreProgress.State finalState, String failure) {
+            finishNanos = System.nanoTime();
+            error = failure;
+            state = finalState;
+        }
+
+        RescoreProgress progress() {
+            RescoreProgress.State current = state;
+            long end = current == RescoreProgress.State.RUNNING ? System.nanoTime() : finishNanos;
+            return new RescoreProgress(current, program.getRuleSet().getName(), total, processed.sum(), changed.sum(),
+                    skipped.sum(), (end - startNanos) / 1_000_000, error);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.receiptprocessor.challenge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.ReceiptJsonParser;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Runs the per-request path of /receipts/process on sample receipts before the service reports ready: binding with
+ * ReceiptJsonParser and Jackson, validation, fingerprinting, scoring and writing the answer, until the JIT has compiled
+ * it. Spring Boot marks the application ready to accept traffic only after every ApplicationRunner returns, so a new node
+ * serves its first requests compiled instead of interpreted. Nothing is stored or counted: no repository, metrics or stats.
+ * A warm-up that fails is logged as a warning and the application starts anyway, only colder.
+ */
+@Component
+public class ScoringWarmUp implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoringWarmUp.class);
+
+    // Receipts that take the different branches of the rules: round and odd totals, odd and even days, afternoon and
+    // morning, descriptions with and without a length multiple of 3, few and many items
+    private static final String[] SAMPLES = {
+            "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\",\"purchaseTime\":\"13:01\",\"total\":\"35.35\",\"items\":["
+                    + "{\"shortDescription\":\"Mountain Dew 12PK\",\"price\":\"6.49\"},{\"shortDescription\":\"Emils Cheese Pizza\",\"price\":\"12.25\"},"
+                    + "{\"shortDescription\":\"Knorr Creamy Chicken\",\"price\":\"1.26\"},{\"shortDescription\":\"Doritos Nacho Cheese\",\"price\":\"3.35\"},"
+                    + "{\"shortDescription\":\"   Klarbrunn 12-PK 12 FL OZ  \",\"price\":\"12.00\"}]}",
+            "{\"retailer\":\"M&M Corner Market\",\"purchaseDate\":\"2022-03-20\",\"purchaseTime\":\"14:33\",\"total\":\"9.00\",\"items\":["
+                    + "{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},"
+                    + "{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"}]}",
+            "{\"retailer\":\"Walgreens\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"08:13\",\"total\":\"2.65\",\"items\":["
+                    + "{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"},{\"shortDescription\":\"Dasani\",\"price\":\"1.40\"}]}",
+            "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\",\"items\":["
+                    + "{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}"
+    };
+
+    private final PointsEngine pointsEngine;
+
+    private final ObjectReader receiptReader;
+
+    private final ObjectWriter answerWriter;
+
+    // Only looked up in; the warm-up adds no names
+    private final StringDictionary dictionary;
+
+    // Receipts to run through the path; C2 compiles a method after about 10000 calls
+    @Value("${receipt.warmup.iterations:20000}")
+    private int iterations;
+
+    // Stops early after this long, so a slow machine still becomes ready
+    @Value("${receipt.warmup.max-time:10s}")
+    private Duration maxTime;
+
+    @Value("${receipt.warmup.enabled:true}")
+    private boolean enabled;
+
+    public ScoringWarmUp(PointsEngine pointsEngine, ObjectMapper objectMapper, StringDictionary dictionary) {
+        this.pointsEngine = pointsEngine;
+        this.receiptReader = objectMapper.readerFor(Receipt.class);
+        this.answerWriter = objectMapper.writerFor(Map.class);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (IOException | RuntimeException e) {
+            log.warn("The scoring warm-up failed, starting without it", e);
+        }
+    }
+
+    /**
+     * Runs the sample receipts through the request path.
+     * @return receipts run, fewer than receipt.warmup.iterations if max-time ran out
+     */
+    public int warmUp() throws IOException {
+        byte[][] bodies = new byte[SAMPLES.length][];
+        for (int i = 0; i < SAMPLES.length; i++) {
+            bodies[i] = SAMPLES[i].getBytes(StandardCharsets.UTF_8);
+        }
+        long start = System.nanoTime();
+        long deadline = start + maxTime.toNanos();
+        int points = 0;
+        int done = 0;
+        while (done < iterations && System.nanoTime() < deadline) {
+            // A few at a time between clock reads
+            for (int i = 0; i < 64 && done < iterations; i++, done++) {
+                byte[] body = bodies[done % bodies.length];
+                // Every eighth receipt through Jackson, which binds the bodies the parser leaves to it
+                Receipt receipt = done % 8 == 0 ? receiptReader.readValue(body) : ReceiptJsonParser.parse(body, dictionary);
+                if (ReceiptValidator.firstViolation(receipt) != null) {
+                    throw new IllegalStateException("Warm-up receipt " + done % bodies.length + " is invalid");
+                }
+                points += pointsEngine.score(receipt, null) + ReceiptFingerprint.of(receipt).hashCode();
+                ReceiptId receiptId = ReceiptId.generate();
+                points += answerWriter.writeValueAsBytes(Map.of("id", receiptId.toString())).length
+                        + ReceiptId.parse(receiptId.toString()).hashCode();
+            }
+        }
+        log.info("Warmed up the scoring path with {} receipts in {} ms (checksum {})", done,
+                (System.nanoTime() - start) / 1_000_000, points);
+        return done;
+    }
+}
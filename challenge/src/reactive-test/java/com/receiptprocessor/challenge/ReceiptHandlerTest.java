@@ -0,0 +1,118 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.reactive.InMemoryReactiveReceiptRepository;
+import com.receiptprocessor.challenge.reactive.ReactiveReceiptConfiguration;
+import com.receiptprocessor.challenge.reactive.ReceiptHandler;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.ReceiptService;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptHandlerTest {
+
+    private static final String RECEIPT = "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\","
+            + "\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}";
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        ReceiptRepositoryImpl receiptRepository = new ReceiptRepositoryImpl();
+        ReceiptMetrics metrics = new ReceiptMetrics(new SimpleMeterRegistry());
+        PointsEngine pointsEngine = PointsEngine.withDefaultRules();
+        ReceiptStats stats = new ReceiptStats();
+        ShardRouter shardRouter = ShardRouter.singleNode();
+        ReceiptService receiptService = new ReceiptService(receiptRepository, Validation.buildDefaultValidatorFactory().getValidator(), metrics,
+                pointsEngine, stats, shardRouter, new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        ReceiptHandler receiptHandler = new ReceiptHandler(receiptService, new InMemoryReactiveReceiptRepository(receiptRepository), shardRouter);
+        webTestClient = WebTestClient.bindToRouterFunction(new ReactiveReceiptConfiguration().receiptRoutes(receiptHandler)).build();
+    }
+
+    // Checks a valid receipt is processed and its points are served from the reactive repository.
+    @Test
+    void testProcessReceiptThenGetPointsPositive() {
+        Map<?, ?> response = webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(RECEIPT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody();
+        assertNotNull(response);
+        String receiptId = (String) response.get("id");
+        assertEquals(receiptId, processWithKey(RECEIPT, null), "a receipt sent again gets its first id");
+
+        webTestClient.get().uri("/receipts/{id}/points", receiptId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.points").isEqualTo(31);
+    }
+
+    // Checks an invalid receipt and a body that is not JSON both return Bad Request.
+    @Test
+    void testProcessReceiptInvalidRequestNegative() {
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{}")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{not json")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Checks a retry with the same Idempotency-Key gets the first id, and the key is rejected for another receipt.
+    @Test
+    void testProcessReceiptIdempotencyKey() {
+        String first = processWithKey(RECEIPT, "retry-1");
+        assertEquals(first, processWithKey(RECEIPT, "retry-1"));
+
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "retry-1")
+                .bodyValue(RECEIPT.replace("13:13", "13:14"))
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    // Checks an unknown receipt id returns Not Found.
+    @Test
+    void testGetPointsInvalidReceiptNegative() {
+        webTestClient.get().uri("/receipts/{id}/points", "invalid-id")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.points").isEqualTo(-1);
+    }
+
+    private String processWithKey(String body, String idempotencyKey) {
+        WebTestClient.RequestBodySpec request = webTestClient.post().uri("/receipts/process").contentType(MediaType.APPLICATION_JSON);
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        Map<?, ?> response = request.bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class)
+                .returnResult().getResponseBody();
+        assertNotNull(response);
+        return (String) response.get("id");
+    }
+}
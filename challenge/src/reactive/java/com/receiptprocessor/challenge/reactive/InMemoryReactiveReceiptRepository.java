@@ -0,0 +1,54 @@
+package com.receiptprocessor.challenge.reactive;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.OptionalInt;
+
+// Reactive view of the ReceiptRepository. Reads are from memory and run directly on the event loop, and so do saves
+// unless the repository waits for the disk on save (receipt.repository.type=wal): those run on the bounded elastic
+// scheduler, so group commits and fsyncs never hold an event loop thread.
+@Repository
+public class InMemoryReactiveReceiptRepository implements ReactiveReceiptRepository {
+
+    private final ReceiptRepository receiptRepository;
+
+    private final Scheduler saveScheduler;
+
+    public InMemoryReactiveReceiptRepository(ReceiptRepository receiptRepository) {
+        this.receiptRepository = receiptRepository;
+        this.saveScheduler = receiptRepository.blocksOnSave() ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    // Saves receiptId and Receipt when subscribed.
+    @Override
+    public Mono<Void> saveReceipt(ReceiptId receiptId, Receipt receipt) {
+        return Mono.<Void>fromRunnable(() -> receiptRepository.saveReceipt(receiptId, receipt)).subscribeOn(saveScheduler);
+    }
+
+    // Emits the Receipt for given receiptId, or completes empty.
+    @Override
+    public Mono<Receipt> findReceiptById(ReceiptId receiptId) {
+        return Mono.fromSupplier(() -> receiptRepository.findReceiptById(receiptId));
+    }
+
+    // Saves receiptId and points when subscribed.
+    @Override
+    public Mono<Void> savePoints(ReceiptId receiptId, int points) {
+        return Mono.<Void>fromRunnable(() -> receiptRepository.savePoints(receiptId, points)).subscribeOn(saveScheduler);
+    }
+
+    // Emits the points for given receiptId, or completes empty.
+    @Override
+    public Mono<Integer> findPointsById(ReceiptId receiptId) {
+        return Mono.defer(() -> {
+            OptionalInt points = receiptRepository.findPointsById(receiptId);
+            return points.isPresent() ? Mono.just(points.getAsInt()) : Mono.empty();
+        });
+    }
+}
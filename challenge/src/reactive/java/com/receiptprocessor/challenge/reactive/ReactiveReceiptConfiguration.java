@@ -0,0 +1,41 @@
+package com.receiptprocessor.challenge.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+// Routes for the reactive build (spring.main.web-application-type=reactive).
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveReceiptConfiguration {
+
+    @Bean
+    public RouterFunction<ServerResponse> receiptRoutes(ReceiptHandler receiptHandler) {
+        return RouterFunctions.route()
+                .POST("/receipts/process", receiptHandler::processReceipt)
+                .GET("/receipts/{id}/points", receiptHandler::getPoints)
+                .build();
+    }
+
+    // Reads the Receipt body of /receipts/process with ReceiptJsonParser, ahead of the Jackson decoder.
+    @Bean
+    public CodecCustomizer receiptDecoderCustomizer(ObjectMapper objectMapper, StringDictionary dictionary,
+                                                    @Value("${receipt.json.fast:true}") boolean fastJson) {
+        return configurer -> configurer.customCodecs().registerWithDefaultConfig(
+                new ReceiptDecoder(objectMapper, dictionary, fastJson));
+    }
+
+    // Tomcat stays on the classpath for the servlet build, which Spring Boot would otherwise prefer. Serve from the Netty event loop.
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
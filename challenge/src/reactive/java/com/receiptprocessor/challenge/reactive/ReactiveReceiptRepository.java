@@ -0,0 +1,12 @@
+package com.receiptprocessor.challenge.reactive;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveReceiptRepository {
+    Mono<Void> saveReceipt(ReceiptId receiptId, Receipt receipt);
+    Mono<Receipt> findReceiptById(ReceiptId receiptId);
+    Mono<Void> savePoints(ReceiptId receiptId, int points);
+    Mono<Integer> findPointsById(ReceiptId receiptId);
+}
@@ -0,0 +1,73 @@
+package com.receiptprocessor.challenge.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptJsonParser;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Decodes a Receipt body with ReceiptJsonParser, and with Jackson when the parser does not take it or receipt.json.fast
+ * is off; the reactive counterpart of ReceiptMessageConverter. Registered ahead of the Jackson decoder for Receipt only.
+ */
+public class ReceiptDecoder extends AbstractDataBufferDecoder<Receipt> {
+
+    private final ObjectReader receiptReader;
+
+    private final StringDictionary dictionary;
+
+    private final boolean fastJson;
+
+    /**
+     * @param objectMapper
+     * @param dictionary dictionary ReceiptJsonParser looks names up in
+     * @param fastJson whether to try ReceiptJsonParser first
+     */
+    public ReceiptDecoder(ObjectMapper objectMapper, StringDictionary dictionary, boolean fastJson) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.receiptReader = objectMapper.readerFor(Receipt.class);
+        this.dictionary = dictionary;
+        this.fastJson = fastJson;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return elementType.toClass() == Receipt.class && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Receipt decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        byte[] body = new byte[buffer.readableByteCount()];
+        buffer.read(body);
+        DataBufferUtils.release(buffer);
+        Charset charset = mimeType == null ? null : mimeType.getCharset();
+        if (charset != null && !StandardCharsets.UTF_8.equals(charset)) {
+            return readWithJackson(new String(body, charset).getBytes(StandardCharsets.UTF_8));
+        }
+        Receipt receipt = fastJson ? ReceiptJsonParser.parse(body, dictionary) : null;
+        return receipt != null ? receipt : readWithJackson(body);
+    }
+
+    private Receipt readWithJackson(byte[] body) {
+        try {
+            return receiptReader.readValue(body);
+        } catch (JsonProcessingException e) {
+            throw new DecodingException("JSON decoding error: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new DecodingException("I/O error while parsing input stream", e);
+        }
+    }
+}
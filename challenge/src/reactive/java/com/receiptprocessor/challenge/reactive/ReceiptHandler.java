@@ -0,0 +1,72 @@
+package com.receiptprocessor.challenge.reactive;
+
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.service.ReceiptService;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+
+// Non-blocking handlers for the api.yml contract, with the same responses as ReceiptController.
+@Component
+public class ReceiptHandler {
+
+    private final ReceiptService receiptService;
+
+    private final ReactiveReceiptRepository receiptRepository;
+
+    private final ShardRouter shardRouter;
+
+    public ReceiptHandler(ReceiptService receiptService, ReactiveReceiptRepository receiptRepository, ShardRouter shardRouter) {
+        this.receiptService = receiptService;
+        this.receiptRepository = receiptRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    // Handler to process receipts with ReceiptService, as ReceiptController does, including deduplication and Idempotency-Key.
+    // Ingest may wait for a concurrent duplicate or for the write-ahead log, so it runs on the bounded elastic scheduler.
+    public Mono<ServerResponse> processReceipt(ServerRequest request) {
+        String idempotencyKey = request.headers().firstHeader("Idempotency-Key");
+        return request.bodyToMono(Receipt.class)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "The receipt is invalid.")))
+                .publishOn(Schedulers.boundedElastic())
+                .map(receipt -> {
+                    receiptService.validateConstraints(receipt);
+                    return receiptService.processReceipt(receipt, idempotencyKey);
+                })
+                .flatMap(receiptId -> ServerResponse.ok().bodyValue(Map.of("id", receiptId.toString())))
+                // Invalid receipt, or an Idempotency-Key reused for a different receipt
+                .onErrorResume(ResponseStatusException.class,
+                        e -> ServerResponse.status(e.getStatusCode()).bodyValue(Map.of("error", String.valueOf(e.getMessage()))))
+                // Handle invalid input
+                .onErrorResume(e -> ServerResponse.badRequest().bodyValue(Map.of("error", String.valueOf(e.getMessage()))));
+    }
+
+    // Handler to get points for a receipt. The id is parsed here once; anything that is not an id is not found.
+    // A receipt not stored here is read from the other nodes that may store it, unless the read was forwarded by one;
+    // SERVICE_UNAVAILABLE if one cannot be reached.
+    public Mono<ServerResponse> getPoints(ServerRequest request) {
+        ReceiptId receiptId = ReceiptId.parse(request.pathVariable("id"));
+        boolean askOthers = receiptId != null && shardRouter.mayBeOnOtherNode(receiptId)
+                && request.headers().firstHeader(ShardRouter.FORWARDED_HEADER) == null;
+        return receiptRepository.findPointsById(receiptId)
+                .flatMap(points -> ServerResponse.ok().bodyValue(Map.of("points", points)))
+                .switchIfEmpty(Mono.defer(() -> !askOthers ? notFound()
+                        : Mono.fromFuture(() -> shardRouter.fetchPoints(receiptId))
+                                .flatMap(points -> points.isPresent()
+                                        ? ServerResponse.ok().bodyValue(Map.of("points", points.getAsInt()))
+                                        : notFound())
+                                .onErrorResume(e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).bodyValue(Map.of("points", -1)))));
+    }
+
+    private static Mono<ServerResponse> notFound() {
+        return ServerResponse.status(HttpStatus.NOT_FOUND).bodyValue(Map.of("points", -1)); // Use -1 to indicate an error
+    }
+}
@@ -0,0 +1,319 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.repository.OffHeapReceiptRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapReceiptRepositoryTest {
+
+    private OffHeapReceiptRepository receiptRepository;
+
+    @BeforeEach
+    void setUp() {
+        receiptRepository = new OffHeapReceiptRepository(4096, "");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        receiptRepository.close();
+    }
+
+    //Checks points and the full receipt are both kept and the receipt is decoded with all its fields.
+    @Test
+    void testSavePointsAndReceiptRoundTrip() {
+        ReceiptId receiptId = ReceiptId.generate();
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25"));
+
+        receiptRepository.savePoints(receiptId, 31);
+        receiptRepository.saveReceipt(receiptId, receipt);
+        Receipt retrieved = receiptRepository.findReceiptById(receiptId);
+
+        assertEquals(OptionalInt.of(31), receiptRepository.findPointsById(receiptId));
+        assertEquals("M&M Corner Market", retrieved.getRetailer());
+        assertEquals("2022-03-20", retrieved.getPurchaseDate());
+        assertEquals("14:33", retrieved.getPurchaseTime());
+        assertEquals(900, retrieved.getTotalCents());
+        assertEquals(2, retrieved.getItems().size());
+        assertEquals("Gätorade", retrieved.getItems().get(1).getShortDescription());
+        assertEquals(225, retrieved.getItems().get(1).getPriceCents());
+    }
+
+    //Checks a receipt saved with only points has no receipt, and null fields survive encoding.
+    @Test
+    void testPointsOnlyAndNullFields() {
+        ReceiptId pointsOnlyId = ReceiptId.generate();
+        ReceiptId emptyReceiptId = ReceiptId.generate();
+
+        receiptRepository.savePoints(pointsOnlyId, 15);
+        receiptRepository.saveReceipt(emptyReceiptId, new Receipt());
+
+        assertEquals(OptionalInt.of(15), receiptRepository.findPointsById(pointsOnlyId));
+        assertNull(receiptRepository.findReceiptById(pointsOnlyId));
+        assertFalse(receiptRepository.findPointsById(emptyReceiptId).isPresent());
+        Receipt empty = receiptRepository.findReceiptById(emptyReceiptId);
+        assertNotNull(empty);
+        assertNull(empty.getRetailer());
+        assertNull(empty.getItems());
+    }
+
+    //Checks replacePoints only replaces the expected points, keeps the receipt and adds no record for an unknown id.
+    @Test
+    void testReplacePoints() {
+        ReceiptId receiptId = ReceiptId.generate();
+        ReceiptId unknown = ReceiptId.generate();
+        receiptRepository.savePoints(receiptId, 15);
+        receiptRepository.saveReceipt(receiptId, new Receipt());
+
+        assertFalse(receiptRepository.replacePoints(receiptId, 16, 20));
+        assertTrue(receiptRepository.replacePoints(receiptId, 15, 20));
+        assertFalse(receiptRepository.replacePoints(unknown, 0, 20));
+
+        assertEquals(OptionalInt.of(20), receiptRepository.findPointsById(receiptId));
+        assertNotNull(receiptRepository.findReceiptById(receiptId));
+        assertFalse(receiptRepository.findPointsById(unknown).isPresent());
+        assertEquals(1, receiptRepository.size());
+    }
+
+    //Checks unknown and null ids are not found.
+    @Test
+    void testFindInvalidIdReturnsEmpty() {
+        assertNull(receiptRepository.findReceiptById(ReceiptId.generate()));
+        assertFalse(receiptRepository.findPointsById(ReceiptId.generate()).isPresent());
+        assertNull(receiptRepository.findReceiptById(null));
+        assertFalse(receiptRepository.findPointsById(null).isPresent());
+    }
+
+    //Checks records spill over into new segments and stay readable.
+    @Test
+    void testRecordsSpanSegments() {
+        List<ReceiptId> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            receiptRepository.savePoints(receiptId, i);
+            receiptRepository.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                    createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25")));
+            ids.add(receiptId);
+        }
+
+        assertTrue(receiptRepository.reservedBytes() > 4096);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(OptionalInt.of(i), receiptRepository.findPointsById(ids.get(i)));
+            assertEquals("M&M Corner Market", receiptRepository.findReceiptById(ids.get(i)).getRetailer());
+        }
+    }
+
+    //Checks the primitive index keeps every id, the nil id included, as it grows, and lists them all.
+    @Test
+    void testIndexKeepsEveryId() {
+        Set<ReceiptId> ids = new HashSet<>();
+        ids.add(new ReceiptId(0, 0));
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(ReceiptId.generate());
+        }
+        ids.forEach(receiptId -> receiptRepository.savePoints(receiptId, receiptId.hashCode()));
+        ids.forEach(receiptId -> receiptRepository.savePoints(receiptId, receiptId.hashCode() + 1));
+
+        assertEquals(ids.size(), receiptRepository.size());
+        ids.forEach(receiptId -> assertEquals(OptionalInt.of(receiptId.hashCode() + 1), receiptRepository.findPointsById(receiptId)));
+        Set<ReceiptId> listed = new HashSet<>();
+        receiptRepository.receiptIds().forEachRemaining(listed::add);
+        assertEquals(ids, listed);
+    }
+
+    //Checks points are written over the record's points, so scoring and rescoring a stored receipt append nothing.
+    @Test
+    void testPointsWrittenInPlace() {
+        ReceiptId receiptId = ReceiptId.generate();
+        receiptRepository.savePoints(receiptId, 0);
+        receiptRepository.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25")));
+
+        for (int i = 0; i < 1000; i++) {
+            receiptRepository.savePoints(receiptId, 2 * i);
+            assertTrue(receiptRepository.replacePoints(receiptId, 2 * i, 2 * i + 1));
+        }
+
+        assertEquals(OptionalInt.of(1999), receiptRepository.findPointsById(receiptId));
+        assertEquals("Gätorade", receiptRepository.findReceiptById(receiptId).getItems().get(1).getShortDescription());
+        assertEquals(4096, receiptRepository.reservedBytes());
+    }
+
+    //Checks compaction releases segments left mostly garbage by receipts saved again, and keeps every receipt readable.
+    @Test
+    void testCompactReleasesReplacedRecords() {
+        List<ReceiptId> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            receiptRepository.savePoints(receiptId, i);
+            receiptRepository.saveReceipt(receiptId, createReceipt("Target", "2022-01-02", "1.25"));
+            ids.add(receiptId);
+        }
+        ids.forEach(receiptId -> receiptRepository.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25"))));
+        long reserved = receiptRepository.reservedBytes();
+
+        assertTrue(receiptRepository.compact() > 0);
+
+        assertTrue(receiptRepository.reservedBytes() < reserved);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(OptionalInt.of(i), receiptRepository.findPointsById(ids.get(i)));
+            assertEquals("M&M Corner Market", receiptRepository.findReceiptById(ids.get(i)).getRetailer());
+        }
+        assertEquals(0, receiptRepository.compact());
+    }
+
+    //Checks no save is lost and every read finds its receipt while segments are compacted under concurrent saves.
+    @Test
+    void testCompactWhileSaving() throws Exception {
+        int threads = 8;
+        int receiptsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<ReceiptId>>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<ReceiptId> ids = new ArrayList<>();
+                    for (int i = 0; i < receiptsPerThread; i++) {
+                        ReceiptId receiptId = ReceiptId.generate();
+                        receiptRepository.savePoints(receiptId, i);
+                        receiptRepository.saveReceipt(receiptId, createReceipt("Target", "2022-01-02", "1.25"));
+                        ids.add(receiptId);
+                    }
+                    for (int round = 1; round <= 20; round++) {
+                        for (ReceiptId receiptId : ids) {
+                            receiptRepository.saveReceipt(receiptId, createReceipt("Target", "2022-01-02", "1.25"));
+                            receiptRepository.savePoints(receiptId, receiptRepository.findPointsById(receiptId).getAsInt() + 1);
+                            assertEquals("Target", receiptRepository.findReceiptById(receiptId).getRetailer());
+                        }
+                    }
+                    return ids;
+                }));
+            }
+            int released = 0;
+            while (!futures.stream().allMatch(Future::isDone)) {
+                released += receiptRepository.compact();
+            }
+
+            assertTrue(released > 0);
+            for (Future<List<ReceiptId>> future : futures) {
+                List<ReceiptId> ids = future.get(60, TimeUnit.SECONDS);
+                for (int i = 0; i < receiptsPerThread; i++) {
+                    assertEquals(OptionalInt.of(i + 20), receiptRepository.findPointsById(ids.get(i)));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //Checks expired receipts are removed and the segments holding them released, and the repository keeps working.
+    @Test
+    void testExpiredReceiptsReleaseSegments() throws Exception {
+        long[] now = {0};
+        OffHeapReceiptRepository expiring = new OffHeapReceiptRepository(4096, "", 0, Duration.ofMinutes(1), () -> now[0]);
+        try {
+            for (int i = 0; i < 200; i++) {
+                ReceiptId receiptId = ReceiptId.generate();
+                expiring.savePoints(receiptId, i);
+                expiring.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                        createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25")));
+            }
+            assertTrue(expiring.reservedBytes() > 4096);
+
+            now[0] += Duration.ofMinutes(1).toMillis();
+            assertEquals(200, expiring.expire());
+            expiring.compact();
+
+            assertEquals(0, expiring.size());
+            assertEquals(200, expiring.expiredCount());
+            assertEquals(4096, expiring.reservedBytes());
+            ReceiptId receiptId = ReceiptId.generate();
+            expiring.savePoints(receiptId, 7);
+            expiring.saveReceipt(receiptId, createReceipt("Target", "2022-01-02", "1.25"));
+            assertEquals(OptionalInt.of(7), expiring.findPointsById(receiptId));
+            assertEquals("Target", expiring.findReceiptById(receiptId).getRetailer());
+        } finally {
+            expiring.close();
+        }
+    }
+
+    //Checks a record larger than a segment is rejected.
+    @Test
+    void testReceiptLargerThanSegmentRejected() {
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25"));
+        receipt.setRetailer(new String(new char[5000]).replace('\0', 'a'));
+
+        assertThrows(IllegalArgumentException.class, () -> receiptRepository.saveReceipt(ReceiptId.generate(), receipt));
+    }
+
+    //Checks memory-mapped segments are created in the configured directory and removed on close.
+    @Test
+    void testMemoryMappedSegments(@TempDir Path directory) throws Exception {
+        OffHeapReceiptRepository mapped = new OffHeapReceiptRepository(4096, directory.toString());
+        ReceiptId receiptId = ReceiptId.generate();
+
+        mapped.savePoints(receiptId, 28);
+        mapped.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gätorade", "2.25")));
+
+        assertEquals(OptionalInt.of(28), mapped.findPointsById(receiptId));
+        assertEquals("14:33", mapped.findReceiptById(receiptId).getPurchaseTime());
+        assertTrue(Files.exists(directory.resolve("receipts-0.seg")));
+        mapped.close();
+        assertFalse(Files.exists(directory.resolve("receipts-0.seg")));
+    }
+
+    //Checks no writes are lost when many threads append at the same time.
+    @Test
+    void testConcurrentSaveNoLostWrites() throws Exception {
+        int threads = 64;
+        int receiptsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<ReceiptId>>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<ReceiptId> ids = new ArrayList<>();
+                    for (int i = 0; i < receiptsPerThread; i++) {
+                        ReceiptId receiptId = ReceiptId.generate();
+                        receiptRepository.savePoints(receiptId, thread * receiptsPerThread + i);
+                        ids.add(receiptId);
+                    }
+                    return ids;
+                }));
+            }
+            for (int t = 0; t < threads; t++) {
+                List<ReceiptId> ids = futures.get(t).get(60, TimeUnit.SECONDS);
+                for (int i = 0; i < receiptsPerThread; i++) {
+                    assertEquals(OptionalInt.of(t * receiptsPerThread + i), receiptRepository.findPointsById(ids.get(i)));
+                }
+            }
+            assertEquals(threads * receiptsPerThread, receiptRepository.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.receiptprocessor.challenge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.Cents;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PointsCalculatorTest {
+
+    // Checks examples/simple-receipt.json: 6 (retailer) + 25 (multiple of 0.25).
+    @Test
+    void testSimpleReceiptPoints() {
+        Receipt receipt = createReceipt("Target", "2022-01-02", "13:13", "1.25",
+                createItem("Pepsi - 12-oz", "1.25"));
+
+        assertEquals(31, PointsCalculator.calculatePoints(receipt));
+    }
+
+    // Checks examples/morning-receipt.json: 9 (retailer) + 5 (two items) + 1 ("Dasani" 1.40 * 0.2 rounded up).
+    @Test
+    void testMorningReceiptPoints() {
+        Receipt receipt = createReceipt("Walgreens", "2022-01-02", "08:13", "2.65",
+                createItem("Pepsi - 12-oz", "1.25"),
+                createItem("Dasani", "1.40"));
+
+        assertEquals(15, PointsCalculator.calculatePoints(receipt));
+    }
+
+    // Checks odd day, description trimming and the item pairs rule together.
+    @Test
+    void testTargetReceiptPoints() {
+        Receipt receipt = createReceipt("Target", "2022-01-01", "13:01", "35.35",
+                createItem("Mountain Dew 12PK", "6.49"),
+                createItem("Emils Cheese Pizza", "12.25"),
+                createItem("Knorr Creamy Chicken", "1.26"),
+                createItem("Doritos Nacho Cheese", "3.35"),
+                createItem("   Klarbrunn 12-PK 12 FL OZ  ", "12.00"));
+
+        assertEquals(28, PointsCalculator.calculatePoints(receipt));
+    }
+
+    // Checks round total, afternoon purchase time and non-alphanumeric characters in the retailer name.
+    @Test
+    void testCornerMarketReceiptPoints() {
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"));
+
+        assertEquals(109, PointsCalculator.calculatePoints(receipt));
+    }
+
+    // Checks amounts are parsed into exact cents.
+    @Test
+    void testParseCents() {
+        assertEquals(649, Cents.parse("6.49"));
+        assertEquals(1200, Cents.parse("12.00"));
+        assertEquals(500, Cents.parse("5"));
+        assertEquals(0, Cents.parse("0.00"));
+        assertEquals(Cents.INVALID, Cents.parse("-10.00"));
+        assertEquals(Cents.INVALID, Cents.parse("1.255"));
+        assertEquals(Cents.INVALID, Cents.parse("abc"));
+        assertEquals(Cents.INVALID, Cents.parse(""));
+        assertEquals(Cents.INVALID, Cents.parse(null));
+    }
+
+    // Checks rule 5 uses exact cents: 15.00 * 0.2 is 3 points, not 4 from floating-point rounding.
+    @Test
+    void testItemPriceRuleUsesExactCents() {
+        Receipt receipt = createReceipt("A", "2022-01-02", "10:00", "15.01",
+                createItem("abc", "15.00"));
+
+        assertEquals(1 + 3, PointsCalculator.calculatePoints(receipt));
+    }
+
+    // Checks cents are parsed when the receipt is deserialized, not during scoring.
+    @Test
+    void testCentsParsedOnDeserialization() throws Exception {
+        Receipt receipt = new ObjectMapper().readValue(
+                "{\"retailer\":\"Target\",\"total\":\"35.35\",\"items\":[{\"shortDescription\":\"Pepsi\",\"price\":\"1.25\"}]}",
+                Receipt.class);
+
+        assertEquals(3535, receipt.getTotalCents());
+        assertEquals(125, receipt.getItems().get(0).getPriceCents());
+    }
+
+    // Checks scoring a valid receipt does not allocate on the calling thread.
+    @Test
+    void testCalculatePointsDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"),
+                createItem("   Klarbrunn 12-PK 12 FL OZ  ", "12.00"));
+        long threadId = Thread.currentThread().getId();
+        int points = 0;
+        for (int i = 0; i < 10_000; i++) {
+            points += PointsCalculator.calculatePoints(receipt);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            points += PointsCalculator.calculatePoints(receipt);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(points > 0);
+        // Allow for the measurement call itself, far below one object per receipt
+        assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes for 100000 receipts");
+    }
+}
@@ -0,0 +1,203 @@
+package com.receiptprocessor.challenge;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.rules.PointsRule;
+import com.receiptprocessor.challenge.rules.RuleProgram;
+import com.receiptprocessor.challenge.rules.RuleSet;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PointsEngineTest {
+
+    private final PointsEngine pointsEngine = PointsEngine.withDefaultRules();
+
+    // Checks the default rule set scores the examples like PointsCalculator.
+    @Test
+    void testDefaultRulesScoreExamples() {
+        assertEquals(31, pointsEngine.score(createReceipt("Target", "2022-01-02", "13:13", "1.25",
+                createItem("Pepsi - 12-oz", "1.25")), null));
+        assertEquals(15, pointsEngine.score(createReceipt("Walgreens", "2022-01-02", "08:13", "2.65",
+                createItem("Pepsi - 12-oz", "1.25"),
+                createItem("Dasani", "1.40")), null));
+        assertEquals(109, pointsEngine.score(createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25")), null));
+    }
+
+    // Checks the default rule set agrees with PointsCalculator on random receipts.
+    @Test
+    void testDefaultRulesMatchPointsCalculator() {
+        Random random = new Random(17);
+        for (int i = 0; i < 10_000; i++) {
+            Receipt receipt = randomReceipt(random);
+            assertEquals(PointsCalculator.calculatePoints(receipt), pointsEngine.score(receipt, null),
+                    () -> receipt.getRetailer() + " " + receipt.getPurchaseDate() + " " + receipt.getPurchaseTime());
+        }
+    }
+
+    // Checks the rules that awarded points are reported once per receipt, as bit (1 << index) of their ids.
+    @Test
+    void testScoreReportsRuleHits() {
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"),
+                createItem("Gatorade", "2.25"));
+        List<Integer> recorded = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        int points = pointsEngine.score(receipt, (ruleIds, rules) -> {
+            ids.addAll(Arrays.asList(ruleIds));
+            recorded.add(rules);
+        });
+
+        assertEquals(109, points);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7"), ids);
+        assertEquals(List.of((1 << 0) | (1 << 1) | (1 << 2) | (1 << 3) | (1 << 6)), recorded);
+    }
+
+    // Checks a promotion with a threshold and a multiplier only applies between its from and to dates.
+    @Test
+    void testPromotionAppliesWithinDates() throws Exception {
+        pointsEngine.swap(read("{\"name\":\"black-friday\",\"rules\":["
+                + "{\"type\":\"retailer-alphanumeric\",\"points\":1},"
+                + "{\"type\":\"total-at-least\",\"minimum\":\"50.00\",\"points\":100,\"from\":\"2024-11-29\",\"to\":\"2024-12-02\"},"
+                + "{\"type\":\"multiplier\",\"factor\":\"1.5\",\"from\":\"2024-11-29\",\"to\":\"2024-11-29\"}]}"));
+
+        // 6 (retailer) + 100 (threshold), times 1.5
+        assertEquals(159, pointsEngine.score(createReceipt("Target", "2024-11-29", "10:00", "50.00"), null));
+        assertEquals(106, pointsEngine.score(createReceipt("Target", "2024-11-30", "10:00", "50.00"), null));
+        assertEquals(9, pointsEngine.score(createReceipt("Target", "2024-11-29", "10:00", "49.99"), null));
+        assertEquals(6, pointsEngine.score(createReceipt("Target", "2024-12-03", "10:00", "50.00"), null));
+    }
+
+    // Checks factors whose products overflow a long are computed exactly and points beyond an int saturate.
+    @Test
+    void testLargeFactorsSaturate() throws Exception {
+        pointsEngine.swap(read("{\"name\":\"huge\",\"rules\":["
+                + "{\"type\":\"retailer-alphanumeric\",\"points\":1},"
+                + "{\"type\":\"multiplier\",\"factor\":\"999999999.999999999\"}]}"));
+        assertEquals(Integer.MAX_VALUE, pointsEngine.score(createReceipt("Target", "2022-01-02", "13:13", "1.25"), null));
+
+        pointsEngine.swap(read("{\"name\":\"exact\",\"rules\":["
+                + "{\"type\":\"retailer-alphanumeric\",\"points\":1000},"
+                + "{\"type\":\"multiplier\",\"factor\":\"0.999999999\"}]}"));
+        // 6000 * 999999999 overflows an int but not the exact product
+        assertEquals(5999, pointsEngine.score(createReceipt("Target", "2022-01-02", "13:13", "1.25"), null));
+
+        pointsEngine.swap(read("{\"name\":\"huge-items\",\"rules\":["
+                + "{\"type\":\"item-description-length\",\"lengthMultiple\":1,\"priceMultiplier\":\"999999999.999999999\"}]}"));
+        assertEquals(Integer.MAX_VALUE, pointsEngine.score(createReceipt("Target", "2022-01-02", "13:13", "99999.99",
+                createItem("Pepsi", "99999.99")), null));
+    }
+
+    // Checks an invalid rule set is rejected with the rule at fault and the current rule set keeps scoring.
+    @Test
+    void testInvalidRuleSetKeepsCurrentRules() throws Exception {
+        RuleProgram current = pointsEngine.current();
+        RuleSet invalid = read("{\"name\":\"broken\",\"rules\":["
+                + "{\"type\":\"retailer-alphanumeric\",\"points\":1},"
+                + "{\"id\":\"late\",\"type\":\"purchase-time\",\"after\":\"25:00\",\"before\":\"16:00\",\"points\":10}]}");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> pointsEngine.swap(invalid));
+
+        assertTrue(e.getMessage().startsWith("Rule late is invalid"), e.getMessage());
+        assertSame(current, pointsEngine.current());
+        assertThrows(IllegalArgumentException.class, () -> pointsEngine.swap(read("{\"name\":\"empty\",\"rules\":[]}")));
+    }
+
+    // Checks a program keeps its rules after a swap, so a receipt being scored never mixes two rule sets.
+    @Test
+    void testSwapKeepsProgramsInUse() throws Exception {
+        Receipt receipt = createReceipt("Target", "2022-01-02", "13:13", "1.25",
+                createItem("Pepsi - 12-oz", "1.25"));
+        RuleProgram before = pointsEngine.current();
+
+        RuleProgram after = pointsEngine.swap(read("{\"name\":\"retailer-only\",\"rules\":["
+                + "{\"type\":\"retailer-alphanumeric\",\"points\":2}]}"));
+
+        assertEquals(31, before.evaluate(receipt, null));
+        assertEquals(12, after.evaluate(receipt, null));
+        assertEquals(12, pointsEngine.score(receipt, null));
+        assertEquals("retailer-only", pointsEngine.current().getRuleSet().getName());
+    }
+
+    // Checks rule types listed in META-INF/services are read, here one built on the custom hook.
+    @Test
+    void testRuleTypeFromServiceLoader() throws Exception {
+        pointsEngine.swap(read("{\"name\":\"partners\",\"rules\":["
+                + "{\"type\":\"retailer-is\",\"retailer\":\"Target\",\"points\":7}]}"));
+
+        assertEquals(7, pointsEngine.score(createReceipt("Target", "2022-01-02", "13:13", "1.01"), null));
+        assertEquals(0, pointsEngine.score(createReceipt("Walgreens", "2022-01-02", "13:13", "1.01"), null));
+    }
+
+    // Points if the retailer is exactly the given name; listed in META-INF/services of the tests.
+    @JsonTypeName("retailer-is")
+    public static class RetailerIsRule extends PointsRule {
+
+        private String retailer;
+
+        private int points;
+
+        @Override
+        protected void compile(RuleProgram.Builder program) {
+            String name = retailer;
+            int awarded = points;
+            program.custom(receipt -> name.equals(receipt.getRetailer()) ? awarded : 0);
+        }
+
+        public String getRetailer() {
+            return retailer;
+        }
+
+        public void setRetailer(String retailer) {
+            this.retailer = retailer;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public void setPoints(int points) {
+            this.points = points;
+        }
+    }
+
+    private RuleSet read(String json) throws Exception {
+        return pointsEngine.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Receipt randomReceipt(Random random) {
+        String[] retailers = {"Target", "M&M Corner Market", "Walgreens", "  7-Eleven  ", "CVS & Co."};
+        String[] descriptions = {"Pepsi - 12-oz", "Dasani", "Gatorade", "   Klarbrunn 12-PK 12 FL OZ  ", "abc", "Emils Cheese Pizza"};
+        ReceiptItem[] items = new ReceiptItem[1 + random.nextInt(8)];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = createItem(descriptions[random.nextInt(descriptions.length)], cents(random.nextInt(5000)));
+        }
+        String total = random.nextBoolean() ? cents(random.nextInt(100) * 25) : cents(random.nextInt(10_000));
+        return createReceipt(retailers[random.nextInt(retailers.length)],
+                String.format("2022-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                String.format("%02d:%02d", random.nextInt(24), random.nextInt(60)),
+                total, items);
+    }
+
+    private static String cents(int cents) {
+        return String.format("%d.%02d", cents / 100, cents % 100);
+    }
+}
@@ -1,22 +1,34 @@
 package com.receiptprocessor.challenge;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.BatchResult;
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
 import com.receiptprocessor.challenge.model.ReceiptItem;
 import com.receiptprocessor.challenge.service.ReceiptService;
 import com.receiptprocessor.challenge.controller.ReceiptController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
+import java.util.OptionalInt;
 
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -31,9 +43,16 @@ class ReceiptControllerTest {
     @Mock
     private ReceiptService receiptService;
 
+    @Spy
+    private ReceiptMetrics metrics = new ReceiptMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.singleNode();
+
     @InjectMocks
     private ReceiptController receiptController;
 
+    @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @BeforeEach
@@ -56,15 +75,36 @@ class ReceiptControllerTest {
         item1.setShortDescription("Pepsi - 12-oz");
         item1.setPrice("1.25");
         receipt.setItems(List.of(item1));
-        String receiptId = UUID.randomUUID().toString();
+        ReceiptId receiptId = ReceiptId.generate();
 
-        when(receiptService.processReceipt(any(Receipt.class))).thenReturn(receiptId);
+        when(receiptService.processReceipt(any(Receipt.class), isNull())).thenReturn(receiptId);
 
         mockMvc.perform(post("/receipts/process")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(receipt)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.id").value(receiptId));
+                .andExpect(jsonPath("$.id").value(receiptId.toString()));
+    }
+
+    // Checks the Idempotency-Key header is passed to the service, and a key reused for a different receipt is answered with 422.
+    @Test
+    void testProcessReceiptIdempotencyKey() throws Exception {
+        ReceiptId receiptId = ReceiptId.generate();
+        when(receiptService.processReceipt(any(Receipt.class), eq("retry-1"))).thenReturn(receiptId);
+        when(receiptService.processReceipt(any(Receipt.class), eq("reused")))
+                .thenThrow(new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "The Idempotency-Key was already used for a different receipt."));
+
+        mockMvc.perform(post("/receipts/process")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(receiptId.toString()));
+        mockMvc.perform(post("/receipts/process")
+                        .header("Idempotency-Key", "reused")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25"))))
+                .andExpect(status().isUnprocessableEntity());
     }
 
     // Checks Bad request 400 message is returned from controller when an exception thrown from service class for empty field of Receipt.
@@ -77,25 +117,91 @@ class ReceiptControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    // Checks @Valid uses ReceiptValidator when fast validation is on and the service is not called for an invalid receipt.
+    @Test
+    void testProcessReceiptFastValidationInvalidRetailerNegative() throws Exception {
+        ReflectionTestUtils.setField(receiptController, "fastValidation", true);
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        receipt.setRetailer("Dr. Pepper");
+
+        mockMvc.perform(post("/receipts/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(receipt)))
+                .andExpect(status().isBadRequest());
+
+        verify(receiptService, never()).processReceipt(any(Receipt.class), any());
+    }
+
+    // Checks fast validation does not check item descriptions against their pattern, as Bean Validation does not cascade into items.
+    @Test
+    void testProcessReceiptFastValidationItemDescriptionPositive() throws Exception {
+        ReflectionTestUtils.setField(receiptController, "fastValidation", true);
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        receipt.getItems().get(0).setShortDescription("Dr. Pepper");
+        when(receiptService.processReceipt(any(Receipt.class), isNull())).thenReturn(ReceiptId.generate());
+
+        mockMvc.perform(post("/receipts/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(receipt)))
+                .andExpect(status().isOk());
+    }
+
     // Checks when receiptService returns points for a receipt, then exception is not thrown and points are returned from controller.
     @Test
     void testGetPointsValidReceiptReturnPointsPositive() throws Exception {
-        String receiptId = UUID.randomUUID().toString();
-        when(receiptService.getPoints(receiptId)).thenReturn(100);
+        ReceiptId receiptId = ReceiptId.generate();
+        when(receiptService.findPoints(receiptId)).thenReturn(OptionalInt.of(100));
 
         mockMvc.perform(get("/receipts/{id}/points", receiptId))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.points").value(100));
     }
 
-    // When user requests getPoints for invalid receipt id, then exception is thrown from service class, so controller should return Not Found message.
+    // When user requests getPoints for an unknown receipt id, then the service finds no points, so controller should return Not Found message.
+    @Test
+    void testGetPointsUnknownReceiptNegative() throws Exception {
+        ReceiptId unknownReceiptId = ReceiptId.generate();
+        when(receiptService.findPoints(unknownReceiptId)).thenReturn(OptionalInt.empty());
+
+        mockMvc.perform(get("/receipts/{id}/points", unknownReceiptId))
+                .andExpect(status().isNotFound());
+    }
+
+    // When user requests getPoints for something that is not a receipt id, controller should return Not Found without asking the service.
     @Test
     void testGetPointsInvalidReceiptNegative() throws Exception {
-        String invalidReceiptId = "invalid-id";
-        when(receiptService.getPoints(invalidReceiptId)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "No receipt found for that ID."));
+        mockMvc.perform(get("/receipts/{id}/points", "invalid-id"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.points").value(-1));
+
+        verify(receiptService, never()).findPoints(any());
+    }
+
+    // Checks an id on another node's shard is read from that node when it is not stored here, SERVICE_UNAVAILABLE when
+    // that node is down, that a forwarded read is answered from the local store alone, and that one stored here is
+    // answered without asking the owner.
+    @Test
+    void testGetPointsOtherNodeNegative() throws Exception {
+        String self = "http://localhost:8080";
+        ShardRouter cluster = new ShardRouter(List.of(self, "http://localhost:1"), self, 128, Duration.ofSeconds(1), objectMapper);
+        MockMvc clusterMvc = MockMvcBuilders.standaloneSetup(new ReceiptController(receiptService, objectMapper, metrics, cluster)).build();
+        ReceiptId remote = ReceiptId.generate();
+        while (cluster.isLocal(remote)) {
+            remote = ReceiptId.generate();
+        }
+        when(receiptService.findPoints(remote)).thenReturn(OptionalInt.empty());
 
-        mockMvc.perform(get("/receipts/{id}/points", invalidReceiptId))
+        clusterMvc.perform(get("/receipts/{id}/points", remote))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.points").value(-1));
+
+        clusterMvc.perform(get("/receipts/{id}/points", remote).header(ShardRouter.FORWARDED_HEADER, "true"))
                 .andExpect(status().isNotFound());
+
+        when(receiptService.findPoints(remote)).thenReturn(OptionalInt.of(100));
+        clusterMvc.perform(get("/receipts/{id}/points", remote))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.points").value(100));
     }
 
     // When user requests getPoints for null receipt id, then exception is thrown from service class, so controller should return Not Found message.
@@ -104,4 +210,122 @@ class ReceiptControllerTest {
         mockMvc.perform(get("/receipts//points")) // Missing ID in URL
                 .andExpect(status().isNotFound());
     }
+
+    // Checks a JSON array batch is passed to the service in order and ids and errors are returned per receipt.
+    @Test
+    void testProcessReceiptsJsonArrayReturnResultsPositive() throws Exception {
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        String receiptId = ReceiptId.generate().toString();
+        when(receiptService.processReceipts(anyList()))
+                .thenReturn(Arrays.asList(BatchResult.id(receiptId, 31), BatchResult.error("The receipt is invalid.")));
+
+        mockMvc.perform(post("/receipts/process:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(receipt, new Receipt()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(receiptId))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("The receipt is invalid."));
+
+        verify(receiptService).processReceipts(argThat(receipts -> receipts.size() == 2
+                && "Target".equals(receipts.get(0).getRetailer()) && receipts.get(1).getRetailer() == null));
+    }
+
+    // Checks an NDJSON batch is read line by line, skipping blank lines and passing malformed lines as invalid receipts.
+    @Test
+    void testProcessReceiptsNdjsonMalformedLineIsInvalid() throws Exception {
+        String body = objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25")) + "\n\n{not json\n";
+        when(receiptService.processReceipts(anyList()))
+                .thenReturn(Arrays.asList(BatchResult.id("id-1", 31), BatchResult.error("The receipt is invalid.")));
+
+        mockMvc.perform(post("/receipts/process:batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("id-1"))
+                .andExpect(jsonPath("$[1].error").exists());
+
+        verify(receiptService).processReceipts(argThat(receipts -> receipts.size() == 2
+                && receipts.get(0) != null && receipts.get(1) == null));
+    }
+
+    // Checks a streamed upload is processed in chunks and answered with one {id, points} or {error} line per receipt.
+    @Test
+    void testProcessReceiptStreamWritesResultPerReceipt() throws Exception {
+        ReflectionTestUtils.setField(receiptController, "streamChunkSize", 2);
+        String receiptJson = objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25"));
+        String body = receiptJson + "\n" + receiptJson + "\nnull\n" + receiptJson + "\n";
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(receiptService.processReceipts(anyList())).thenAnswer(invocation -> {
+            List<Receipt> chunk = invocation.getArgument(0);
+            chunkSizes.add(chunk.size());
+            List<BatchResult> results = new ArrayList<>();
+            for (Receipt receipt : chunk) {
+                results.add(receipt == null ? BatchResult.error("The receipt is invalid.") : BatchResult.id(ReceiptId.generate().toString(), 31));
+            }
+            return results;
+        });
+
+        String response = mockMvc.perform(post("/receipts/process:stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(31, objectMapper.readTree(lines[0]).get("points").asInt());
+        assertTrue(objectMapper.readTree(lines[2]).has("error"));
+        assertTrue(objectMapper.readTree(lines[3]).has("id"));
+        assertEquals(Arrays.asList(2, 2), chunkSizes);
+    }
+
+    // Checks a receipt that cannot be bound is answered as invalid and the receipts after it are still read.
+    @Test
+    void testProcessReceiptStreamUnboundReceiptContinues() throws Exception {
+        String receiptJson = objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25"));
+        String unbound = "{\"retailer\":\"Target\",\"items\":[{\"shortDescription\":{\"nested\":[1,{}]},\"price\":\"1.25\"}],\"total\":\"1.25\"}";
+        String body = receiptJson + "\n" + unbound + "\n{\"retailer\":5,\"total\":[]}\n" + receiptJson + "\n";
+        when(receiptService.processReceipts(anyList())).thenAnswer(invocation -> {
+            List<BatchResult> results = new ArrayList<>();
+            for (Receipt receipt : invocation.<List<Receipt>>getArgument(0)) {
+                results.add(receipt == null ? BatchResult.error("The receipt is invalid.") : BatchResult.id(ReceiptId.generate().toString(), 31));
+            }
+            return results;
+        });
+
+        String response = mockMvc.perform(post("/receipts/process:stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(objectMapper.readTree(lines[0]).has("id"));
+        assertTrue(objectMapper.readTree(lines[1]).has("error"));
+        assertTrue(objectMapper.readTree(lines[2]).has("error"));
+        assertTrue(objectMapper.readTree(lines[3]).has("id"));
+    }
+
+    // Checks malformed JSON in a stream ends it with an error line after the receipts read so far.
+    @Test
+    void testProcessReceiptStreamMalformedJsonEndsWithError() throws Exception {
+        String body = objectMapper.writeValueAsString(createReceipt("Target", "2022-01-02", "1.25")) + "\n{not json\n";
+        when(receiptService.processReceipts(anyList())).thenReturn(Arrays.asList(BatchResult.id("id-1", 31)));
+
+        String response = mockMvc.perform(post("/receipts/process:stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("id-1", objectMapper.readTree(lines[0]).get("id").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("error").asText().contains("Malformed JSON"));
+    }
+
+    //Sample valid receipt for testing purpose.
 }
@@ -0,0 +1,39 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Receipts for tests, built with the setters Jackson binds a request body with.
+final class ReceiptFixtures {
+
+    private ReceiptFixtures() {
+    }
+
+    // A receipt with the given fields and items; null items leave the item list unset.
+    static Receipt createReceipt(String retailer, String purchaseDate, String purchaseTime, String total, ReceiptItem... items) {
+        Receipt receipt = new Receipt();
+        receipt.setRetailer(retailer);
+        receipt.setPurchaseDate(purchaseDate);
+        receipt.setPurchaseTime(purchaseTime);
+        receipt.setTotal(total);
+        receipt.setItems(items == null ? null : Arrays.asList(items));
+        return receipt;
+    }
+
+    // A receipt bought at 13:13 with one "Pepsi - 12-oz" priced at the total.
+    static Receipt createReceipt(String retailer, String purchaseDate, String total) {
+        Receipt receipt = createReceipt(retailer, purchaseDate, "13:13", total);
+        receipt.setItems(List.of(createItem("Pepsi - 12-oz", total)));
+        return receipt;
+    }
+
+    static ReceiptItem createItem(String shortDescription, String price) {
+        ReceiptItem item = new ReceiptItem();
+        item.setShortDescription(shortDescription);
+        item.setPrice(price);
+        return item;
+    }
+}
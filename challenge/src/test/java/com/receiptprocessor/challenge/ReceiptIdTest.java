@@ -0,0 +1,63 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.ReceiptId;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptIdTest {
+
+    //Checks generated ids are version 7 UUIDs with the IETF variant and the current time in the first 48 bits.
+    @Test
+    void testGenerateVersion7() {
+        long before = System.currentTimeMillis();
+        ReceiptId receiptId = ReceiptId.generate();
+        long after = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(receiptId.toString());
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = receiptId.getMostSigBits() >>> 16;
+        assertTrue(millis >= before && millis <= after);
+    }
+
+    //Checks ids format like java.util.UUID and parse back to the same bits, in either case.
+    @Test
+    void testFormatAndParseRoundTrip() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            ReceiptId receiptId = new ReceiptId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+            assertEquals(uuid.toString(), receiptId.toString());
+            assertEquals(receiptId, ReceiptId.parse(uuid.toString()));
+            assertEquals(receiptId, ReceiptId.parse(uuid.toString().toUpperCase()));
+            assertEquals(receiptId.hashCode(), ReceiptId.parse(uuid.toString()).hashCode());
+        }
+    }
+
+    //Checks anything that is not a canonical UUID string is rejected instead of throwing.
+    @Test
+    void testParseInvalid() {
+        assertNull(ReceiptId.parse(null));
+        assertNull(ReceiptId.parse(""));
+        assertNull(ReceiptId.parse("invalid-id"));
+        assertNull(ReceiptId.parse("0190f5b2-7c1e-7abc-9def-0123456789a"));
+        assertNull(ReceiptId.parse("0190f5b2-7c1e-7abc-9def-0123456789abc"));
+        assertNull(ReceiptId.parse("0190f5b2x7c1e-7abc-9def-0123456789ab"));
+        assertNull(ReceiptId.parse("0190f5b2-7c1e-7abc-9def-0123456789ag"));
+        assertNull(ReceiptId.parse("+190f5b2-7c1e-7abc-9def-0123456789ab"));
+    }
+
+    //Checks ids generated in a later millisecond sort after earlier ones.
+    @Test
+    void testTimeOrdered() throws Exception {
+        ReceiptId first = ReceiptId.generate();
+        Thread.sleep(2);
+        ReceiptId second = ReceiptId.generate();
+
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(first.toString().compareTo(second.toString()) < 0);
+    }
+}
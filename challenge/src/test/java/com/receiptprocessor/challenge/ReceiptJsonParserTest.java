@@ -0,0 +1,157 @@
+package com.receiptprocessor.challenge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.controller.ReceiptController;
+import com.receiptprocessor.challenge.controller.ReceiptMessageConverter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.model.ReceiptJsonParser;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.service.ReceiptService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ReceiptJsonParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final StringDictionary dictionary = new StringDictionary(1000);
+
+    // Checks the example receipts, and one with whitespace, empty items and fields in another order, bind as Jackson binds them.
+    @Test
+    void testBindsAsJackson() throws Exception {
+        for (String example : List.of("simple-receipt", "morning-receipt")) {
+            assertBindsAsJackson(Files.readAllBytes(Paths.get("examples", example + ".json")));
+        }
+        assertBindsAsJackson(bytes(" {\n\t\"items\" : [ { \"price\" : \"01.5\" , \"shortDescription\" : \"  Dasani  \" }, {} ],\r\n"
+                + " \"total\":\"1.50\", \"purchaseTime\":\"9:05\", \"purchaseDate\":\"2022-1-01\", \"retailer\":\"M&M Corner Market\" } "));
+        assertBindsAsJackson(bytes("{\"retailer\":\"Target\",\"items\":[],\"total\":\"x\"}"));
+        assertBindsAsJackson(bytes("{}"));
+    }
+
+    // Checks interned names, and dates, times and amounts read again are shared, and the digits and cents are read with them.
+    @Test
+    void testReusesValues() {
+        byte[] json = bytes("{\"retailer\":\"Walgreens\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"08:13\","
+                + "\"total\":\"2.65\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}");
+
+        Receipt first = ReceiptJsonParser.parse(json, dictionary);
+        dictionary.intern(first);
+        Receipt second = ReceiptJsonParser.parse(json.clone(), dictionary);
+
+        assertSame(first.getRetailerEntry(), second.getRetailerEntry());
+        assertSame(first.getPurchaseDate(), second.getPurchaseDate());
+        assertSame(first.getPurchaseTime(), second.getPurchaseTime());
+        assertSame(first.getTotal(), second.getTotal());
+        assertSame(first.getItems().get(0).getShortDescriptionEntry(), second.getItems().get(0).getShortDescriptionEntry());
+        assertSame(first.getItems().get(0).getPrice(), second.getItems().get(0).getPrice());
+        assertEquals(20220102, second.getPurchaseDateDigits());
+        assertEquals(813, second.getPurchaseTimeDigits());
+        assertEquals(265, second.getTotalCents());
+        assertEquals(125, second.getItems().get(0).getPriceCents());
+    }
+
+    // Checks anything but a plain receipt is left to Jackson.
+    @Test
+    void testLeavesOtherBodiesToJackson() {
+        List<String> bodies = List.of(
+                "{\"retailer\":\"Tar\\u0067et\"}",
+                "{\"retailer\":\"Café\"}",
+                "{\"retailer\":null}",
+                "{\"total\":6.49}",
+                "{\"items\":[null]}",
+                "{\"items\":{}}",
+                "{\"retailer\":\"Target\",\"note\":\"\"}",
+                "{\"items\":[{\"shortDescription\":\"Pepsi\",\"quantity\":\"1\"}]}",
+                "{\"retailer\":\"Target\",}",
+                "{\"retailer\":\"Target\"",
+                "{\"retailer\":\"Target\"} {}",
+                "[]",
+                "");
+        for (String body : bodies) {
+            assertNull(ReceiptJsonParser.parse(bytes(body), dictionary), body);
+        }
+    }
+
+    // Checks the converter binds the receipt passed to the service, falls back to Jackson, and answers malformed JSON with 400.
+    @Test
+    void testConverterFallsBackToJackson() throws Exception {
+        ReceiptService receiptService = mock(ReceiptService.class);
+        when(receiptService.processReceipt(any(Receipt.class), isNull())).thenReturn(ReceiptId.generate());
+        ReceiptController controller = new ReceiptController(receiptService, objectMapper,
+                new ReceiptMetrics(new SimpleMeterRegistry()), ShardRouter.singleNode());
+        ReflectionTestUtils.setField(controller, "fastValidation", true);
+        ReceiptMessageConverter converter = new ReceiptMessageConverter(objectMapper, dictionary);
+        ReflectionTestUtils.setField(converter, "fastJson", true);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(converter, new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+        String escaped = "{\"retailer\":\"Tar\\u0067et\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\","
+                + "\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}";
+
+        mockMvc.perform(post("/receipts/process").contentType(MediaType.APPLICATION_JSON)
+                        .content(Files.readAllBytes(Paths.get("examples", "simple-receipt.json"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/receipts/process").contentType(MediaType.APPLICATION_JSON).content(escaped))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/receipts/process").contentType(MediaType.APPLICATION_JSON).content("{\"retailer\":"))
+                .andExpect(status().isBadRequest());
+
+        ArgumentCaptor<Receipt> receipts = ArgumentCaptor.forClass(Receipt.class);
+        verify(receiptService, times(2)).processReceipt(receipts.capture(), isNull());
+        assertEquals("Target", receipts.getAllValues().get(0).getRetailer());
+        assertEquals("Target", receipts.getAllValues().get(1).getRetailer());
+        assertEquals(125, receipts.getAllValues().get(1).getTotalCents());
+    }
+
+    private void assertBindsAsJackson(byte[] json) throws Exception {
+        Receipt expected = objectMapper.readValue(json, Receipt.class);
+        dictionary.intern(expected);
+        Receipt actual = ReceiptJsonParser.parse(json, dictionary);
+
+        assertNotNull(actual, new String(json, StandardCharsets.UTF_8));
+        assertSame(expected.getRetailerEntry(), actual.getRetailerEntry());
+        assertEquals(expected.getPurchaseDate(), actual.getPurchaseDate());
+        assertEquals(expected.getPurchaseDateDigits(), actual.getPurchaseDateDigits());
+        assertEquals(expected.getPurchaseTime(), actual.getPurchaseTime());
+        assertEquals(expected.getPurchaseTimeDigits(), actual.getPurchaseTimeDigits());
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getTotalCents(), actual.getTotalCents());
+        if (expected.getItems() == null) {
+            assertNull(actual.getItems());
+            return;
+        }
+        assertEquals(expected.getItems().size(), actual.getItems().size());
+        for (int i = 0; i < expected.getItems().size(); i++) {
+            ReceiptItem expectedItem = expected.getItems().get(i);
+            ReceiptItem actualItem = actual.getItems().get(i);
+            assertSame(expectedItem.getShortDescriptionEntry(), actualItem.getShortDescriptionEntry());
+            assertEquals(expectedItem.getPrice(), actualItem.getPrice());
+            assertEquals(expectedItem.getPriceCents(), actualItem.getPriceCents());
+        }
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
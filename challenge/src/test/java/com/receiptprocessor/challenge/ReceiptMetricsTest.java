@@ -0,0 +1,89 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.DictionaryMetrics;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.metrics.RepositoryMetrics;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.ReceiptService;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private ReceiptRepositoryImpl receiptRepository;
+
+    private ReceiptService receiptService;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        receiptRepository = new ReceiptRepositoryImpl();
+        receiptService = new ReceiptService(receiptRepository, Validation.buildDefaultValidatorFactory().getValidator(),
+                new ReceiptMetrics(registry), PointsEngine.withDefaultRules(), new ReceiptStats(),
+                ShardRouter.singleNode(), new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+        new RepositoryMetrics(receiptRepository).bindTo(registry);
+    }
+
+    // Checks processing and reading a receipt records each stage once and counts the rules that gave it points.
+    @Test
+    void testProcessReceiptRecordsStagesAndRules() {
+        ReceiptId receiptId = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"));
+        receiptService.processReceipts(List.of(createReceipt("Target", "2022-01-02", "1.25"), new Receipt()));
+        receiptService.getPoints(receiptId);
+
+        assertEquals(2, registry.get("receipts.score").timer().count());
+        assertEquals(2, registry.get("receipts.validate").timer().count());
+        assertEquals(1, registry.get("receipts.repository").tag("operation", "save").timer().count());
+        assertEquals(1, registry.get("receipts.repository").tag("operation", "save-batch").timer().count());
+        assertEquals(1, registry.get("receipts.repository").tag("operation", "find").timer().count());
+        // Target: retailer name, 0.25 multiple and item description; not a round total, an odd day or 2-4 PM
+        assertEquals(2, registry.get("receipts.points.rule").tag("rule", "1").counter().count());
+        assertEquals(2, registry.get("receipts.points.rule").tag("rule", "3").counter().count());
+        assertEquals(0, registry.get("receipts.points.rule").tag("rule", "2").counter().count());
+        assertEquals(0, registry.get("receipts.points.rule").tag("rule", "7").counter().count());
+    }
+
+    // Checks the repository gauges follow the stored receipts.
+    @Test
+    void testRepositoryGauges() {
+        assertEquals(0, registry.get("receipts.repository.size").gauge().value());
+        double empty = registry.get("receipts.repository.memory").gauge().value();
+
+        receiptService.processReceipts(List.of(createReceipt("Target", "2022-01-02", "1.25"),
+                createReceipt("Walgreens", "2022-01-02", "1.25")));
+
+        assertEquals(2, registry.get("receipts.repository.size").gauge().value());
+        assertTrue(empty > 0);
+        assertTrue(registry.get("receipts.repository.memory").gauge().value() >= empty);
+    }
+
+    // Checks the dictionary metrics count the names shared and those turned away once it is full.
+    @Test
+    void testDictionaryMetrics() {
+        StringDictionary dictionary = new StringDictionary(1);
+        new DictionaryMetrics(dictionary).bindTo(registry);
+
+        dictionary.intern("Target");
+        dictionary.intern("Walgreens");
+        dictionary.lookup("Costco");
+
+        assertEquals(1, registry.get("receipts.dictionary.size").gauge().value());
+        assertEquals(1, registry.get("receipts.dictionary.max").gauge().value());
+        assertEquals(1, registry.get("receipts.dictionary.rejected").functionCounter().count());
+    }
+}
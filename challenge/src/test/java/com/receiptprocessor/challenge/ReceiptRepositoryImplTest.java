@@ -1,11 +1,22 @@
 package com.receiptprocessor.challenge;
 
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
 import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.UUID;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,7 +33,7 @@ class ReceiptRepositoryImplTest {
     @Test
     void testSaveAndFindReceiptPositive() {
         Receipt receipt = new Receipt();
-        String receiptId = UUID.randomUUID().toString();
+        ReceiptId receiptId = ReceiptId.generate();
 
         receiptRepository.saveReceipt(receiptId, receipt);
         Receipt retrieved = receiptRepository.findReceiptById(receiptId);
@@ -34,7 +45,203 @@ class ReceiptRepositoryImplTest {
     //Checks for a receipt id which does not exist, it should return null.
     @Test
     void testFindReceiptById_InvalidId_ShouldReturnNull() {
-        Receipt receipt = receiptRepository.findReceiptById("non-existent-id");
+        Receipt receipt = receiptRepository.findReceiptById(ReceiptId.generate());
         assertNull(receipt);
     }
+
+    //Checks if the points are saved correctly and then retried from the map.
+    @Test
+    void testSaveAndFindPointsPositive() {
+        ReceiptId receiptId = ReceiptId.generate();
+
+        receiptRepository.savePoints(receiptId, 31);
+
+        assertEquals(OptionalInt.of(31), receiptRepository.findPointsById(receiptId));
+    }
+
+    //Checks for a receipt id which does not exist, points should be empty.
+    @Test
+    void testFindPointsById_InvalidId_ShouldReturnEmpty() {
+        assertFalse(receiptRepository.findPointsById(ReceiptId.generate()).isPresent());
+    }
+
+    //Checks a batch of points and receipts is saved with one call each and can be read back by id.
+    @Test
+    void testSaveAllPointsAndReceiptsPositive() {
+        ReceiptId firstId = ReceiptId.generate();
+        ReceiptId secondId = ReceiptId.generate();
+        Receipt receipt = new Receipt();
+
+        receiptRepository.saveAllPoints(Map.of(firstId, 31, secondId, 15));
+        receiptRepository.saveAllReceipts(Map.of(firstId, receipt));
+
+        assertEquals(OptionalInt.of(31), receiptRepository.findPointsById(firstId));
+        assertEquals(OptionalInt.of(15), receiptRepository.findPointsById(secondId));
+        assertEquals(receipt, receiptRepository.findReceiptById(firstId));
+        assertNull(receiptRepository.findReceiptById(secondId));
+    }
+
+    //Checks for a null receipt id, nothing is found instead of failing.
+    @Test
+    void testFindById_NullId_ShouldReturnEmpty() {
+        assertNull(receiptRepository.findReceiptById(null));
+        assertFalse(receiptRepository.findPointsById(null).isPresent());
+    }
+
+    //Checks points stay readable while the index grows, including the nil id and negative points.
+    @Test
+    void testManyPointsAndNilId() {
+        List<ReceiptId> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            receiptRepository.savePoints(receiptId, i - 50_000);
+            ids.add(receiptId);
+        }
+        ReceiptId nil = new ReceiptId(0, 0);
+        receiptRepository.savePoints(nil, 7);
+        receiptRepository.savePoints(ids.get(0), 42);
+
+        assertEquals(100_001, receiptRepository.size());
+        assertEquals(OptionalInt.of(42), receiptRepository.findPointsById(ids.get(0)));
+        for (int i = 1; i < ids.size(); i++) {
+            assertEquals(OptionalInt.of(i - 50_000), receiptRepository.findPointsById(ids.get(i)));
+        }
+        assertEquals(OptionalInt.of(7), receiptRepository.findPointsById(nil));
+        assertEquals(OptionalInt.of(7), receiptRepository.findPointsById(ReceiptId.parse("00000000-0000-0000-0000-000000000000")));
+    }
+
+    //Checks points are not returned once their time-to-live has passed, and the sweep removes them and their receipts.
+    @Test
+    void testTtlExpiresPointsAndReceipts() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        ReceiptRepositoryImpl expiring = new ReceiptRepositoryImpl(0, Duration.ofHours(1), clock::get);
+        ReceiptId old = ReceiptId.generate();
+        expiring.savePoints(old, 10);
+        expiring.saveReceipt(old, new Receipt());
+        clock.addAndGet(Duration.ofMinutes(30).toMillis());
+        ReceiptId recent = ReceiptId.generate();
+        expiring.savePoints(recent, 20);
+
+        clock.addAndGet(Duration.ofMinutes(30).toMillis());
+
+        assertFalse(expiring.findPointsById(old).isPresent());
+        assertEquals(OptionalInt.of(20), expiring.findPointsById(recent));
+        assertEquals(2, expiring.size());
+        assertEquals(1, expiring.expire());
+        assertEquals(1, expiring.size());
+        assertEquals(1, expiring.expiredCount());
+        assertNull(expiring.findReceiptById(old));
+        assertEquals(OptionalInt.of(20), expiring.findPointsById(recent));
+    }
+
+    //Checks replacePoints keeps the write time and never brings back an expired or unknown receipt.
+    @Test
+    void testReplacePointsKeepsTtl() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        ReceiptRepositoryImpl expiring = new ReceiptRepositoryImpl(0, Duration.ofHours(1), clock::get);
+        ReceiptId receiptId = ReceiptId.generate();
+        ReceiptId unknown = ReceiptId.generate();
+        expiring.savePoints(receiptId, 10);
+        clock.addAndGet(Duration.ofMinutes(30).toMillis());
+
+        assertFalse(expiring.replacePoints(receiptId, 11, 20));
+        assertTrue(expiring.replacePoints(receiptId, 10, 20));
+        assertFalse(expiring.replacePoints(unknown, 0, 20));
+        assertEquals(OptionalInt.of(20), expiring.findPointsById(receiptId));
+        assertFalse(expiring.findPointsById(unknown).isPresent());
+
+        clock.addAndGet(Duration.ofMinutes(30).toMillis());
+
+        assertFalse(expiring.findPointsById(receiptId).isPresent());
+        assertFalse(expiring.replacePoints(receiptId, 20, 30));
+        assertFalse(expiring.findPointsById(receiptId).isPresent());
+    }
+
+    //Checks the maximum number of entries holds, and every entry still counted can be found after many evictions.
+    @Test
+    void testMaxEntriesEvictsAndKeepsIndexConsistent() {
+        ReceiptRepositoryImpl bounded = new ReceiptRepositoryImpl(6_400, Duration.ZERO, System::currentTimeMillis);
+        List<ReceiptId> ids = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            bounded.savePoints(receiptId, i);
+            ids.add(receiptId);
+        }
+
+        int found = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            OptionalInt points = bounded.findPointsById(ids.get(i));
+            if (points.isPresent()) {
+                assertEquals(i, points.getAsInt());
+                found++;
+            }
+        }
+        assertTrue(bounded.size() <= 6_400, "Kept " + bounded.size());
+        assertEquals(bounded.size(), found);
+        assertEquals(50_000 - bounded.size(), bounded.evictedCount());
+        assertEquals(OptionalInt.of(49_999), bounded.findPointsById(ids.get(49_999)));
+    }
+
+    //Checks receipts that keep being read survive eviction while new receipts stream in.
+    @Test
+    void testMaxEntriesKeepsRecentlyReadReceipts() {
+        ReceiptRepositoryImpl bounded = new ReceiptRepositoryImpl(1_024, Duration.ZERO, System::currentTimeMillis);
+        List<ReceiptId> hot = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            bounded.savePoints(receiptId, i);
+            hot.add(receiptId);
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            bounded.savePoints(ReceiptId.generate(), -1);
+            for (ReceiptId receiptId : hot) {
+                bounded.findPointsById(receiptId);
+            }
+        }
+
+        for (int i = 0; i < hot.size(); i++) {
+            assertEquals(OptionalInt.of(i), bounded.findPointsById(hot.get(i)));
+        }
+        assertTrue(bounded.evictedCount() > 0);
+    }
+
+    //Checks no writes are lost when many threads save receipts at the same time.
+    @Test
+    void testConcurrentSaveNoLostWrites() throws Exception {
+        int threads = 64;
+        int receiptsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<ReceiptId>>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<ReceiptId> ids = new ArrayList<>(receiptsPerThread);
+                    start.await();
+                    for (int i = 0; i < receiptsPerThread; i++) {
+                        ReceiptId receiptId = ReceiptId.generate();
+                        receiptRepository.savePoints(receiptId, thread * receiptsPerThread + i);
+                        receiptRepository.saveReceipt(receiptId, new Receipt());
+                        ids.add(receiptId);
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            for (int t = 0; t < threads; t++) {
+                List<ReceiptId> ids = futures.get(t).get(60, TimeUnit.SECONDS);
+                assertEquals(receiptsPerThread, ids.size());
+                for (int i = 0; i < receiptsPerThread; i++) {
+                    assertEquals(OptionalInt.of(t * receiptsPerThread + i), receiptRepository.findPointsById(ids.get(i)));
+                    assertNotNull(receiptRepository.findReceiptById(ids.get(i)));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
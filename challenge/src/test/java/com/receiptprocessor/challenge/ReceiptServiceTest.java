@@ -1,23 +1,45 @@
 package com.receiptprocessor.challenge;
 
 
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.BatchResult;
 import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
 import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.model.StringDictionary;
 import com.receiptprocessor.challenge.repository.ReceiptRepository;
+import com.receiptprocessor.challenge.rules.PointsEngine;
 import com.receiptprocessor.challenge.service.ReceiptService;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
-
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 class ReceiptServiceTest {
@@ -25,6 +47,24 @@ class ReceiptServiceTest {
     @Mock
     private ReceiptRepository receiptRepository;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private ReceiptMetrics metrics = new ReceiptMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private PointsEngine pointsEngine = PointsEngine.withDefaultRules();
+
+    @Spy
+    private ReceiptStats stats = new ReceiptStats();
+
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.singleNode();
+
+    @Spy
+    private StringDictionary dictionary = new StringDictionary(1000);
+
     @InjectMocks
     private ReceiptService receiptService;
 
@@ -68,40 +108,78 @@ class ReceiptServiceTest {
         assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode()); // Ensure correct status
     }
 
-    //Checks if for a valid Receipt, id is generated and stored in map.
+    //Checks the names of a receipt join the dictionary only once it is valid.
+    @Test
+    void testProcessReceiptInternsOnlyValidNames() {
+        Receipt invalid = createReceipt("Target", "2022-01-02", "1.25");
+        invalid.setTotal("-1.00");
+        assertThrows(ResponseStatusException.class, () -> receiptService.processReceipt(invalid));
+        assertEquals(0, dictionary.size());
+
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        receiptService.processReceipt(receipt);
+
+        assertSame(dictionary.lookup(receipt.getRetailer()), receipt.getRetailerEntry());
+        assertNotEquals(StringDictionary.NO_ID, receipt.getRetailerEntry().getId());
+        assertEquals(1 + receipt.getItems().size(), dictionary.size());
+    }
+
+    //Checks if for a valid Receipt, id is generated and only its points are stored in map.
     @Test
     void testProcessReceiptValidReceiptReturnReceiptId() {
-        Receipt receipt = createSampleReceipt();
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
 
         // Process the receipt
-        String receiptId = receiptService.processReceipt(receipt);
+        ReceiptId receiptId = receiptService.processReceipt(receipt);
 
         // Verify receipt ID is generated and is in UUID format
         assertNotNull(receiptId);
-        assertTrue(receiptId.matches("^[0-9a-fA-F-]{36}$"), "Receipt ID should be a valid UUID");
+        assertTrue(receiptId.toString().matches("^[0-9a-fA-F-]{36}$"), "Receipt ID should be a valid UUID");
 
-        // Verify repository interaction (ensuring saveReceipt is called once)
+        // Verify repository interaction (points saved once, full receipt not kept by default)
+        verify(receiptRepository, times(1)).savePoints(eq(receiptId), anyInt());
+        verify(receiptRepository, never()).saveReceipt(any(ReceiptId.class), any(Receipt.class));
+    }
+
+    //Checks the full Receipt is stored next to its points when receipt.store-full-receipt is set.
+    @Test
+    void testProcessReceiptStoreFullReceipt() {
+        ReflectionTestUtils.setField(receiptService, "storeFullReceipt", true);
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+
+        ReceiptId receiptId = receiptService.processReceipt(receipt);
+
+        verify(receiptRepository, times(1)).savePoints(eq(receiptId), eq(31));
         verify(receiptRepository, times(1)).saveReceipt(eq(receiptId), eq(receipt));
     }
 
-    //Checks for a given correct receipt, points are calculated correctly.
+    //Checks for a given correct receipt, points are calculated correctly at ingest.
+    @Test
+    void testProcessReceiptCalculatePoints() {
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+
+        ReceiptId receiptId = receiptService.processReceipt(receipt);
+
+        verify(receiptRepository, times(1)).savePoints(eq(receiptId), eq(31));
+    }
+
+    //Checks points stored at ingest are returned for a receipt id without recalculation.
     @Test
-    void testGetPointsValidReceiptCalculatePoints() {
-        Receipt receipt = createSampleReceipt();
-        String receiptId = UUID.randomUUID().toString();
+    void testGetPointsValidReceiptReturnStoredPoints() {
+        ReceiptId receiptId = ReceiptId.generate();
 
-        when(receiptRepository.findReceiptById(receiptId)).thenReturn(receipt);
+        when(receiptRepository.findPointsById(receiptId)).thenReturn(OptionalInt.of(31));
         int points = receiptService.getPoints(receiptId);
 
-        assertTrue(points > 0);
         assertEquals(31,points);
+        verify(receiptRepository, never()).findReceiptById(any(ReceiptId.class));
     }
 
     // Checks for a invalid receipt id, not stored in map, exception is thrown.
     @Test
     void testGetPointsInvalidReceiptIdNegative() {
-        String invalidReceiptId = "non-existent-id";
-        when(receiptRepository.findReceiptById(invalidReceiptId)).thenReturn(null);
+        ReceiptId invalidReceiptId = ReceiptId.generate();
+        when(receiptRepository.findPointsById(invalidReceiptId)).thenReturn(OptionalInt.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> receiptService.getPoints(invalidReceiptId));
 
@@ -112,7 +190,7 @@ class ReceiptServiceTest {
     // Checks for a invalid receipt id - null, exception is thrown.
     @Test
     void testGetPointsNullReceiptIdNegative() {
-        String invalidReceiptId = null;
+        ReceiptId invalidReceiptId = null;
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> receiptService.getPoints(invalidReceiptId));
 
@@ -120,21 +198,142 @@ class ReceiptServiceTest {
         assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode()); // Ensure correct status
     }
 
-    //Sample valid receipt for testing purpose.
-    private Receipt createSampleReceipt() {
-        Receipt receipt = new Receipt();
-        receipt.setRetailer("Target");
-        receipt.setPurchaseDate("2022-01-02");
-        receipt.setPurchaseTime("13:13");
-        receipt.setTotal("1.25");
+    //Checks a batch returns ids and errors in order and saves all valid receipts with one bulk save.
+    @Test
+    void testProcessReceiptsMixedBatch() {
+        Receipt invalidDate = createReceipt("Target", "2022-01-02", "1.25");
+        invalidDate.setPurchaseDate("01/02/2022");
+        List<Receipt> receipts = Arrays.asList(createReceipt("Target", "2022-01-02", "1.25"), null, invalidDate,
+                createReceipt("Target", "2022-01-02", "1.25"));
+
+        List<BatchResult> results = receiptService.processReceipts(receipts);
+
+        assertEquals(4, results.size());
+        assertNotNull(results.get(0).getId());
+        assertNotNull(results.get(1).getError());
+        assertTrue(results.get(2).getError().contains("purchaseDate"));
+        assertNotNull(results.get(3).getId());
+        assertNotEquals(results.get(0).getId(), results.get(3).getId());
+
+        verify(receiptRepository, times(1)).saveAllPoints(argThat((Map<ReceiptId, Integer> points) -> points.size() == 2
+                && points.get(ReceiptId.parse(results.get(0).getId())) == 31 && points.get(ReceiptId.parse(results.get(3).getId())) == 31));
+        verify(receiptRepository, never()).saveAllReceipts(anyMap());
+        verify(receiptRepository, never()).savePoints(any(ReceiptId.class), anyInt());
+    }
 
-        ReceiptItem item1 = new ReceiptItem();
-        item1.setShortDescription("Pepsi - 12-oz");
-        item1.setPrice("1.25");
+    //Checks a receipt submitted again with the same content gets the first id and is not stored twice.
+    @Test
+    void testProcessReceiptDuplicateContentReturnsFirstId() {
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        when(receiptRepository.findPointsById(any(ReceiptId.class))).thenReturn(OptionalInt.of(31));
+
+        ReceiptId first = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"));
+        ReceiptId retry = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"));
+        Receipt different = createReceipt("Target", "2022-01-02", "1.25");
+        different.setPurchaseTime("13:14");
+        ReceiptId other = receiptService.processReceipt(different);
+
+        assertEquals(first, retry);
+        assertNotEquals(first, other);
+        verify(receiptRepository, times(2)).savePoints(any(ReceiptId.class), anyInt());
+    }
 
-        receipt.setItems(List.of(item1));
+    //Checks duplicates inside a batch, and of receipts already stored, get the first id and are saved once.
+    @Test
+    void testProcessReceiptsDeduplicatesBatch() {
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        when(receiptRepository.findPointsById(any(ReceiptId.class))).thenReturn(OptionalInt.of(31));
+        ReceiptId stored = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"));
+        Receipt other = createReceipt("Target", "2022-01-02", "1.25");
+        other.setRetailer("Walgreens");
+
+        List<BatchResult> results = receiptService.processReceipts(
+                Arrays.asList(createReceipt("Target", "2022-01-02", "1.25"), other, other));
+
+        assertEquals(stored.toString(), results.get(0).getId());
+        assertEquals(results.get(1).getId(), results.get(2).getId());
+        assertEquals(34, results.get(2).getPoints());
+        verify(receiptRepository, times(1)).saveAllPoints(argThat((Map<ReceiptId, Integer> points) -> points.size() == 1
+                && points.containsKey(ReceiptId.parse(results.get(1).getId()))));
+    }
+
+    //Checks a retry with the same Idempotency-Key gets the first id, and reusing the key for another receipt is rejected.
+    @Test
+    void testProcessReceiptIdempotencyKey() {
+        when(receiptRepository.findPointsById(any(ReceiptId.class))).thenReturn(OptionalInt.of(31));
+        ReceiptId first = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"), "retry-1");
+        ReceiptId retry = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"), "retry-1");
+        ReceiptId withoutKey = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"));
+        Receipt different = createReceipt("Target", "2022-01-02", "1.25");
+        different.setTotal("2.25");
+
+        assertEquals(first, retry);
+        assertNotEquals(first, withoutKey);
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> receiptService.processReceipt(different, "retry-1"));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatusCode());
+        assertThrows(ResponseStatusException.class,
+                () -> receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"), ""));
+    }
+
+    //Checks concurrent duplicates are stored and counted once and all get its id, and a conflicting key stores nothing.
+    @Test
+    void testProcessReceiptConcurrentDuplicatesStoredOnce() throws Exception {
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        when(receiptRepository.findPointsById(any(ReceiptId.class))).thenReturn(OptionalInt.of(31));
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(receiptRepository).savePoints(any(ReceiptId.class), anyInt());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ReceiptId>> ids = new ArrayList<>();
+            ids.add(executor.submit(() -> receiptService.processReceipt(
+                    createReceipt("Target", "2022-01-02", "1.25"), "retry-1")));
+            assertTrue(saving.await(10, TimeUnit.SECONDS));
+            for (String key : Arrays.asList("retry-1", null, "retry-1")) {
+                ids.add(executor.submit(() -> receiptService.processReceipt(
+                        createReceipt("Target", "2022-01-02", "1.25"), key)));
+            }
+            Receipt different = createReceipt("Target", "2022-01-02", "1.25");
+            different.setTotal("2.25");
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                    () -> receiptService.processReceipt(different, "retry-1"));
+            assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatusCode());
+            release.countDown();
+
+            for (Future<ReceiptId> id : ids) {
+                assertEquals(ids.get(0).get(10, TimeUnit.SECONDS), id.get(10, TimeUnit.SECONDS));
+            }
+            verify(receiptRepository, times(1)).savePoints(any(ReceiptId.class), anyInt());
+            verify(stats, times(1)).record(any(Receipt.class), anyInt());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
 
-        return receipt;
+    //Checks a retry of a receipt the repository has since dropped is stored again under a new id, and pruning forgets it.
+    @Test
+    void testProcessReceiptDuplicateOfDroppedReceiptGetsNewId() {
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        ReceiptId first = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"), "retry-1");
+        when(receiptRepository.findPointsById(first)).thenReturn(OptionalInt.empty());
+        when(receiptRepository.expiredCount()).thenReturn(1L);
+
+        ReceiptId retry = receiptService.processReceipt(createReceipt("Target", "2022-01-02", "1.25"), "retry-1");
+        when(receiptRepository.findPointsById(retry)).thenReturn(OptionalInt.empty());
+        when(receiptRepository.expiredCount()).thenReturn(2L);
+
+        assertNotEquals(first, retry);
+        verify(receiptRepository, times(2)).savePoints(any(ReceiptId.class), anyInt());
+        assertEquals(2, receiptService.pruneDropped());
+        assertEquals(0, receiptService.pruneDropped());
     }
+
+    //Sample valid receipt for testing purpose.
 }
 
@@ -0,0 +1,175 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.metrics.ReceiptMetrics;
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptTotals;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.ReceiptService;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptStatsTest {
+
+    private ReceiptStats stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new ReceiptStats();
+        ReflectionTestUtils.setField(stats, "topRefresh", Duration.ZERO);
+    }
+
+    // Checks each receipt is counted overall, for its retailer and for its purchase date.
+    @Test
+    void testRecordCountsRetailerAndDay() {
+        stats.record(createReceipt("Target", "2022-01-01", "35.35"), 28);
+        stats.record(createReceipt("Target", "2022-01-02", "1.25"), 31);
+        stats.record(createReceipt("M&M Corner Market", "2022-01-02", "9.00"), 109);
+
+        ReceiptTotals overall = stats.overall();
+        assertEquals(3, overall.getReceipts());
+        assertEquals(168, overall.getPoints());
+        assertEquals("45.60", overall.getTotal());
+        ReceiptTotals target = stats.retailer("Target");
+        assertEquals("Target", target.getRetailer());
+        assertEquals(2, target.getReceipts());
+        assertEquals(59, target.getPoints());
+        assertEquals("36.60", target.getTotal());
+        ReceiptTotals day = stats.day("2022-01-02");
+        assertEquals(2, day.getReceipts());
+        assertEquals(140, day.getPoints());
+        assertNull(stats.retailer("Walgreens"));
+        assertNull(stats.day("2022-01-03"));
+    }
+
+    // Checks a date range returns only the dates in it, in order.
+    @Test
+    void testDaysRange() {
+        for (String date : List.of("2022-03-01", "2022-01-15", "2022-02-01", "2021-12-31")) {
+            stats.record(createReceipt("Target", date, "1.00"), 10);
+        }
+
+        List<ReceiptTotals> days = stats.days("2022-01-01", "2022-02-01");
+
+        assertEquals(List.of("2022-01-15", "2022-02-01"), days.stream().map(ReceiptTotals::getDate).toList());
+        assertEquals(4, stats.days(null, null).size());
+        assertEquals(List.of("2021-12-31"), stats.days(null, "2021-12-31").stream().map(ReceiptTotals::getDate).toList());
+    }
+
+    // Checks retailers are ranked by points or by receipts, best first and at most limit of them.
+    @Test
+    void testTopRetailers() {
+        stats.record(createReceipt("Target", "2022-01-01", "1.00"), 10);
+        stats.record(createReceipt("Target", "2022-01-01", "1.00"), 10);
+        stats.record(createReceipt("Target", "2022-01-01", "1.00"), 10);
+        stats.record(createReceipt("Walgreens", "2022-01-01", "1.00"), 100);
+        stats.record(createReceipt("Costco", "2022-01-01", "1.00"), 5);
+
+        assertEquals(List.of("Walgreens", "Target"),
+                stats.topRetailers(2, false).stream().map(ReceiptTotals::getRetailer).toList());
+        assertEquals(List.of("Target", "Costco", "Walgreens"),
+                stats.topRetailers(10, true).stream().map(ReceiptTotals::getRetailer).toList());
+    }
+
+    // Checks the ranking is reused until it is older than top-refresh.
+    @Test
+    void testTopRetailersRefresh() {
+        ReflectionTestUtils.setField(stats, "topRefresh", Duration.ofHours(1));
+        stats.record(createReceipt("Target", "2022-01-01", "1.00"), 10);
+        assertEquals(1, stats.topRetailers(10, false).size());
+
+        stats.record(createReceipt("Walgreens", "2022-01-01", "1.00"), 100);
+        assertEquals(1, stats.topRetailers(10, false).size());
+
+        ReflectionTestUtils.setField(stats, "topRefresh", Duration.ZERO);
+        assertEquals("Walgreens", stats.topRetailers(10, false).get(0).getRetailer());
+    }
+
+    // Checks rescored points move the totals without counting the receipt again.
+    @Test
+    void testAdjustPoints() {
+        Receipt receipt = createReceipt("Target", "2022-01-01", "1.00");
+        stats.record(receipt, 10);
+
+        stats.adjustPoints(receipt, -4);
+
+        assertEquals(1, stats.retailer("Target").getReceipts());
+        assertEquals(6, stats.retailer("Target").getPoints());
+        assertEquals(6, stats.day("2022-01-01").getPoints());
+        assertEquals(6, stats.overall().getPoints());
+    }
+
+    // Checks retailers past max-retailers are counted under (other), so the totals stay complete.
+    @Test
+    void testRetailersPastLimitCountedAsOther() {
+        ReflectionTestUtils.setField(stats, "maxRetailers", 2);
+        stats.record(createReceipt("Target", "2022-01-01", "1.00"), 1);
+        stats.record(createReceipt("Walgreens", "2022-01-01", "1.00"), 2);
+        stats.record(createReceipt("Costco", "2022-01-01", "1.00"), 4);
+        stats.record(createReceipt("Aldi", "2022-01-01", "1.00"), 8);
+
+        assertNull(stats.retailer("Costco"));
+        assertEquals(2, stats.retailer(ReceiptStats.OTHER).getReceipts());
+        assertEquals(12, stats.retailer(ReceiptStats.OTHER).getPoints());
+        assertEquals(4, stats.overall().getReceipts());
+    }
+
+    // Checks concurrent ingest loses no counts.
+    @Test
+    void testConcurrentRecord() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            String retailer = "Retailer " + (thread % 2);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    stats.record(createReceipt(retailer, "2022-01-0" + (1 + i % 5), "0.01"), 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(80_000, stats.overall().getReceipts());
+        assertEquals("800.00", stats.overall().getTotal());
+        assertEquals(40_000, stats.retailer("Retailer 0").getPoints());
+        assertEquals(16_000, stats.day("2022-01-03").getReceipts());
+    }
+
+    // Checks ReceiptService counts a stored receipt once, not its retries, and invalid receipts not at all.
+    @Test
+    void testReceiptServiceRecordsStoredReceipts() {
+        ReceiptService receiptService = new ReceiptService(new ReceiptRepositoryImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ReceiptMetrics(new SimpleMeterRegistry()),
+                PointsEngine.withDefaultRules(), stats, ShardRouter.singleNode(), new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+        ReflectionTestUtils.setField(receiptService, "deduplicate", true);
+        Receipt receipt = createReceipt("Target", "2022-01-01", "1.25");
+
+        receiptService.processReceipt(receipt);
+        receiptService.processReceipt(receipt);
+        receiptService.processReceipts(List.of(receipt, createReceipt("Walgreens", "2022-01-01", "2.00"), new Receipt()));
+
+        assertEquals(2, stats.overall().getReceipts());
+        assertEquals(1, stats.retailer("Target").getReceipts());
+        assertEquals(1, stats.retailer("Walgreens").getReceipts());
+        assertEquals("3.25", stats.day("2022-01-01").getTotal());
+    }
+}
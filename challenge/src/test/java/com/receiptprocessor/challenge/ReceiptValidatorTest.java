@@ -0,0 +1,109 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.service.ReceiptValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.validation.BeanPropertyBindingResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptValidatorTest {
+
+    private static final String[] VALUES = {
+            null, "", " ", "Target", "M&M Corner Market", "Pepsi - 12-oz", "snake_case", "tab\there", "line\nbreak",
+            "Dr. Pepper", "Café", "a&b", "x y", "2022-01-01", "2022-1-01", "2022-01-011", "2022/01/01", "２０２２-01-01",
+            "13:01", "1:01", "13:1", "13-01", "13:01\n", "1.25", "35.35", "0.00", ".25", "1.2", "1.255", "-1.00", "1,25",
+            "1.25\n", "10", "12345678901234567890.00", "١.25"
+    };
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    //Checks the sample receipts are valid.
+    @Test
+    void testValidReceipt() {
+        assertNull(ReceiptValidator.firstViolation(createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("   Klarbrunn 12-PK 12 FL OZ  ", "12.00"))));
+    }
+
+    //Checks each field is rejected with the property path and message Bean Validation uses.
+    @Test
+    void testViolationPathAndMessage() {
+        assertEquals("retailer must not be null", ReceiptValidator.firstViolation(
+                createReceipt(null, "2022-03-20", "14:33", "9.00", createItem("Gatorade", "2.25"))));
+        assertEquals("purchaseDate must match \"^\\d{4}-\\d{2}-\\d{2}$\"", ReceiptValidator.firstViolation(
+                createReceipt("Target", "01/02/2022", "14:33", "9.00", createItem("Gatorade", "2.25"))));
+        assertEquals("items must not be null", ReceiptValidator.firstViolation(
+                createReceipt("Target", "2022-03-20", "14:33", "9.00", (ReceiptItem[]) null)));
+        // Items are not cascaded into, as Receipt.items is not @Valid
+        assertNull(ReceiptValidator.firstViolation(
+                createReceipt("Target", "2022-03-20", "14:33", "9.00", createItem("Dr. Pepper", "2.25"), createItem("Gatorade", "2.5"))));
+
+        // Every violation is registered for @Valid, as Bean Validation does
+        Receipt receipt = createReceipt("Dr. Pepper", "2022-03-20", "2 PM", "9.00", createItem("Gatorade", "2.25"));
+        assertEquals(2, fastViolations(receipt).size());
+        assertEquals(violations(receipt), fastViolations(receipt));
+    }
+
+    //Checks the validator accepts and rejects exactly what Bean Validation does, with the same violations, for random receipts.
+    @Test
+    void testSameDecisionsAsBeanValidation() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            int itemCount = random.nextInt(4);
+            ReceiptItem[] items = new ReceiptItem[itemCount];
+            for (int j = 0; j < itemCount; j++) {
+                items[j] = random.nextInt(20) == 0 ? null : createItem(value(random), value(random));
+            }
+            Receipt receipt = createReceipt(value(random), value(random), value(random), value(random),
+                    random.nextInt(20) == 0 ? null : items);
+
+            Set<String> expected = violations(receipt);
+            assertEquals(expected, fastViolations(receipt), () -> "Receipt " + describe(receipt));
+            assertEquals(expected.isEmpty(), ReceiptValidator.firstViolation(receipt) == null);
+        }
+    }
+
+    // Picks a valid value for some field or one that trips a pattern.
+    private String value(Random random) {
+        return VALUES[random.nextInt(VALUES.length)];
+    }
+
+    private Set<String> violations(Receipt receipt) {
+        Set<String> violations = new TreeSet<>();
+        for (ConstraintViolation<Receipt> violation : validator.validate(receipt)) {
+            violations.add(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        return violations;
+    }
+
+    private Set<String> fastViolations(Receipt receipt) {
+        BeanPropertyBindingResult errors = new BeanPropertyBindingResult(receipt, "receipt");
+        ReceiptValidator.INSTANCE.validate(receipt, errors);
+        return errors.getFieldErrors().stream()
+                .map(error -> error.getField() + " " + error.getDefaultMessage())
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private String describe(Receipt receipt) {
+        List<String> items = new ArrayList<>();
+        if (receipt.getItems() != null) {
+            for (ReceiptItem item : receipt.getItems()) {
+                items.add(item == null ? "null" : "[" + item.getShortDescription() + ", " + item.getPrice() + "]");
+            }
+        }
+        return Arrays.asList(receipt.getRetailer(), receipt.getPurchaseDate(), receipt.getPurchaseTime(), receipt.getTotal()) + " " + items;
+    }
+}
@@ -0,0 +1,60 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.controller.AdminAccess;
+import com.receiptprocessor.challenge.controller.RescoreController;
+import com.receiptprocessor.challenge.model.RescoreProgress;
+import com.receiptprocessor.challenge.service.RescoreService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class RescoreControllerTest {
+
+    @Mock
+    private RescoreService rescoreService;
+
+    private final AdminAccess adminAccess = new AdminAccess();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(adminAccess, "token", "secret");
+        mockMvc = MockMvcBuilders.standaloneSetup(new RescoreController(rescoreService, adminAccess)).build();
+    }
+
+    // Checks a rescoring job is started with the admin token.
+    @Test
+    void testStartRescoringWithToken() throws Exception {
+        when(rescoreService.start()).thenReturn(new RescoreProgress(RescoreProgress.State.RUNNING, "default", 10, 0, 0, 0, 0, null));
+
+        mockMvc.perform(post("/admin/rescore").header(HttpHeaders.AUTHORIZATION, "Bearer secret"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+
+        verify(rescoreService).start();
+    }
+
+    // Checks no job is started and no progress is read without the right token.
+    @Test
+    void testStartRescoringWithoutTokenNegative() throws Exception {
+        mockMvc.perform(post("/admin/rescore"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/admin/rescore").header(HttpHeaders.AUTHORIZATION, "Bearer other"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/admin/rescore"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(rescoreService);
+    }
+}
@@ -0,0 +1,164 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.RescoreProgress;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+import com.receiptprocessor.challenge.service.ReceiptStats;
+import com.receiptprocessor.challenge.service.RescoreService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RescoreServiceTest {
+
+    private ReceiptRepositoryImpl receiptRepository;
+
+    private PointsEngine pointsEngine;
+
+    private RescoreService rescoreService;
+
+    @BeforeEach
+    void setUp() {
+        receiptRepository = new ReceiptRepositoryImpl();
+        pointsEngine = PointsEngine.withDefaultRules();
+        rescoreService = new RescoreService(receiptRepository, pointsEngine, new ReceiptStats(), 4);
+        ReflectionTestUtils.setField(rescoreService, "storeFullReceipt", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rescoreService.close();
+    }
+
+    // Checks every stored receipt gets the points of the new rules, across many partitions, and points-only receipts are skipped.
+    @Test
+    void testRescoreAppliesNewRules() throws Exception {
+        List<ReceiptId> full = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Receipt receipt = createReceipt("Retailer " + i, "2022-01-02", "1.25");
+            ReceiptId receiptId = ReceiptId.generate();
+            receiptRepository.savePoints(receiptId, PointsCalculator.calculatePoints(receipt));
+            receiptRepository.saveReceipt(receiptId, receipt);
+            full.add(receiptId);
+        }
+        ReceiptId pointsOnly = ReceiptId.generate();
+        receiptRepository.savePoints(pointsOnly, 31);
+        pointsEngine.swap(pointsEngine.read(new ByteArrayInputStream(
+                "{\"name\":\"retailer-only\",\"rules\":[{\"type\":\"retailer-alphanumeric\",\"points\":2}]}"
+                        .getBytes(StandardCharsets.UTF_8))));
+
+        RescoreProgress progress = rescoreService.rescore();
+
+        assertEquals(RescoreProgress.State.DONE, progress.getState());
+        assertEquals("retailer-only", progress.getRuleSet());
+        assertEquals(10_000, progress.getProcessed());
+        assertEquals(10_000, progress.getChanged());
+        for (ReceiptId receiptId : full) {
+            Receipt receipt = receiptRepository.findReceiptById(receiptId);
+            int expected = 2 * PointsCalculator.countAlphanumeric(receipt.getRetailer());
+            assertEquals(OptionalInt.of(expected), receiptRepository.findPointsById(receiptId));
+        }
+        assertEquals(OptionalInt.of(31), receiptRepository.findPointsById(pointsOnly));
+    }
+
+    // Checks receipts whose points did not change are not written again.
+    @Test
+    void testRescoreWithSameRulesChangesNothing() {
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        ReceiptId receiptId = ReceiptId.generate();
+        receiptRepository.savePoints(receiptId, PointsCalculator.calculatePoints(receipt));
+        receiptRepository.saveReceipt(receiptId, receipt);
+
+        RescoreProgress progress = rescoreService.rescore();
+
+        assertEquals(1, progress.getProcessed());
+        assertEquals(0, progress.getChanged());
+        assertEquals(0, progress.getSkipped());
+    }
+
+    // Checks a job is refused when receipts are stored as points only, as it would find nothing to rescore.
+    @Test
+    void testRefusedWithoutFullReceipts() {
+        ReflectionTestUtils.setField(rescoreService, "storeFullReceipt", false);
+        receiptRepository.savePoints(ReceiptId.generate(), 31);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> rescoreService.start());
+
+        assertEquals(409, exception.getStatusCode().value());
+        assertTrue(exception.getReason().contains("receipt.store-full-receipt"));
+        assertEquals(RescoreProgress.State.IDLE, rescoreService.progress().getState());
+    }
+
+    // Checks a receipt expired before its new points are written back is skipped and not brought back.
+    @Test
+    void testExpiredReceiptNotBroughtBack() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        ReceiptRepositoryImpl expiring = new ReceiptRepositoryImpl(0, Duration.ofHours(1), clock::get) {
+            @Override
+            public boolean[] replaceAllPoints(List<ReceiptId> receiptIds, int[] expectedPoints, int[] points) {
+                clock.addAndGet(Duration.ofHours(1).toMillis());
+                return super.replaceAllPoints(receiptIds, expectedPoints, points);
+            }
+        };
+        ReceiptStats stats = new ReceiptStats();
+        RescoreService expiringRescore = new RescoreService(expiring, pointsEngine, stats, 1);
+        ReflectionTestUtils.setField(expiringRescore, "storeFullReceipt", true);
+        Receipt receipt = createReceipt("Target", "2022-01-02", "1.25");
+        ReceiptId receiptId = ReceiptId.generate();
+        expiring.savePoints(receiptId, 0);
+        expiring.saveReceipt(receiptId, receipt);
+        stats.record(receipt, 0);
+
+        RescoreProgress progress = expiringRescore.rescore();
+        expiringRescore.close();
+
+        assertEquals(0, progress.getChanged());
+        assertEquals(1, progress.getSkipped());
+        assertFalse(expiring.findPointsById(receiptId).isPresent());
+        assertEquals(0, stats.overall().getPoints());
+    }
+
+    // Checks a job runs in the background and reports its progress until it is done.
+    @Test
+    void testStartRunsInBackground() throws Exception {
+        assertEquals(RescoreProgress.State.IDLE, rescoreService.progress().getState());
+        for (int i = 0; i < 1000; i++) {
+            ReceiptId receiptId = ReceiptId.generate();
+            receiptRepository.savePoints(receiptId, 0);
+            receiptRepository.saveReceipt(receiptId, createReceipt("Target", "2022-01-02", "1.25"));
+        }
+
+        RescoreProgress started = rescoreService.start();
+        RescoreProgress progress = rescoreService.progress();
+        for (int i = 0; i < 500 && progress.getState() == RescoreProgress.State.RUNNING; i++) {
+            try {
+                rescoreService.start();
+                fail("A second job started while the first one ran");
+            } catch (ResponseStatusException e) {
+                assertEquals(409, e.getStatusCode().value());
+            }
+            Thread.sleep(10);
+            progress = rescoreService.progress();
+        }
+
+        assertEquals(1000, started.getTotal());
+        assertEquals(RescoreProgress.State.DONE, progress.getState());
+        assertEquals(1000, progress.getChanged());
+    }
+}
@@ -0,0 +1,80 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.controller.AdminAccess;
+import com.receiptprocessor.challenge.controller.RulesController;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class RulesControllerTest {
+
+    private static final String RULES = "{\"name\":\"retailer-only\",\"rules\":[{\"type\":\"retailer-alphanumeric\",\"points\":2}]}";
+
+    private final PointsEngine pointsEngine = PointsEngine.withDefaultRules();
+
+    private final AdminAccess adminAccess = new AdminAccess();
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(adminAccess, "token", "secret");
+        mockMvc = MockMvcBuilders.standaloneSetup(new RulesController(pointsEngine, adminAccess)).build();
+    }
+
+    // Checks the rules are replaced with the admin token.
+    @Test
+    void testReplaceRulesWithToken() throws Exception {
+        mockMvc.perform(put("/admin/rules")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer secret")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RULES))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("retailer-only"));
+
+        assertEquals("retailer-only", pointsEngine.current().getRuleSet().getName());
+    }
+
+    // Checks the rules are neither read nor replaced without the right token.
+    @Test
+    void testReplaceRulesWithoutTokenNegative() throws Exception {
+        String before = pointsEngine.current().getRuleSet().getName();
+
+        mockMvc.perform(put("/admin/rules")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RULES))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(put("/admin/rules")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer secreT")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RULES))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/admin/rules"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/admin/rules/reload"))
+                .andExpect(status().isUnauthorized());
+
+        assertEquals(before, pointsEngine.current().getRuleSet().getName());
+    }
+
+    // Checks the admin endpoints are disabled while no token is configured.
+    @Test
+    void testAdminDisabledWithoutConfiguredTokenNegative() throws Exception {
+        ReflectionTestUtils.setField(adminAccess, "token", "");
+
+        mockMvc.perform(put("/admin/rules")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer ")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RULES))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,64 @@
+package com.receiptprocessor.challenge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.rules.PointsEngine;
+import com.receiptprocessor.challenge.service.ScoringWarmUp;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class ScoringWarmUpTest {
+
+    private final PointsEngine pointsEngine = spy(PointsEngine.withDefaultRules());
+
+    private final ScoringWarmUp warmUp = new ScoringWarmUp(pointsEngine, new ObjectMapper(),
+            new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+
+    // Checks every warm-up receipt is bound, valid and scored.
+    @Test
+    void testRunsIterations() throws Exception {
+        ReflectionTestUtils.setField(warmUp, "iterations", 1000);
+        ReflectionTestUtils.setField(warmUp, "maxTime", Duration.ofMinutes(1));
+
+        assertEquals(1000, warmUp.warmUp());
+        verify(pointsEngine, times(1000)).score(any(), isNull());
+    }
+
+    // Checks the warm-up stops when max-time runs out, before all iterations.
+    @Test
+    void testStopsAtMaxTime() throws Exception {
+        ReflectionTestUtils.setField(warmUp, "iterations", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(warmUp, "maxTime", Duration.ofMillis(50));
+
+        assertTrue(warmUp.warmUp() < Integer.MAX_VALUE);
+    }
+
+    // Checks a failing warm-up is logged and does not stop the application from starting.
+    @Test
+    void testFailureDoesNotFailStartup() {
+        ReflectionTestUtils.setField(warmUp, "enabled", true);
+        ReflectionTestUtils.setField(warmUp, "iterations", 1000);
+        ReflectionTestUtils.setField(warmUp, "maxTime", Duration.ofMinutes(1));
+        doThrow(new IllegalStateException("broken rule")).when(pointsEngine).score(any(), isNull());
+
+        assertDoesNotThrow(() -> warmUp.run(null));
+        verify(pointsEngine).score(any(), isNull());
+    }
+
+    // Checks nothing runs when the warm-up is disabled.
+    @Test
+    void testDisabled() throws Exception {
+        ReflectionTestUtils.setField(warmUp, "enabled", false);
+
+        warmUp.run(null);
+
+        verifyNoInteractions(pointsEngine);
+    }
+}
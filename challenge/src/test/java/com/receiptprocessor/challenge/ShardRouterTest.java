@@ -0,0 +1,180 @@
+package com.receiptprocessor.challenge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.receiptprocessor.challenge.cluster.ShardRouter;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    private static final List<String> NODES = List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+
+    // Checks a service running alone owns every shard.
+    @Test
+    void testSingleNodeOwnsEveryShard() {
+        ShardRouter router = ShardRouter.singleNode();
+
+        for (int shard = 0; shard < ReceiptId.SHARDS; shard++) {
+            assertTrue(router.isLocal(ReceiptId.generate(shard)));
+        }
+    }
+
+    // Checks every node agrees on the owner of each shard, owns a fair share of them, and generates ids on its own shards.
+    @Test
+    void testNodesAgreeOnOwners() {
+        List<ShardRouter> routers = NODES.stream().map(this::router).toList();
+        int[] owned = new int[NODES.size()];
+
+        for (int shard = 0; shard < ReceiptId.SHARDS; shard++) {
+            ReceiptId receiptId = ReceiptId.generate(shard);
+            assertEquals(shard, receiptId.getShard());
+            String owner = routers.get(0).ownerOf(receiptId);
+            for (ShardRouter router : routers) {
+                assertEquals(owner, router.ownerOf(receiptId));
+            }
+            owned[NODES.indexOf(owner)]++;
+        }
+        for (int node = 0; node < NODES.size(); node++) {
+            assertTrue(owned[node] > ReceiptId.SHARDS / 5 && owned[node] < ReceiptId.SHARDS / 2, "node " + node + " owns " + owned[node]);
+            ShardRouter router = routers.get(node);
+            for (int i = 0; i < 1000; i++) {
+                ReceiptId receiptId = router.generateId();
+                assertTrue(router.isLocal(receiptId));
+                assertEquals(NODES.get(node), routers.get((node + 1) % NODES.size()).ownerOf(receiptId));
+            }
+        }
+    }
+
+    // Checks adding a node only moves shards to the new node, about a quarter of them.
+    @Test
+    void testAddingNodeMovesFewShards() {
+        ShardRouter before = router(NODES.get(0));
+        List<String> grown = List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://localhost:8083");
+        ShardRouter after = new ShardRouter(grown, NODES.get(0), 128, Duration.ofSeconds(1), new ObjectMapper());
+
+        int moved = 0;
+        for (int shard = 0; shard < ReceiptId.SHARDS; shard++) {
+            ReceiptId receiptId = ReceiptId.generate(shard);
+            if (!before.ownerOf(receiptId).equals(after.ownerOf(receiptId))) {
+                assertEquals("http://localhost:8083", after.ownerOf(receiptId));
+                moved++;
+            }
+        }
+        assertTrue(moved > ReceiptId.SHARDS / 8 && moved < ReceiptId.SHARDS * 3 / 8, "moved " + moved);
+    }
+
+    // Checks points are read from the owner, marked as forwarded, and a missing receipt or unreachable owner is told apart.
+    @Test
+    void testFetchPointsFromOwner() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        AtomicReference<String> forwarded = new AtomicReference<>();
+        server.createContext("/receipts/", exchange -> {
+            forwarded.set(exchange.getRequestHeaders().getFirst(ShardRouter.FORWARDED_HEADER));
+            boolean found = exchange.getRequestURI().getPath().endsWith("-000000000001/points");
+            byte[] body = (found ? "{\"points\":28}" : "{\"points\":-1}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(found ? 200 : 404, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String owner = "http://localhost:" + server.getAddress().getPort();
+            String self = "http://localhost:1";
+            ShardRouter router = new ShardRouter(List.of(owner, self), self, 128, Duration.ofSeconds(2), new ObjectMapper());
+            ReceiptId found = remoteId(router, 1);
+            ReceiptId missing = remoteId(router, 2);
+
+            assertEquals(OptionalInt.of(28), router.fetchPoints(found).join());
+            assertEquals("true", forwarded.get());
+            assertEquals(OptionalInt.empty(), router.fetchPoints(missing).join());
+            server.stop(0);
+            assertThrows(CompletionException.class, () -> router.fetchPoints(found).join());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // Checks a receipt on a shard that moved to a new node is read from its previous owner when the new owner answers 404.
+    @Test
+    void testFetchPointsFromPreviousOwner() throws Exception {
+        HttpServer previous = pointsServer(28);
+        HttpServer added = pointsServer(-1);
+        try {
+            String self = "http://localhost:1";
+            String previousUrl = "http://localhost:" + previous.getAddress().getPort();
+            String addedUrl = "http://localhost:" + added.getAddress().getPort();
+            ShardRouter router = new ShardRouter(List.of(self, previousUrl, addedUrl), self, List.of(self, previousUrl), 128,
+                    Duration.ofSeconds(2), new ObjectMapper());
+            ShardRouter before = new ShardRouter(List.of(self, previousUrl), self, 128, Duration.ofSeconds(2), new ObjectMapper());
+            ReceiptId moved = null;
+            ReceiptId stayed = null;
+            for (int shard = 0; shard < ReceiptId.SHARDS; shard++) {
+                ReceiptId receiptId = ReceiptId.generate(shard);
+                if (router.ownerOf(receiptId).equals(addedUrl) && before.ownerOf(receiptId).equals(previousUrl)) {
+                    moved = receiptId;
+                } else if (router.ownerOf(receiptId).equals(previousUrl)) {
+                    stayed = receiptId;
+                }
+            }
+            assertNotNull(moved);
+            assertNotNull(stayed);
+
+            assertEquals(previousUrl, router.previousOwnerOf(moved));
+            assertTrue(router.mayBeOnOtherNode(moved));
+            assertNull(router.previousOwnerOf(stayed));
+            assertEquals(OptionalInt.of(28), router.fetchPoints(moved).join());
+            assertEquals(OptionalInt.of(28), router.fetchPoints(stayed).join());
+            previous.stop(0);
+            ReceiptId unreachable = moved;
+            assertThrows(CompletionException.class, () -> router.fetchPoints(unreachable).join());
+        } finally {
+            previous.stop(0);
+            added.stop(0);
+        }
+    }
+
+    // Checks a node must be one of the listed nodes.
+    @Test
+    void testSelfMustBeListed() {
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(NODES, "http://localhost:9090", 128, Duration.ofSeconds(1), new ObjectMapper()));
+    }
+
+    private ShardRouter router(String self) {
+        return new ShardRouter(NODES, self, 128, Duration.ofSeconds(1), new ObjectMapper());
+    }
+
+    // A node answering every points read with the given points, or 404 if they are negative
+    private static HttpServer pointsServer(int points) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/receipts/", exchange -> {
+            byte[] body = ("{\"points\":" + points + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(points < 0 ? 404 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    // An id the router does not own, ending in the given number
+    private static ReceiptId remoteId(ShardRouter router, long number) {
+        for (int shard = 0; ; shard++) {
+            ReceiptId receiptId = ReceiptId.generate(shard);
+            if (!router.isLocal(receiptId)) {
+                return new ReceiptId(receiptId.getMostSigBits(), 0x8000000000000000L | number);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.ReceiptItem;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.repository.ReceiptRepositoryImpl;
+import com.receiptprocessor.challenge.service.PointsCalculator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTest {
+
+    // Checks a name is interned once, with its lengths computed once and readable back by id.
+    @Test
+    void testInternSharesEntry() {
+        StringDictionary dictionary = new StringDictionary(10);
+
+        StringDictionary.Entry first = dictionary.intern("  Klarbrunn 12-PK 12 FL OZ  ");
+        StringDictionary.Entry second = dictionary.intern(new String("  Klarbrunn 12-PK 12 FL OZ  "));
+
+        assertSame(first, second);
+        assertEquals(0, first.getId());
+        assertSame(first, dictionary.get(first.getId()));
+        assertEquals(24, first.getTrimmedLength());
+        assertEquals(PointsCalculator.countAlphanumeric(first.getValue()), first.getAlphanumericCount());
+        assertEquals(1, dictionary.size());
+    }
+
+    // Checks lookup finds interned names, by String or by bytes, without adding the names it does not know.
+    @Test
+    void testLookupDoesNotAdd() {
+        StringDictionary dictionary = new StringDictionary(10);
+
+        StringDictionary.Entry bound = dictionary.lookup("Target");
+        assertEquals(StringDictionary.NO_ID, bound.getId());
+        assertEquals(6, bound.getAlphanumericCount());
+        assertEquals(0, dictionary.size());
+
+        StringDictionary.Entry interned = dictionary.intern(bound);
+        byte[] body = "{\"retailer\":\"Target\"}".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0, interned.getId());
+        assertSame(interned, dictionary.intern(interned));
+        assertSame(interned, dictionary.lookup("Target"));
+        assertSame(interned, dictionary.lookup(body, 13, 6));
+        assertSame(interned, dictionary.lookup(body, 13, 6));
+        assertEquals(1, dictionary.size());
+    }
+
+    // Checks names past max-entries, and names longer than MAX_LENGTH, get an entry of their own without an id.
+    @Test
+    void testBounded() {
+        StringDictionary dictionary = new StringDictionary(2);
+        dictionary.intern("Target");
+        dictionary.intern("Walgreens");
+
+        StringDictionary.Entry full = dictionary.intern("Costco");
+        StringDictionary.Entry tooLong = new StringDictionary(10).intern("x".repeat(StringDictionary.MAX_LENGTH + 1));
+
+        assertEquals(StringDictionary.NO_ID, full.getId());
+        assertEquals("Costco", full.getValue());
+        assertEquals(6, full.getAlphanumericCount());
+        assertEquals(StringDictionary.NO_ID, tooLong.getId());
+        assertEquals(2, dictionary.size());
+        assertEquals(1, dictionary.rejectedCount());
+    }
+
+    // Checks concurrent interning gives each name one entry and dense ids.
+    @Test
+    void testConcurrentIntern() throws Exception {
+        StringDictionary dictionary = new StringDictionary(100_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    StringDictionary.Entry entry = dictionary.intern("Item " + i);
+                    assertSame(entry, dictionary.get(entry.getId()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(5000, dictionary.size());
+        Set<String> values = new HashSet<>();
+        for (int id = 0; id < 5000; id++) {
+            values.add(dictionary.get(id).getValue());
+        }
+        assertEquals(5000, values.size());
+    }
+
+    // Checks receipts bound from setters share the retailer and descriptions once interned, and Bean Validation still checks them.
+    @Test
+    void testReceiptsShareNames() {
+        StringDictionary dictionary = new StringDictionary(10);
+        Receipt first = createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Pepsi - 12-oz", "9.00"));
+        dictionary.intern(first);
+        Receipt second = createReceipt(new String("M&M Corner Market"), "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Pepsi - 12-oz", "9.00"));
+        assertEquals(StringDictionary.NO_ID, second.getRetailerEntry().getId());
+
+        dictionary.intern(second);
+
+        assertSame(first.getRetailer(), second.getRetailer());
+        assertSame(first.getItems().get(0).getShortDescriptionEntry(), second.getItems().get(0).getShortDescriptionEntry());
+
+        first.setRetailer("Target!");
+        Set<ConstraintViolation<Receipt>> violations = Validation.buildDefaultValidatorFactory().getValidator().validate(first);
+        assertEquals(1, violations.size());
+        assertEquals("retailer", violations.iterator().next().getPropertyPath().toString());
+    }
+
+    // Checks the memory repository gives back a packed receipt with the same values, and keeps one it cannot pack exactly.
+    @Test
+    void testRepositoryPacksReceipts() {
+        StringDictionary dictionary = new StringDictionary(10);
+        ReceiptRepositoryImpl receiptRepository = new ReceiptRepositoryImpl(0, Duration.ZERO, System::currentTimeMillis, dictionary);
+        Receipt receipt = createReceipt("M&M Corner Market", "2022-03-20", "09:05", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Pepsi - 12-oz", "9.00"));
+        Receipt leadingZero = createReceipt("Target", "2022-01-01", "13:01", "01.25",
+                createItem("Gatorade", "2.25"), createItem("Pepsi - 12-oz", "01.25"));
+        ReceiptId receiptId = ReceiptId.generate();
+        ReceiptId leadingZeroId = ReceiptId.generate();
+
+        receiptRepository.saveReceipt(receiptId, receipt);
+        receiptRepository.saveReceipt(leadingZeroId, leadingZero);
+        Receipt retrieved = receiptRepository.findReceiptById(receiptId);
+
+        assertNotSame(receipt, retrieved);
+        assertSame(dictionary.lookup("M&M Corner Market"), retrieved.getRetailerEntry());
+        assertEquals("2022-03-20", retrieved.getPurchaseDate());
+        assertEquals("09:05", retrieved.getPurchaseTime());
+        assertEquals("9.00", retrieved.getTotal());
+        assertEquals(900, retrieved.getTotalCents());
+        assertEquals(2, retrieved.getItems().size());
+        for (int i = 0; i < 2; i++) {
+            ReceiptItem item = receipt.getItems().get(i);
+            ReceiptItem retrievedItem = retrieved.getItems().get(i);
+            assertSame(dictionary.lookup(item.getShortDescription()), retrievedItem.getShortDescriptionEntry());
+            assertEquals(item.getPrice(), retrievedItem.getPrice());
+            assertEquals(item.getPriceCents(), retrievedItem.getPriceCents());
+        }
+        assertEquals(PointsCalculator.calculatePoints(receipt), PointsCalculator.calculatePoints(retrieved));
+        assertSame(leadingZero, receiptRepository.findReceiptById(leadingZeroId));
+    }
+}
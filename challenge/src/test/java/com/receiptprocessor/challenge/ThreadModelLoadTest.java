@@ -0,0 +1,173 @@
+package com.receiptprocessor.challenge;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the Tomcat platform-thread pool with virtual threads under high concurrency.
+ * Skipped by a normal build; run with mvn -Pload-test test (Java 21 for the virtual thread run: mvn -Pvirtual-threads,load-test test).
+ * Tune with -Dload.concurrency (default 1000 clients) and -Dload.seconds (default 15 per thread model).
+ */
+@Tag("load")
+class ThreadModelLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 15);
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+    private static final String RECEIPT = "{\"retailer\":\"M&M Corner Market\",\"purchaseDate\":\"2022-03-20\",\"purchaseTime\":\"14:33\","
+            + "\"total\":\"9.00\",\"items\":[{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},"
+            + "{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"},"
+            + "{\"shortDescription\":\"Gatorade\",\"price\":\"2.25\"}]}";
+
+    // Checks both thread models serve every request and prints throughput and latency percentiles side by side.
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        Result platform = run(false);
+        System.out.println(platform);
+
+        if (Runtime.version().feature() >= 21) {
+            Result virtual = run(true);
+            System.out.println(virtual);
+            assertEquals(0, virtual.errors);
+        } else {
+            System.out.println("Virtual threads need Java 21+, skipped the virtual thread run on Java " + Runtime.version().feature());
+        }
+        assertEquals(0, platform.errors);
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+                .properties("server.port=0", "spring.threads.virtual.enabled=" + virtualThreads, "logging.level.root=WARN")
+                .run();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI processUri = URI.create("http://localhost:" + port + "/receipts/process");
+            String pointsUri = "http://localhost:" + port + "/receipts/";
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+            // Warm up the JIT before measuring
+            drive(client, processUri, pointsUri, 64, TimeUnit.SECONDS.toNanos(5), clients);
+            Result result = drive(client, processUri, pointsUri, CONCURRENCY, TimeUnit.SECONDS.toNanos(SECONDS), clients);
+            result.name = virtualThreads ? "virtual threads" : "platform thread pool";
+            return result;
+        } finally {
+            clients.shutdownNow();
+            context.close();
+        }
+    }
+
+    // Each client posts a receipt, then reads its points, until the deadline. Both requests are timed.
+    private Result drive(HttpClient client, URI processUri, String pointsUri, int concurrency, long durationNanos,
+                         ExecutorService clients) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        int[] errors = new int[concurrency];
+        for (int c = 0; c < concurrency; c++) {
+            final int clientIndex = c;
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                start.await();
+                long deadline = System.nanoTime() + durationNanos;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest process = HttpRequest.newBuilder(processUri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(RECEIPT)).build();
+                    long begin = System.nanoTime();
+                    HttpResponse<String> response = client.send(process, HttpResponse.BodyHandlers.ofString());
+                    long processed = System.nanoTime();
+                    Matcher id = ID.matcher(response.body());
+                    if (response.statusCode() != 200 || !id.find()) {
+                        errors[clientIndex]++;
+                        continue;
+                    }
+                    HttpRequest points = HttpRequest.newBuilder(URI.create(pointsUri + id.group(1) + "/points")).GET().build();
+                    if (client.send(points, HttpResponse.BodyHandlers.ofString()).statusCode() != 200) {
+                        errors[clientIndex]++;
+                    }
+                    long end = System.nanoTime();
+                    if (count + 2 > latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                    }
+                    latencies[count++] = processed - begin;
+                    latencies[count++] = end - processed;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        List<long[]> perClient = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            perClient.add(future.get());
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        int total = 0;
+        for (long[] latencies : perClient) {
+            total += latencies.length;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] latencies : perClient) {
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            offset += latencies.length;
+        }
+        Arrays.sort(all);
+
+        Result result = new Result();
+        result.requests = total;
+        result.throughput = total / (elapsed / 1e9);
+        result.p50Millis = percentile(all, 0.50);
+        result.p99Millis = percentile(all, 0.99);
+        result.maxMillis = all.length == 0 ? 0 : all[all.length - 1] / 1e6;
+        result.errors = Arrays.stream(errors).sum();
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static class Result {
+        String name;
+        int requests;
+        int errors;
+        double throughput;
+        double p50Millis;
+        double p99Millis;
+        double maxMillis;
+
+        @Override
+        public String toString() {
+            return String.format("%-21s concurrency=%d requests=%d errors=%d throughput=%.0f req/s p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    name, CONCURRENCY, requests, errors, throughput, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.receiptprocessor.challenge;
+
+import com.receiptprocessor.challenge.model.Receipt;
+import com.receiptprocessor.challenge.model.ReceiptId;
+import com.receiptprocessor.challenge.model.StringDictionary;
+import com.receiptprocessor.challenge.repository.WalReceiptRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.receiptprocessor.challenge.ReceiptFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalReceiptRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private WalReceiptRepository receiptRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        receiptRepository = open(0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        receiptRepository.close();
+    }
+
+    //Checks points and receipts saved before a restart are recovered from the log.
+    @Test
+    void testRecoverAfterReopen() throws Exception {
+        ReceiptId receiptId = ReceiptId.generate();
+        Map<ReceiptId, Integer> batch = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            batch.put(ReceiptId.generate(), i);
+        }
+
+        receiptRepository.savePoints(receiptId, 109);
+        receiptRepository.saveReceipt(receiptId, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gatorade", "2.25")));
+        receiptRepository.saveAllPoints(batch);
+        receiptRepository.close();
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(109), receiptRepository.findPointsById(receiptId));
+        assertEquals("M&M Corner Market", receiptRepository.findReceiptById(receiptId).getRetailer());
+        assertEquals(225, receiptRepository.findReceiptById(receiptId).getItems().get(1).getPriceCents());
+        batch.forEach((id, points) -> assertEquals(OptionalInt.of(points), receiptRepository.findPointsById(id)));
+        assertEquals(101, receiptRepository.size());
+    }
+
+    //Checks replaced points are logged and recovered, and an unknown receipt gets neither points nor a record.
+    @Test
+    void testReplacePointsRecovered() throws Exception {
+        ReceiptId receiptId = ReceiptId.generate();
+        ReceiptId unknown = ReceiptId.generate();
+        receiptRepository.savePoints(receiptId, 109);
+
+        boolean[] replaced = receiptRepository.replaceAllPoints(List.of(receiptId, unknown), new int[] {109, 0}, new int[] {110, 5});
+        assertFalse(receiptRepository.replacePoints(receiptId, 109, 111));
+        receiptRepository.close();
+        receiptRepository = open(0);
+
+        assertArrayEquals(new boolean[] {true, false}, replaced);
+        assertEquals(OptionalInt.of(110), receiptRepository.findPointsById(receiptId));
+        assertFalse(receiptRepository.findPointsById(unknown).isPresent());
+        assertEquals(1, receiptRepository.size());
+    }
+
+    //Checks recovery loads the snapshot plus the log written after it, and old segments are removed.
+    @Test
+    void testRecoverFromSnapshotAndLogTail() throws Exception {
+        ReceiptId beforeSnapshot = ReceiptId.generate();
+        ReceiptId afterSnapshot = ReceiptId.generate();
+
+        receiptRepository.savePoints(beforeSnapshot, 31);
+        receiptRepository.saveReceipt(beforeSnapshot, createReceipt("M&M Corner Market", "2022-03-20", "14:33", "9.00",
+                createItem("Gatorade", "2.25"), createItem("Gatorade", "2.25")));
+        receiptRepository.snapshot();
+        receiptRepository.savePoints(afterSnapshot, 15);
+        receiptRepository.savePoints(beforeSnapshot, 32);
+        receiptRepository.close();
+
+        assertEquals(1, files(".snap").size());
+        assertEquals(1, files(".log").size());
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(32), receiptRepository.findPointsById(beforeSnapshot));
+        assertEquals("14:33", receiptRepository.findReceiptById(beforeSnapshot).getPurchaseTime());
+        assertEquals(OptionalInt.of(15), receiptRepository.findPointsById(afterSnapshot));
+    }
+
+    //Checks snapshots are taken in the background after snapshot-every records.
+    @Test
+    void testAutomaticSnapshot() throws Exception {
+        receiptRepository.close();
+        receiptRepository = open(10);
+
+        for (int i = 0; i < 25; i++) {
+            receiptRepository.savePoints(ReceiptId.generate(), i);
+        }
+        receiptRepository.close();
+
+        assertFalse(files(".snap").isEmpty());
+        receiptRepository = open(10);
+        assertEquals(25, receiptRepository.size());
+    }
+
+    //Checks a torn record at the end of the log is dropped and the log stays writable.
+    @Test
+    void testTornTailIgnored() throws Exception {
+        ReceiptId kept = ReceiptId.generate();
+        ReceiptId torn = ReceiptId.generate();
+
+        receiptRepository.savePoints(kept, 28);
+        receiptRepository.savePoints(torn, 15);
+        receiptRepository.close();
+        Path log = files(".log").get(0);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(28), receiptRepository.findPointsById(kept));
+        assertFalse(receiptRepository.findPointsById(torn).isPresent());
+        receiptRepository.savePoints(torn, 16);
+        receiptRepository.close();
+        receiptRepository = open(0);
+        assertEquals(OptionalInt.of(16), receiptRepository.findPointsById(torn));
+    }
+
+    //Checks a group whose write fails partway is cut off, so the groups acknowledged after it survive a restart.
+    @Test
+    void testFailedWriteIsCutOff() throws Exception {
+        receiptRepository.close();
+        FaultyWalReceiptRepository faulty = new FaultyWalReceiptRepository(directory);
+        faulty.open();
+        receiptRepository = faulty;
+        ReceiptId before = ReceiptId.generate();
+        ReceiptId failed = ReceiptId.generate();
+        ReceiptId after = ReceiptId.generate();
+
+        receiptRepository.savePoints(before, 28);
+        faulty.channel.shortWrite = true;
+        assertThrows(UncheckedIOException.class, () -> receiptRepository.savePoints(failed, 15));
+        receiptRepository.savePoints(after, 109);
+        receiptRepository.close();
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(28), receiptRepository.findPointsById(before));
+        assertFalse(receiptRepository.findPointsById(failed).isPresent());
+        assertEquals(OptionalInt.of(109), receiptRepository.findPointsById(after));
+    }
+
+    //Checks a failed fsync stops the log from accepting writes instead of retrying it.
+    @Test
+    void testFailedFsyncIsFatal() throws Exception {
+        receiptRepository.close();
+        FaultyWalReceiptRepository faulty = new FaultyWalReceiptRepository(directory);
+        faulty.open();
+        receiptRepository = faulty;
+        ReceiptId kept = ReceiptId.generate();
+
+        receiptRepository.savePoints(kept, 28);
+        faulty.channel.failForce = true;
+        assertThrows(UncheckedIOException.class, () -> receiptRepository.savePoints(ReceiptId.generate(), 15));
+        faulty.channel.failForce = false;
+        assertThrows(IllegalStateException.class, () -> receiptRepository.savePoints(ReceiptId.generate(), 16));
+        receiptRepository.close();
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(28), receiptRepository.findPointsById(kept));
+        receiptRepository.savePoints(kept, 29);
+        assertEquals(OptionalInt.of(29), receiptRepository.findPointsById(kept));
+    }
+
+    //Checks nothing of an incomplete snapshot is kept when recovery falls back to an older one.
+    @Test
+    void testIncompleteSnapshotNotApplied() throws Exception {
+        ReceiptId first = ReceiptId.generate();
+        ReceiptId second = ReceiptId.generate();
+
+        receiptRepository.savePoints(first, 31);
+        receiptRepository.snapshot();
+        Path older = files(".snap").get(0);
+        byte[] olderSnapshot = Files.readAllBytes(older);
+        receiptRepository.savePoints(second, 15);
+        receiptRepository.savePoints(first, 32);
+        receiptRepository.snapshot();
+        receiptRepository.close();
+        Path newer = files(".snap").get(0);
+        try (FileChannel channel = FileChannel.open(newer, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        Files.write(older, olderSnapshot);
+        receiptRepository = open(0);
+
+        assertEquals(OptionalInt.of(31), receiptRepository.findPointsById(first));
+        assertFalse(receiptRepository.findPointsById(second).isPresent());
+        assertEquals(1, receiptRepository.size());
+    }
+
+    //Checks unknown and null ids are not found.
+    @Test
+    void testFindInvalidIdReturnsEmpty() {
+        assertNull(receiptRepository.findReceiptById(ReceiptId.generate()));
+        assertFalse(receiptRepository.findPointsById(ReceiptId.generate()).isPresent());
+        assertNull(receiptRepository.findReceiptById(null));
+        assertFalse(receiptRepository.findPointsById(null).isPresent());
+    }
+
+    //Checks no writes are lost when many threads share group commits, including after a restart.
+    @Test
+    void testConcurrentSaveNoLostWrites() throws Exception {
+        int threads = 64;
+        int receiptsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<ReceiptId>>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    List<ReceiptId> ids = new ArrayList<>();
+                    for (int i = 0; i < receiptsPerThread; i++) {
+                        ReceiptId receiptId = ReceiptId.generate();
+                        receiptRepository.savePoints(receiptId, thread * receiptsPerThread + i);
+                        ids.add(receiptId);
+                    }
+                    return ids;
+                }));
+            }
+            List<List<ReceiptId>> ids = new ArrayList<>();
+            for (Future<List<ReceiptId>> future : futures) {
+                ids.add(future.get(60, TimeUnit.SECONDS));
+            }
+            receiptRepository.close();
+            receiptRepository = open(0);
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < receiptsPerThread; i++) {
+                    assertEquals(OptionalInt.of(t * receiptsPerThread + i), receiptRepository.findPointsById(ids.get(t).get(i)));
+                }
+            }
+            assertEquals(threads * receiptsPerThread, receiptRepository.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private WalReceiptRepository open(long snapshotEvery) throws Exception {
+        WalReceiptRepository repository = new WalReceiptRepository(directory.toString(), 1 << 20, "group", 50, 1024, snapshotEvery,
+                new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+        repository.open();
+        return repository;
+    }
+
+    // Repository whose segment channel can be made to fail a write partway or fail fsync
+    private static final class FaultyWalReceiptRepository extends WalReceiptRepository {
+
+        FaultyChannel channel;
+
+        FaultyWalReceiptRepository(Path directory) {
+            super(directory.toString(), 1 << 20, "group", 50, 1024, 0, new StringDictionary(StringDictionary.DEFAULT_MAX_ENTRIES));
+        }
+
+        @Override
+        protected FileChannel openSegment(Path path) throws IOException {
+            channel = new FaultyChannel(super.openSegment(path));
+            return channel;
+        }
+    }
+
+    private static final class FaultyChannel extends FileChannel {
+
+        private final FileChannel delegate;
+
+        volatile boolean shortWrite;
+
+        volatile boolean failForce;
+
+        FaultyChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        // Writes the first bytes of the group, then fails as a full disk would
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            if (shortWrite) {
+                shortWrite = false;
+                ByteBuffer part = sources[offset].duplicate();
+                part.limit(part.position() + part.remaining() / 2);
+                delegate.write(part);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(sources, offset, length);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Input/output error");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return delegate.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return delegate.read(destinations, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            return delegate.write(source);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            return delegate.transferFrom(source, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return delegate.read(destination, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            return delegate.write(source, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private List<Path> files(String suffix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).collect(Collectors.toList());
+        }
+    }
+}